@@ -0,0 +1,87 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather.benchmarks;
+
+import net.imatruck.betterweather.core.ConditionCodes;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converting provider condition codes and looking up the per-condition tables, done for the
+ * current conditions and each forecast day of every refresh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ConditionCodesBenchmark {
+
+    /**
+     * A few rows in the shape of the OpenWeatherMap table, {OWM ID, day code, night code}
+     */
+    private static final int[][] ROWS = {
+            {200, 4, 4}, {300, 9, 9}, {500, 12, 12}, {511, 10, 10}, {600, 16, 16}, {701, 20, 20},
+            {800, 32, 31}, {801, 34, 33}, {802, 30, 29}, {803, 28, 27}, {804, 26, 26},
+            {900, 0, 0}, {901, 1, 1}, {902, 2, 2}, {905, 24, 24}, {906, 17, 17}
+    };
+
+    /**
+     * API codes as a refresh sees them, including codes that aren't in the table
+     */
+    private static final int[] API_CODES = {800, 801, 500, 804, 615, 200, 906, 999, 802, 300};
+
+    private ConditionCodes.ProviderTable mTable;
+    private int[] mIcons;
+
+    @Setup
+    public void setUp() {
+        mTable = new ConditionCodes.ProviderTable(ROWS);
+        mIcons = new int[ConditionCodes.CODE_COUNT];
+        for (int i = 0; i < mIcons.length; i++) {
+            mIcons[i] = 0x7f020000 + i;
+        }
+    }
+
+    @Benchmark
+    public ConditionCodes.ProviderTable buildProviderTable() {
+        return new ConditionCodes.ProviderTable(ROWS);
+    }
+
+    @Benchmark
+    public int toConditionCode() {
+        int sum = 0;
+        for (int i = 0; i < API_CODES.length; i++) {
+            sum += mTable.toConditionCode(API_CODES[i], (i & 1) == 0);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int convertAndLookUpIcon() {
+        int sum = 0;
+        for (int i = 0; i < API_CODES.length; i++) {
+            sum += ConditionCodes.lookup(mIcons, mTable.toConditionCode(API_CODES[i], false));
+        }
+        return sum;
+    }
+}
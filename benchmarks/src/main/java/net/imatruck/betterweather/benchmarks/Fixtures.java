@@ -0,0 +1,58 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+/**
+ * Recorded API responses, from betterweather/src/test/resources/fixtures
+ */
+final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    /**
+     * @param name File name in the fixtures directory
+     * @return The whole file, so the benchmarks only measure parsing
+     */
+    static String read(String name) {
+        InputStream input = Fixtures.class.getResourceAsStream("/fixtures/" + name);
+        if (input == null) {
+            throw new IllegalStateException("Missing fixture " + name);
+        }
+        try {
+            Reader reader = new InputStreamReader(input, "UTF-8");
+            StringBuilder text = new StringBuilder(8192);
+            char[] buffer = new char[4096];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                text.append(buffer, 0, read);
+            }
+            return text.toString();
+        } catch (IOException ioe) {
+            throw new IllegalStateException("Could not read fixture " + name, ioe);
+        } finally {
+            try {
+                input.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather.benchmarks;
+
+import net.imatruck.betterweather.core.PebblePayload;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building what Pebble sends to the watch on every update, and the key it compares to skip
+ * sending the same weather twice. Copying the two values into a PebbleDictionary is left
+ * out, PebbleKit needs Android.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PebblePayloadBenchmark {
+
+    private int mConditionCode = 30;
+
+    @Benchmark
+    public PebblePayload build() {
+        return PebblePayload.build(mConditionCode, 12, 9, false, "c");
+    }
+
+    @Benchmark
+    public PebblePayload buildFeelsLike() {
+        return PebblePayload.build(mConditionCode, 12, 9, true, "c");
+    }
+
+    @Benchmark
+    public String buildKey() {
+        return PebblePayload.build(mConditionCode, 12, 9, false, "c").getKey();
+    }
+}
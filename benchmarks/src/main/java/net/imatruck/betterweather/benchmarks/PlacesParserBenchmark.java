@@ -0,0 +1,72 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather.benchmarks;
+
+import net.imatruck.betterweather.core.YahooPlacesParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading the recorded places responses with kXML, the XmlPullParser Android ships. The
+ * lookup by coordinates has one place, the search has ten.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PlacesParserBenchmark {
+
+    private final String mPlaceByCoords = Fixtures.read("places_coords.xml");
+    private final String mPlaceSearch = Fixtures.read("places_search.xml");
+
+    private XmlPullParserFactory mFactory;
+
+    @Setup
+    public void setUp() throws XmlPullParserException {
+        // Same setup as YahooPlacesAPIClient
+        mFactory = XmlPullParserFactory.newInstance();
+        mFactory.setNamespaceAware(true);
+    }
+
+    @Benchmark
+    public List<YahooPlacesParser.Place> placeByCoords() throws XmlPullParserException, IOException {
+        return parse(mPlaceByCoords);
+    }
+
+    @Benchmark
+    public List<YahooPlacesParser.Place> placeSearch() throws XmlPullParserException, IOException {
+        return parse(mPlaceSearch);
+    }
+
+    private List<YahooPlacesParser.Place> parse(String response) throws XmlPullParserException, IOException {
+        XmlPullParser xpp = mFactory.newPullParser();
+        xpp.setInput(new StringReader(response));
+        return YahooPlacesParser.parse(xpp);
+    }
+}
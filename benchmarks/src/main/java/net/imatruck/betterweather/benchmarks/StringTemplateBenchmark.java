@@ -0,0 +1,74 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather.benchmarks;
+
+import net.imatruck.betterweather.core.StringTemplate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filling the extension's templates, compiled once like RenderPlan does, against
+ * String.format which parses the format on every call
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StringTemplateBenchmark {
+
+    // Same as wind_details_template and today_forecast_template
+    private static final String WIND_FORMAT = "Wind: %1$s %4$s%2$s %3$s";
+    private static final String FORECAST_FORMAT = "Today: %1$s, %2$s/%3$s°";
+
+    private final StringTemplate mWindTemplate = StringTemplate.compile(WIND_FORMAT);
+    private final StringTemplate mForecastTemplate = StringTemplate.compile(FORECAST_FORMAT);
+    private final StringBuilder mBuilder = new StringBuilder(64);
+
+    @Benchmark
+    public StringTemplate compile() {
+        return StringTemplate.compile(WIND_FORMAT);
+    }
+
+    @Benchmark
+    public int appendWindDetails() {
+        mBuilder.setLength(0);
+        mWindTemplate.appendTo(mBuilder, "NW", "12", "km/h", "Moderate breeze, ");
+        return mBuilder.length();
+    }
+
+    @Benchmark
+    public String formatWindDetails() {
+        return String.format(WIND_FORMAT, "NW", "12", "km/h", "Moderate breeze, ");
+    }
+
+    @Benchmark
+    public int appendForecast() {
+        mBuilder.setLength(0);
+        mForecastTemplate.appendTo(mBuilder, "Partly Cloudy", "12", "21");
+        return mBuilder.length();
+    }
+
+    @Benchmark
+    public String formatForecast() {
+        return String.format(FORECAST_FORMAT, "Partly Cloudy", "12", "21");
+    }
+}
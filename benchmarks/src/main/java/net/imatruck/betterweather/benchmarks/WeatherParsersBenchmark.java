@@ -0,0 +1,73 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather.benchmarks;
+
+import com.google.gson.stream.JsonReader;
+
+import net.imatruck.betterweather.core.OpenWeatherMapParser;
+import net.imatruck.betterweather.core.WeatherFields;
+import net.imatruck.betterweather.core.YahooWeatherParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streaming the recorded weather responses into weather data, like the API clients do with
+ * each response body
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WeatherParsersBenchmark {
+
+    private final String mYahooWeather = Fixtures.read("yahoo_weather.json");
+    private final String mYahooWeatherBatch = Fixtures.read("yahoo_weather_batch.json");
+    private final String mOwmCurrent = Fixtures.read("owm_current.json");
+    private final String mOwmForecast = Fixtures.read("owm_forecast.json");
+
+    @Benchmark
+    public List<YahooWeatherParser.Channel> yahooWeather() throws IOException {
+        return YahooWeatherParser.parse(new JsonReader(new StringReader(mYahooWeather)));
+    }
+
+    @Benchmark
+    public List<YahooWeatherParser.Channel> yahooWeatherBatch() throws IOException {
+        return YahooWeatherParser.parse(new JsonReader(new StringReader(mYahooWeatherBatch)));
+    }
+
+    @Benchmark
+    public WeatherFields openWeatherMapCurrent() throws IOException {
+        WeatherFields data = new WeatherFields();
+        OpenWeatherMapParser.parseCurrentConditions(new JsonReader(new StringReader(mOwmCurrent)), data, true);
+        return data;
+    }
+
+    @Benchmark
+    public WeatherFields openWeatherMapForecast() throws IOException {
+        WeatherFields data = new WeatherFields();
+        OpenWeatherMapParser.parseForecast(new JsonReader(new StringReader(mOwmForecast)), data);
+        return data;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather.benchmarks;
+
+import net.imatruck.betterweather.core.WindSpeed;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wind speed conversion and labelling, done on every render that shows the wind
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WindSpeedBenchmark {
+
+    private static final float[] SPEEDS = {0.5f, 3.2f, 11.7f, 24.1f, 38.6f, 52.3f, 80.4f, 130f};
+
+    @Benchmark
+    public int convert() {
+        int sum = 0;
+        for (int i = 0; i < SPEEDS.length; i++) {
+            sum += WindSpeed.convert((i & 1) == 0 ? "c" : "f", SPEEDS[i], i % 3);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int getBeaufortScale() {
+        int sum = 0;
+        for (int i = 0; i < SPEEDS.length; i++) {
+            sum += WindSpeed.getBeaufortScale((i & 1) == 0 ? "c" : "f", SPEEDS[i]);
+        }
+        return sum;
+    }
+}
@@ -21,43 +21,63 @@
 
 package net.imatruck.betterweather;
 
+import net.imatruck.betterweather.core.WeatherFields;
+import net.imatruck.betterweather.core.WindSpeed;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 /**
  * A helper class representing weather data, for use with {@link BetterWeatherExtension}.
+ * Instances are immutable, they are made by the API clients with a {@link Builder}. Missing
+ * values are kept as sentinels and only turned into text when the data is displayed.
  */
-public class BetterWeatherData {
+public final class BetterWeatherData {
 
-    public static final int INVALID_TEMPERATURE = Integer.MIN_VALUE;
-    public static final int INVALID_CONDITION = -1;
+    public static final int INVALID_TEMPERATURE = WeatherFields.INVALID_TEMPERATURE;
+    public static final int INVALID_CONDITION = WeatherFields.INVALID_CONDITION;
+    public static final int INVALID_HUMIDITY = WeatherFields.INVALID_HUMIDITY;
+    public static final float INVALID_WIND_SPEED = WeatherFields.INVALID_WIND_SPEED;
+
+    /**
+     * Label of each Beaufort scale force
+     */
+    private static final int[] WIND_SPEED_LABELS = {
+            R.string.wind_0, R.string.wind_1, R.string.wind_2, R.string.wind_3, R.string.wind_4,
+            R.string.wind_5, R.string.wind_6, R.string.wind_7, R.string.wind_8, R.string.wind_9,
+            R.string.wind_10, R.string.wind_11, R.string.wind_12
+    };
 
     //Currently
     /**
      * Should be between {@value net.imatruck.betterweather.BetterWeatherData#INVALID_TEMPERATURE} and {@value Integer#MAX_VALUE}
      */
-    public int temperature = INVALID_TEMPERATURE;
+    public final int temperature;
     /**
      * Should be between -1 and 47 to follow Yahoo's values
      *
      * @see <a href="https://developer.yahoo.com/weather/#codes">Yahoo's API Doc</a>
      */
-    public int conditionCode = INVALID_CONDITION;
+    public final int conditionCode;
     /**
-     * Should be between 0 and {@value java.lang.Double#MAX_VALUE}, written as a double
+     * Should be 0 or more, {@link #INVALID_WIND_SPEED} if unknown
      */
-    public String windSpeed;
+    public final float windSpeed;
     /**
      * Should be between 0 and 359 (Absolute north is 0)
      */
-    public int windDirection;
+    public final int windDirection;
     /**
      * Will be displayed if different from {@link net.imatruck.betterweather.BetterWeatherData#temperature}
      *
      * @see net.imatruck.betterweather.BetterWeatherData#temperature
      */
-    public int feelsLike = INVALID_TEMPERATURE;
+    public final int feelsLike;
     /**
-     * Should be between 0 and 100
+     * Should be between 0 and 100, {@value #INVALID_HUMIDITY} if unknown
      */
-    public String humidity;
+    public final int humidity;
 
     //Today
     /**
@@ -65,11 +85,11 @@ public class BetterWeatherData {
      *
      * @see <a href="https://developer.yahoo.com/weather/#codes">Yahoo's API Doc</a>
      */
-    public int todayForecastConditionCode = INVALID_CONDITION;
+    public final int todayForecastConditionCode;
     /**
      * Should be between {@value net.imatruck.betterweather.BetterWeatherData#INVALID_TEMPERATURE} and {@value Integer#MAX_VALUE}
      */
-    public String todayLow, todayHigh;
+    public final int todayLow, todayHigh;
 
     //Tomorrow
     /**
@@ -77,34 +97,203 @@ public class BetterWeatherData {
      *
      * @see <a href="https://developer.yahoo.com/weather/#codes">Yahoo's API Doc</a>
      */
-    public int tomorrowForecastConditionCode = INVALID_CONDITION;
+    public final int tomorrowForecastConditionCode;
     /**
      * Should be between {@value net.imatruck.betterweather.BetterWeatherData#INVALID_TEMPERATURE} and {@value Integer#MAX_VALUE}
      */
-    public String tomorrowLow, tomorrowHigh;
+    public final int tomorrowLow, tomorrowHigh;
 
     //General
     /**
      * String value representing the data location
      */
-    public String location;
+    public final String location;
 
     //Error Management
-    public ErrorCodes errorCode = ErrorCodes.NONE;
+    public final ErrorCodes errorCode;
 
     public enum ErrorCodes {
         NONE, UNKNOWN, LOCATION, INTERNET, API
     }
 
-    public BetterWeatherData() {
+    public BetterWeatherData(ErrorCodes errorCode) {
+        this(new Builder(), errorCode);
     }
 
-    public BetterWeatherData(ErrorCodes errorCode) {
+    private BetterWeatherData(Builder builder, ErrorCodes errorCode) {
+        temperature = builder.temperature;
+        conditionCode = builder.conditionCode;
+        windSpeed = builder.windSpeed;
+        windDirection = builder.windDirection;
+        feelsLike = builder.feelsLike;
+        humidity = builder.humidity;
+        todayForecastConditionCode = builder.todayForecastConditionCode;
+        todayLow = builder.todayLow;
+        todayHigh = builder.todayHigh;
+        tomorrowForecastConditionCode = builder.tomorrowForecastConditionCode;
+        tomorrowLow = builder.tomorrowLow;
+        tomorrowHigh = builder.tomorrowHigh;
+        location = builder.location;
         this.errorCode = errorCode;
     }
 
+    /**
+     * @return A copy of this data with another location name
+     */
+    public BetterWeatherData withLocation(String location) {
+        Builder builder = new Builder(this);
+        builder.location = location;
+        return builder.build();
+    }
+
     public boolean hasValidTemperature() {
-        return temperature > Integer.MIN_VALUE;
+        return temperature != INVALID_TEMPERATURE;
+    }
+
+    public boolean hasWindSpeed() {
+        return !Float.isNaN(windSpeed);
+    }
+
+    public boolean hasHumidity() {
+        return humidity != INVALID_HUMIDITY;
+    }
+
+    /**
+     * Writes the data in a compact binary form, read back by {@link #readFrom(DataInputStream)}
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeByte(errorCode.ordinal());
+        out.writeInt(temperature);
+        out.writeInt(feelsLike);
+        out.writeShort(conditionCode);
+        out.writeShort(windDirection);
+        out.writeFloat(windSpeed);
+        out.writeShort(humidity);
+        out.writeShort(todayForecastConditionCode);
+        out.writeInt(todayLow);
+        out.writeInt(todayHigh);
+        out.writeShort(tomorrowForecastConditionCode);
+        out.writeInt(tomorrowLow);
+        out.writeInt(tomorrowHigh);
+        out.writeBoolean(location != null);
+        if (location != null) {
+            out.writeUTF(location);
+        }
+    }
+
+    public static BetterWeatherData readFrom(DataInputStream in) throws IOException {
+        int errorCode = in.readByte();
+        if (errorCode < 0 || errorCode >= ErrorCodes.values().length) {
+            throw new IOException("Invalid error code: " + errorCode);
+        }
+
+        Builder builder = new Builder();
+        builder.temperature = in.readInt();
+        builder.feelsLike = in.readInt();
+        builder.conditionCode = in.readShort();
+        builder.windDirection = in.readShort();
+        builder.windSpeed = in.readFloat();
+        builder.humidity = in.readShort();
+        builder.todayForecastConditionCode = in.readShort();
+        builder.todayLow = in.readInt();
+        builder.todayHigh = in.readInt();
+        builder.tomorrowForecastConditionCode = in.readShort();
+        builder.tomorrowLow = in.readInt();
+        builder.tomorrowHigh = in.readInt();
+        builder.location = in.readBoolean() ? in.readUTF() : null;
+        return new BetterWeatherData(builder, ErrorCodes.values()[errorCode]);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof BetterWeatherData)) {
+            return false;
+        }
+
+        BetterWeatherData other = (BetterWeatherData) o;
+        return temperature == other.temperature
+                && conditionCode == other.conditionCode
+                && Float.floatToIntBits(windSpeed) == Float.floatToIntBits(other.windSpeed)
+                && windDirection == other.windDirection
+                && feelsLike == other.feelsLike
+                && humidity == other.humidity
+                && todayForecastConditionCode == other.todayForecastConditionCode
+                && todayLow == other.todayLow
+                && todayHigh == other.todayHigh
+                && tomorrowForecastConditionCode == other.tomorrowForecastConditionCode
+                && tomorrowLow == other.tomorrowLow
+                && tomorrowHigh == other.tomorrowHigh
+                && (location == null ? other.location == null : location.equals(other.location))
+                && errorCode == other.errorCode;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = temperature;
+        result = 31 * result + conditionCode;
+        result = 31 * result + Float.floatToIntBits(windSpeed);
+        result = 31 * result + windDirection;
+        result = 31 * result + feelsLike;
+        result = 31 * result + humidity;
+        result = 31 * result + todayForecastConditionCode;
+        result = 31 * result + todayLow;
+        result = 31 * result + todayHigh;
+        result = 31 * result + tomorrowForecastConditionCode;
+        result = 31 * result + tomorrowLow;
+        result = 31 * result + tomorrowHigh;
+        result = 31 * result + (location != null ? location.hashCode() : 0);
+        result = 31 * result + errorCode.hashCode();
+        return result;
+    }
+
+    /**
+     * Mutable counterpart used while parsing a response, see the fields of
+     * {@link BetterWeatherData} for their meaning. Unset fields keep their invalid value.
+     */
+    public static final class Builder extends WeatherFields {
+
+        public Builder() {
+        }
+
+        /**
+         * @param fields Fields read by one of the parsers of the core package
+         */
+        public Builder(WeatherFields fields) {
+            super(fields);
+        }
+
+        public Builder(BetterWeatherData data) {
+            temperature = data.temperature;
+            conditionCode = data.conditionCode;
+            windSpeed = data.windSpeed;
+            windDirection = data.windDirection;
+            feelsLike = data.feelsLike;
+            humidity = data.humidity;
+            location = data.location;
+            copyForecast(data);
+        }
+
+        /**
+         * Replaces today's and tomorrow's forecast with the ones from another data object
+         *
+         * @param other Data to copy the forecast from
+         */
+        public Builder copyForecast(BetterWeatherData other) {
+            todayForecastConditionCode = other.todayForecastConditionCode;
+            todayLow = other.todayLow;
+            todayHigh = other.todayHigh;
+            tomorrowForecastConditionCode = other.tomorrowForecastConditionCode;
+            tomorrowLow = other.tomorrowLow;
+            tomorrowHigh = other.tomorrowHigh;
+            return this;
+        }
+
+        public BetterWeatherData build() {
+            return new BetterWeatherData(this, ErrorCodes.NONE);
+        }
     }
 
     public static int getWindDirectionText(int wDir) {
@@ -129,170 +318,28 @@ public class BetterWeatherData {
         return R.string.wind_north;
     }
 
+    /**
+     * @see ConditionRegistry#getStatusText(int)
+     */
     public static int getStatusText(int conditionCode) {
-        switch (conditionCode) {
-            case 0:
-                return R.string.cond_tornado;
-            case 1:
-                return R.string.cond_tropical_storm;
-            case 2:
-                return R.string.cond_hurricane;
-            case 3:
-                return R.string.cond_severe_thunderstorms;
-            case 4:
-                return R.string.cond_thunderstorms;
-            case 5:
-                return R.string.cond_mixed_rain_and_snow;
-            case 6:
-                return R.string.cond_mixed_rain_and_sleet;
-            case 7:
-                return R.string.cond_mixed_snow_and_sleet;
-            case 8:
-                return R.string.cond_freezing_drizzle;
-            case 9:
-                return R.string.cond_drizzle;
-            case 10:
-                return R.string.cond_freezing_rain;
-            case 11:
-            case 12:
-                return R.string.cond_showers;
-            case 13:
-                return R.string.cond_snow_flurries;
-            case 14:
-                return R.string.cond_light_snow_showers;
-            case 15:
-                return R.string.cond_blowing_snow;
-            case 16:
-                return R.string.cond_snow;
-            case 17:
-                return R.string.cond_hail;
-            case 18:
-                return R.string.cond_sleet;
-            case 19:
-                return R.string.cond_dust;
-            case 20:
-                return R.string.cond_foggy;
-            case 21:
-                return R.string.cond_haze;
-            case 22:
-                return R.string.cond_smoky;
-            case 23:
-                return R.string.cond_breezy;
-            case 24:
-                return R.string.cond_windy;
-            case 25:
-                return R.string.cond_cold;
-            case 26:
-                return R.string.cond_cloudy;
-            case 27:
-            case 28:
-                return R.string.cond_mostly_cloudy;
-            case 44:
-            case 29:
-            case 30:
-                return R.string.cond_partly_cloudy;
-            case 31:
-                return R.string.cond_clear;
-            case 32:
-                return R.string.cond_sunny;
-            case 33:
-            case 34:
-                return R.string.cond_fair;
-            case 35:
-                return R.string.cond_mixed_rain_and_hail;
-            case 36:
-                return R.string.cond_hot;
-            case 37:
-                return R.string.cond_isolated_thunderstorms;
-            case 38:
-            case 39:
-                return R.string.cond_scattered_thunderstorms;
-            case 40:
-                return R.string.cond_scattered_showers;
-            case 43:
-            case 41:
-                return R.string.cond_heavy_snow;
-            case 42:
-                return R.string.cond_scattered_snow_showers;
-            case 45:
-                return R.string.cond_thundershowers;
-            case 46:
-                return R.string.cond_snow_showers;
-            case 47:
-                return R.string.cond_isolated_thundershowers;
-        }
-
-        return R.string.cond_na;
+        return ConditionRegistry.getStatusText(conditionCode);
     }
 
-    public static String convertSpeedUnits(String weatherUnit, String windSpeedString, int wantedUnit) {
-        if (windSpeedString != null) {
-            float windSpeed = Float.parseFloat(windSpeedString);
-            if (weatherUnit.equals("c")) {
-                switch (wantedUnit) {
-                    case 0:
-                        windSpeed = windSpeed / 1.609344f;
-                        break; // Km/h -> Mph
-                    case 2:
-                        windSpeed = windSpeed * 0.2778f;
-                        break; // Km/h -> M/s
-                }
-            } else {
-                switch (wantedUnit) {
-                    case 1:
-                        windSpeed = windSpeed * 1.609344f;
-                        break; // Mph -> Km/h
-                    case 2:
-                        windSpeed = windSpeed * 0.44704f;
-                        break; // Mph -> M/s
-                }
-            }
-            return Integer.toString(Math.round(windSpeed));
-        }
-        return "0";
+    /**
+     * @see WindSpeed#convert(String, float, int)
+     */
+    public static int convertSpeedUnits(String weatherUnit, float windSpeed, int wantedUnit) {
+        return WindSpeed.convert(weatherUnit, windSpeed, wantedUnit);
     }
 
     /**
      * Convert wind speed to descrptive label.
      *
-     * @see <a href="http://www.windfinder.com/wind/windspeed.htm">Wind speed labels</a>
+     * @see WindSpeed#getBeaufortScale(String, float)
      */
-    public static int getWindSpeedLabel(String weatherUnit, String windSpeedString) {
-        if (windSpeedString != null) {
-            float windSpeed = Float.parseFloat(windSpeedString);
-            if (weatherUnit.equals("c")) {
-                windSpeed = windSpeed / 1.609344f; // Km/h -> Mph
-            }
-            // windSpeed in mph unit.
-            //
-            if (windSpeed < 1)
-                return R.string.wind_0;
-            else if (windSpeed < 4)
-                return R.string.wind_1;
-            else if (windSpeed < 8)
-                return R.string.wind_2;
-            else if (windSpeed < 13)
-                return R.string.wind_3;
-            else if (windSpeed < 18)
-                return R.string.wind_4;
-            else if (windSpeed < 25)
-                return R.string.wind_5;
-            else if (windSpeed < 31)
-                return R.string.wind_6;
-            else if (windSpeed < 39)
-                return R.string.wind_7;
-            else if (windSpeed < 47)
-                return R.string.wind_8;
-            else if (windSpeed < 55)
-                return R.string.wind_9;
-            else if (windSpeed < 64)
-                return R.string.wind_10;
-            else if (windSpeed < 74)
-                return R.string.wind_11;
-            else
-                return R.string.wind_12;
-        }
-        return R.string.cond_na;
+    public static int getWindSpeedLabel(String weatherUnit, float windSpeed) {
+        int force = WindSpeed.getBeaufortScale(weatherUnit, windSpeed);
+        return force == WindSpeed.UNKNOWN_SCALE ? R.string.cond_na : WIND_SPEED_LABELS[force];
     }
 
     public static int[] getErrorMessage(ErrorCodes errorCode) {
@@ -22,48 +22,52 @@
 package net.imatruck.betterweather;
 
 import android.Manifest;
-import android.app.AlarmManager;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
-import android.location.Criteria;
 import android.location.Location;
-import android.location.LocationListener;
-import android.location.LocationManager;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.net.Uri;
-import android.os.AsyncTask;
-import android.os.Bundle;
 import android.os.Handler;
-import android.os.SystemClock;
+import android.os.Looper;
 import android.preference.PreferenceManager;
 import android.support.v4.app.ActivityCompat;
 import android.text.TextUtils;
+import android.text.format.DateUtils;
 import android.widget.Toast;
 
 import com.google.android.apps.dashclock.api.DashClockExtension;
 import com.google.android.apps.dashclock.api.ExtensionData;
 
-import net.imatruck.betterweather.iconthemes.IconThemeFactory;
-import net.imatruck.betterweather.settings.AppChooserPreference;
+import net.imatruck.betterweather.refresh.LocationAcquirer;
+import net.imatruck.betterweather.refresh.MovementGate;
+import net.imatruck.betterweather.refresh.RefreshEngine;
+import net.imatruck.betterweather.refresh.RefreshScheduler;
 import net.imatruck.betterweather.settings.WeatherLocationPreference;
 import net.imatruck.betterweather.utils.LogUtils;
-import net.imatruck.betterweather.weatherapi.IWeatherAPI;
+import net.imatruck.betterweather.utils.Utils;
+import net.imatruck.betterweather.weatherapi.AsyncWeatherAPI;
+import net.imatruck.betterweather.weatherapi.OpenWeatherMapWeatherAPIClient;
 import net.imatruck.betterweather.weatherapi.WeatherAPIFactory;
 
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Future;
 
+import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.MediaType;
-import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
@@ -85,6 +89,10 @@ public class BetterWeatherExtension extends DashClockExtension {
     public static final String PREF_WEATHER_UNITS = "pref_weather_units";
     public static final String PREF_WEATHER_SPEED_UNITS = "pref_weather_speed_units";
     public static final String PREF_WEATHER_LOCATION = "pref_weather_location";
+    /**
+     * Other locations shown in the expanded view, fetched with the main one
+     */
+    public static final String[] PREF_WEATHER_EXTRA_LOCATIONS = {"pref_weather_extra_location_1", "pref_weather_extra_location_2"};
     public static final String PREF_WEATHER_USE_ONLY_NETWORK = "pref_weather_use_only_network";
     public static final String PREF_WEATHER_SHOW_TODAY_FORECAST = "pref_weather_show_today_forecast";
     public static final String PREF_WEATHER_SHOW_TOMORROW_FORECAST = "pref_weather_show_tomorrow_forecast";
@@ -117,31 +125,42 @@ public class BetterWeatherExtension extends DashClockExtension {
     public static final String YAHOO_WEATHER_API = "yahoo_weather_api";
     public static final String OPENWEATHERMAP_WEATHER_API = "openweathermap_weather_api";
 
-    private static final long STALE_LOCATION_NANOS = 10l * 60000000000l; // 10 minutes
-
-    private static final Criteria sLocationCriteria;
-
-    private static String sWeatherUnits = "f";
-    private static int sSpeedUnits = 0;
-    private static String sSetLocation = "";
-    private static boolean sUseCurrentLocation = false;
-    private static boolean sShowTodayForecast = false;
-    private static boolean sShowTomorrowForecast = false;
-    private static boolean sRefreshOnTouch = false;
-    private static Intent sWeatherIntent = DEFAULT_WEATHER_INTENT;
-    private static int sRefreshInterval = 60;
-    private static boolean sShowHighlow = false;
-    private static boolean sHideLocationName = false;
-    private static boolean sShowWindDetails = false;
-    private static boolean sShowWindLabel = false;
-    private static boolean sShowFeelsLike = false;
-    private static boolean sShowHumidity = false;
-    private static boolean sUseOnlyNetworkLocation = false;
-    private static boolean sInvertHighLowTemps = false;
-    private static boolean sPebbleEnable = false;
-    private static boolean sPebbleShowFeelsLike = true;
-    private static String sWeatherAPI = YAHOO_WEATHER_API;
-    private static String sWeatherAPIKey = "";
+    /**
+     * Fixes already known are used for a refresh if they are this recent...
+     */
+    private static final long LOCATION_MAX_AGE_MILLIS = 10 * 60 * 1000;
+    /**
+     * ...and this accurate, otherwise a new fix is waited for
+     */
+    private static final float LOCATION_MAX_ACCURACY_METERS = 2000;
+    /**
+     * Time given to get a new fix, the best one found is used after it
+     */
+    private static final long LOCATION_BUDGET_MILLIS = 10 * 1000;
+    /**
+     * A refresh still running after this long is cancelled, whatever it's waiting on.
+     * The location budget and the engine's stages, with some slack for the queues.
+     */
+    private static final long REFRESH_DEADLINE_MILLIS = LOCATION_BUDGET_MILLIS + RefreshEngine.MAX_STAGES_MILLIS + 5 * 1000;
+
+    /**
+     * The last fetch is reused by refreshes that aren't due yet made closer than this to where
+     * it was made, and sooner than the refresh interval after it
+     */
+    private static final float MOVEMENT_MIN_DISTANCE_METERS = 1000;
+
+    /**
+     * Set on the refresh broadcast sent by the refresh alarm, refreshes requested by the user
+     * always resolve the location again
+     */
+    public static final String EXTRA_SCHEDULED_REFRESH = "net.imatruck.betterweather.extra.SCHEDULED_REFRESH";
+
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    /**
+     * Current settings, replaced as a whole when a preference changes
+     */
+    private static volatile ExtensionSettings sSettings = ExtensionSettings.DEFAULTS;
 
     public static long lastUpdateTime;
 
@@ -150,16 +169,52 @@ public class BetterWeatherExtension extends DashClockExtension {
 
     private OnClickReceiver onClickReceiver;
 
-    private boolean mOneTimeLocationListenerActive = false;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
 
-    static Handler gpsFixHandler = new Handler();
+    private final RefreshCoordinator mRefreshCoordinator = new RefreshCoordinator();
+
+    private RefreshScheduler mRefreshScheduler;
+
+    private LocationAcquirer mLocationAcquirer;
+
+    private final MovementGate mMovementGate = new MovementGate(MOVEMENT_MIN_DISTANCE_METERS);
+    /**
+     * Set by a tap just before it triggers a refresh, that refresh always fetches the weather
+     */
+    private boolean mForceRequested = false;
+    /**
+     * Set when the running refresh isn't due yet, it can reuse the last fetch if the device didn't move
+     */
+    private boolean mFetchReusable = false;
+    /**
+     * Location the running refresh fetches the weather for, main thread only
+     */
+    private Location mRefreshLocation;
+
+    /**
+     * Fingerprint of the last data sent to DashClock, null if nothing was sent yet
+     */
+    private String mLastPublishedFingerprint;
+    private int mSuppressedUpdates = 0;
+
+    /**
+     * Built on the first render, rebuilt when the settings or the locale change
+     */
+    private RenderPlan mRenderPlan;
+
+    /**
+     * Weather of the other locations from the settings, fetched with the main location
+     */
+    private volatile List<BetterWeatherData> mExtraLocationsWeather = Collections.emptyList();
+
+    private final SharedPreferences.OnSharedPreferenceChangeListener mPreferenceListener =
+            new SharedPreferences.OnSharedPreferenceChangeListener() {
+                @Override
+                public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+                    loadSettings();
+                }
+            };
 
-    static {
-        sLocationCriteria = new Criteria();
-        sLocationCriteria.setPowerRequirement(Criteria.POWER_LOW);
-        sLocationCriteria.setAccuracy(Criteria.ACCURACY_COARSE);
-        sLocationCriteria.setCostAllowed(false);
-    }
 
 
     /**
@@ -169,6 +224,24 @@ public class BetterWeatherExtension extends DashClockExtension {
     protected void onInitialize(boolean isReconnect) {
         super.onInitialize(isReconnect);
 
+        Utils.installHttpCache(getCacheDir());
+        YahooPlacesAPIClient.install(this);
+        OpenWeatherMapWeatherAPIClient.installApiKeyPool(this);
+
+        mRefreshScheduler = new RefreshScheduler(this);
+        if (mLocationAcquirer == null) {
+            mLocationAcquirer = new LocationAcquirer(this, LOCATION_MAX_AGE_MILLIS,
+                    LOCATION_MAX_ACCURACY_METERS, LOCATION_BUDGET_MILLIS);
+        }
+        setUpdateWhenScreenOn(true);
+
+        // The host may have lost what was published before, the next update is always sent
+        mLastPublishedFingerprint = null;
+        Pebble.forgetLastPayload();
+
+        loadSettings();
+        PreferenceManager.getDefaultSharedPreferences(this).registerOnSharedPreferenceChangeListener(mPreferenceListener);
+
         if (onClickReceiver != null) {
             try {
                 unregisterReceiver(onClickReceiver);
@@ -181,7 +254,42 @@ public class BetterWeatherExtension extends DashClockExtension {
         onClickReceiver = new OnClickReceiver();
         registerReceiver(onClickReceiver, intentFilter);
 
-        scheduleRefresh(0);
+        publishLastKnownWeather();
+
+        scheduleRefresh();
+    }
+
+    /**
+     * Publishes the last saved weather while the first refresh is running, with its age
+     * if it's older than the refresh interval
+     */
+    private void publishLastKnownWeather() {
+        WeatherSnapshot snapshot = WeatherSnapshot.load(this, sSettings.weatherUnits);
+        if (snapshot == null) {
+            return;
+        }
+
+        ExtensionData extensionData = renderExtensionData(snapshot.data);
+
+        if (snapshot.getAgeMillis() > getStaleAfterMillis()) {
+            // Localized by the platform, like "2 hours ago"
+            String updated = DateUtils.getRelativeTimeSpanString(
+                    snapshot.savedAt, System.currentTimeMillis(), DateUtils.MINUTE_IN_MILLIS).toString();
+            String expandedBody = extensionData.expandedBody();
+            extensionData.expandedBody(TextUtils.isEmpty(expandedBody) ? updated : expandedBody + "\n" + updated);
+        }
+
+        publishIfChanged(extensionData);
+        LOGD(TAG, "Published last known weather from " + snapshot.getAgeMillis() / 1000 + " seconds ago");
+    }
+
+    /**
+     * @return Age after which fetched data is stale, the refresh interval or an hour if
+     * auto-refresh is off
+     */
+    private static long getStaleAfterMillis() {
+        int refreshInterval = sSettings.refreshInterval;
+        return (refreshInterval > 0 ? refreshInterval : 60) * 60 * 1000L;
     }
 
     /**
@@ -197,7 +305,12 @@ public class BetterWeatherExtension extends DashClockExtension {
                 LOGE(TAG, "Receiver already unregistred");
             }
         }
-        disableOneTimeLocationListener();
+        PreferenceManager.getDefaultSharedPreferences(this).unregisterOnSharedPreferenceChangeListener(mPreferenceListener);
+        if (mLocationAcquirer != null) {
+            mLocationAcquirer.cancel();
+        }
+        mMainHandler.removeCallbacks(mRefreshDeadline);
+        mRefreshEngine.shutdown();
     }
 
     /*
@@ -215,112 +328,103 @@ public class BetterWeatherExtension extends DashClockExtension {
 
         LOGD(TAG, "Update reason: " + getReasonText(reason));
 
-        // Whenever updating, set sLang to Yahoo's format(en-US, not en_US)
-        // If sLang is set in elsewhere, and user changes phone's locale
-        // without entering BW setting menu, then Yahoo's place name in widget
-        // may be in wrong locale.
-        Locale current = getResources().getConfiguration().locale;
-        YahooPlacesAPIClient.sLang = current.getLanguage() + "-" + current.getCountry();
+        // Whenever updating, follow the phone's locale: if the user changes it
+        // without entering BW setting menu, Yahoo's place name in widget
+        // would otherwise be in the wrong locale.
+        YahooPlacesAPIClient.install(this);
+
+        // Settings changed from another process aren't seen by the preference listener
+        if (reason == UPDATE_REASON_SETTINGS_CHANGED) {
+            loadSettings();
+        }
+        ExtensionSettings settings = sSettings;
 
         if (reason != UPDATE_REASON_USER_REQUESTED &&
                 reason != UPDATE_REASON_SETTINGS_CHANGED &&
                 reason != UPDATE_REASON_INITIAL &&
                 reason != UPDATE_REASON_INTERVAL_TOO_BIG) {
             LOGD(TAG, "Skipping update");
-            if ((System.currentTimeMillis() - lastUpdateTime > (sRefreshInterval * 1000 * 60)) && sRefreshInterval > 0)
+            if (reason == UPDATE_REASON_SCREEN_ON && mRefreshScheduler.takeSkippedRefresh()) {
+                LOGD(TAG, "A refresh was skipped while the screen was off, running it now");
+                onUpdateData(UPDATE_REASON_INTERVAL_TOO_BIG);
+            } else if ((System.currentTimeMillis() - lastUpdateTime > (settings.refreshInterval * 1000 * 60)) && settings.refreshInterval > 0) {
                 onUpdateData(UPDATE_REASON_INTERVAL_TOO_BIG);
+            }
+
+            return;
+        }
 
+        boolean forced = mForceRequested;
+        mForceRequested = false;
+        if (!mRefreshCoordinator.beginRefresh(forced)) {
             return;
         }
+        // Scheduled refreshes and stale data (INTERVAL_TOO_BIG) always fetch, so do taps
+        mFetchReusable = !forced && (reason == UPDATE_REASON_SETTINGS_CHANGED || reason == UPDATE_REASON_INITIAL);
+        mMainHandler.postDelayed(mRefreshDeadline, REFRESH_DEADLINE_MILLIS);
 
         LOGD(TAG, "Updating data");
 
-        if (sPebbleEnable) {
+        if (settings.pebbleEnable) {
             LOGD(TAG, "Registered Pebble Data Receiver");
             Pebble.registerPebbleDataReceived(getApplicationContext());
         }
 
-        getCurrentPreferences();
+        LOGD(TAG, "Location from settings is: " + ((settings.useCurrentLocation) ? "Automatic" : settings.setLocation));
 
         NetworkInfo ni = ((ConnectivityManager) getSystemService(
                 Context.CONNECTIVITY_SERVICE)).getActiveNetworkInfo();
         if (ni == null || !ni.isConnected()) {
-            LOGD(TAG, "No internet connection detected, scheduling refresh in 5 minutes");
-            scheduleRefresh(5);
+            LOGD(TAG, "No internet connection detected, scheduling a retry");
+            scheduleRetry(RefreshScheduler.Failure.NETWORK);
+            finishRefresh();
             return;
         }
 
-        LocationManager lm = (LocationManager) getSystemService(Context.LOCATION_SERVICE);
-
-        String provider;
-        if (sUseOnlyNetworkLocation)
-            provider = LocationManager.NETWORK_PROVIDER;
-        else
-            provider = lm.getBestProvider(sLocationCriteria, true);
-
-        if (TextUtils.isEmpty(provider)) {
-            LOGE(TAG, "No available location providers matching criteria, maybe permission is disabled.");
-            provider = null;
-        }
-
-        requestLocationUpdate(lm, provider);
+        requestLocationUpdate();
     }
 
     /**
-     * Requests a location update if setting is Automatic, else it will give a dummy location
-     *
-     * @param lm       Location Manager from {@link net.imatruck.betterweather.BetterWeatherExtension#onUpdateData(int)}
-     * @param provider Provider determined in {@link net.imatruck.betterweather.BetterWeatherExtension#onUpdateData(int)}
-     */
-    private void requestLocationUpdate(final LocationManager lm, final String provider) {
-        if (provider != null && sUseCurrentLocation) {
-            if (ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED &&
-                    ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_COARSE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
-                handleMissingPermission();
-                return;
-            }
-            final Location lastLocation = lm.getLastKnownLocation(provider);
-            if (lastLocation == null ||
-                    (SystemClock.elapsedRealtimeNanos() - lastLocation.getElapsedRealtimeNanos())
-                            >= STALE_LOCATION_NANOS) {
-                LOGW(TAG, "Stale or missing last-known location; requesting single coarse location "
-                        + "update. " + ((lastLocation != null) ? lastLocation.getLatitude() + ", " + lastLocation.getLongitude() : "Last location is null"));
-                try {
-                    disableOneTimeLocationListener();
-                    mOneTimeLocationListenerActive = true;
-                    lm.requestSingleUpdate(provider, mOneTimeLocationListener, null);
-                    gpsFixHandler.postDelayed(new Runnable() {
-                        public void run() {
-                            disableOneTimeLocationListener();
-                            LOGD(TAG, "We didn't get a GPS fix quick enough, we'll try again later");
-                            scheduleRefresh(0);
-                        }
-                    }, 30 * 1000);
-                    LOGD(TAG, "Requested single location update");
-                    if (lastLocation != null) {
-                        new RefreshWeatherTask(lastLocation).execute();
-                    }
-                } catch (Exception e) {
-                    LOGW(TAG, "RuntimeException on requestSingleUpdate. " + e.toString());
-                    scheduleRefresh(2);
-                }
-            } else {
-                new RefreshWeatherTask(lastLocation).execute();
-            }
-        } else if (!sUseCurrentLocation) {
+     * Gets the device's location if setting is Automatic, else it will give a dummy location
+     */
+    private void requestLocationUpdate() {
+        if (!sSettings.useCurrentLocation) {
             LOGD(TAG, "Using set location");
-            disableOneTimeLocationListener();
-            Location dummyLocation = new Location(provider);
-            new RefreshWeatherTask(dummyLocation).execute();
-        } else {
+            mLocationAcquirer.cancel();
+            startRefreshTask(new Location(""));
+            return;
+        }
+
+        if (ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED &&
+                ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_COARSE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
             handleMissingPermission();
+            return;
         }
+
+        mLocationAcquirer.acquire(sSettings.useOnlyNetworkLocation, new LocationAcquirer.Callback() {
+            @Override
+            public void onLocation(Location location) {
+                LOGD(TAG, "Location for refresh: " + location.getLatitude() + ", " + location.getLongitude()
+                        + " from " + location.getProvider());
+                if (sSettings.useCurrentLocation) {
+                    startRefreshTask(location);
+                } else {
+                    finishRefresh();
+                }
+            }
+
+            @Override
+            public void onNoLocation() {
+                LOGD(TAG, "We didn't get a location quick enough, we'll try again later");
+                scheduleRetry(RefreshScheduler.Failure.LOCATION);
+                finishRefresh();
+            }
+        });
     }
 
     private void handleMissingPermission() {
         LOGE(TAG, "Trying to use current location but no provider was found, maybe the location permission was not granted");
         publishUpdate(new BetterWeatherData(BetterWeatherData.ErrorCodes.LOCATION));
-        scheduleRefresh(5);
     }
 
     /**
@@ -329,27 +433,34 @@ public class BetterWeatherExtension extends DashClockExtension {
      * @return LocationInfo
      */
     public static LocationInfo getLocationInfoFromSettings() {
+        return getLocationInfoFromValue(sSettings.setLocation);
+    }
 
+    /**
+     * @param value Location preference value, see {@link WeatherLocationPreference}
+     * @return LocationInfo
+     */
+    private static LocationInfo getLocationInfoFromValue(String value) {
         // Location displayName("New York, USA" form) also assigned.
-        return new LocationInfo(WeatherLocationPreference.getWoeidFromValue(sSetLocation),
-                WeatherLocationPreference.getDisplayNameFromValue(sSetLocation),
-                Double.parseDouble(WeatherLocationPreference.getLatFromValue(sSetLocation)),
-                Double.parseDouble(WeatherLocationPreference.getLngFromValue(sSetLocation)));
+        return new LocationInfo(WeatherLocationPreference.getWoeidFromValue(value),
+                WeatherLocationPreference.getDisplayNameFromValue(value),
+                Double.parseDouble(WeatherLocationPreference.getLatFromValue(value)),
+                Double.parseDouble(WeatherLocationPreference.getLngFromValue(value)));
     }
 
     /**
-     * Requests weather update from the selected API
+     * Resolves the location to use for the weather, from the settings or the device's location
      *
      * @param location Location object to get devices coords
-     * @return {@link net.imatruck.betterweather.BetterWeatherData} object with data from the selected API
+     * @return {@link net.imatruck.betterweather.LocationInfo} for the weather API
      * @throws InvalidLocationException If location is invalid
      * @throws IOException              If there's a problem parsing the data
      */
-    private static BetterWeatherData getWeatherForLocation(Location location)
+    private static LocationInfo getLocationInfo(Location location)
             throws InvalidLocationException, IOException {
 
         LocationInfo locationInfo;
-        if (!sUseCurrentLocation) {
+        if (!sSettings.useCurrentLocation) {
             locationInfo = getLocationInfoFromSettings();
         } else {
             if (BuildConfig.DEBUG) {
@@ -357,28 +468,83 @@ public class BetterWeatherExtension extends DashClockExtension {
                         + "," + location.getLongitude() + " to get weather");
             }
 
-            locationInfo = YahooPlacesAPIClient.getLocationInfo(location);
+            locationInfo = YahooPlacesAPIClient.getInstance().getLocationInfo(location);
         }
 
+        return locationInfo;
+    }
+
+    /**
+     * Starts a weather update from the selected API
+     *
+     * @param locationInfo Location from {@link #getLocationInfo(Location)}
+     * @param revalidate   Check the HTTP cache's copies with the server even if they're fresh
+     * @return Pending data from the API, see {@link #completeWeatherData(LocationInfo, BetterWeatherData)}
+     */
+    private static Future<BetterWeatherData> fetchWeatherForLocationInfo(LocationInfo locationInfo, boolean revalidate) {
+
         LOGD(TAG, "Using WOEID: " + locationInfo.WOEID + "(" + locationInfo.LAT + "," + locationInfo.LNG + ")");
 
-        IWeatherAPI mWeatherAPI = WeatherAPIFactory.getWeatherAPIFromSetting(sWeatherAPI);
+        ExtensionSettings settings = sSettings;
+        AsyncWeatherAPI weatherAPI = WeatherAPIFactory.getAsyncWeatherAPIFromSetting(settings.weatherAPI);
 
-        LOGD(TAG, "Using " + mWeatherAPI.getClass());
+        LOGD(TAG, "Using " + settings.weatherAPI + ", providers: " + WeatherAPIFactory.getCircuitBreakerStates());
 
-        BetterWeatherData data = mWeatherAPI.getWeatherDataForLocation(locationInfo);
+        return weatherAPI.getWeatherDataForLocationAsync(locationInfo, revalidate);
+    }
 
+    /**
+     * Sets the location name of data from {@link #fetchWeatherForLocationInfo(LocationInfo, boolean)}:
+     * the one from the settings, or from the places API if the weather API didn't give one
+     *
+     * @return Data to publish
+     */
+    private static BetterWeatherData completeWeatherData(LocationInfo locationInfo, BetterWeatherData data) {
         if (data != null) {
-            if (!sUseCurrentLocation) {
-                data.location = locationInfo.DISPLAYNAME;
+            if (!sSettings.useCurrentLocation) {
+                data = data.withLocation(locationInfo.DISPLAYNAME);
             } else if (data.location == null || TextUtils.isEmpty(data.location) || "N/A".equals(data.location)) {
-                data.location = YahooPlacesAPIClient.getLocationNameFromCoords(locationInfo.LAT, locationInfo.LNG);
+                data = data.withLocation(YahooPlacesAPIClient.getInstance().getLocationNameFromCoords(locationInfo.LAT, locationInfo.LNG));
             }
         }
 
         return data;
     }
 
+    /**
+     * Fetches the weather of the other locations from the settings, all in one request when the
+     * API supports it. Failures are only logged, the main location is what matters.
+     *
+     * @return Data of the other locations with their names from the settings, or an empty list
+     */
+    private static List<BetterWeatherData> fetchExtraLocationsWeather(ExtensionSettings settings) {
+        if (settings.extraLocations.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<LocationInfo> locations = new ArrayList<LocationInfo>(settings.extraLocations.size());
+        for (String value : settings.extraLocations) {
+            locations.add(getLocationInfoFromValue(value));
+        }
+
+        List<BetterWeatherData> extras;
+        try {
+            extras = WeatherAPIFactory.getWeatherAPIFromSetting(settings.weatherAPI).getWeatherDataForLocations(locations);
+        } catch (IOException e) {
+            LOGW(TAG, "Could not fetch the other locations", e);
+            return Collections.emptyList();
+        }
+
+        List<BetterWeatherData> named = new ArrayList<BetterWeatherData>(extras.size());
+        for (int i = 0; i < extras.size() && i < locations.size(); i++) {
+            BetterWeatherData data = extras.get(i);
+            if (data != null && data.errorCode == BetterWeatherData.ErrorCodes.NONE) {
+                named.add(data.withLocation(locations.get(i).DISPLAYNAME));
+            }
+        }
+        return Collections.unmodifiableList(named);
+    }
+
     /**
      * Calls {@link net.imatruck.betterweather.BetterWeatherExtension#renderExtensionData(BetterWeatherData)} and sends it to DashClock's publishUpdate
      *
@@ -386,17 +552,105 @@ public class BetterWeatherExtension extends DashClockExtension {
      */
     private void publishUpdate(BetterWeatherData weatherData) {
 
-        publishUpdate(renderExtensionData(weatherData));
+        if (publishIfChanged(renderExtensionData(weatherData))) {
+            LOGD(TAG, "Published new data to extension");
+        }
 
-        if (sPebbleEnable) {
-            Pebble.sendWeather(getApplicationContext(), weatherData, sPebbleShowFeelsLike);
+        ExtensionSettings settings = sSettings;
+        if (settings.pebbleEnable) {
+            Pebble.sendWeather(getApplicationContext(), weatherData, settings.pebbleShowFeelsLike);
         }
 
-        LOGD(TAG, "Published new data to extension");
         lastUpdateTime = System.currentTimeMillis();
-        scheduleRefresh(0);
 
-        disableOneTimeLocationListener();
+        switch (weatherData.errorCode) {
+            case NONE:
+                mRefreshScheduler.resetBackoff();
+                scheduleRefresh();
+                break;
+            case LOCATION:
+                scheduleRetry(RefreshScheduler.Failure.LOCATION);
+                break;
+            case INTERNET:
+                scheduleRetry(RefreshScheduler.Failure.NETWORK);
+                break;
+            default:
+                scheduleRetry(RefreshScheduler.Failure.API);
+                break;
+        }
+
+        mLocationAcquirer.cancel();
+        finishRefresh();
+    }
+
+    /**
+     * Fetches the weather for a location, replacing the fetch that's running if there's one.
+     * A refresh that isn't due yet publishes the last fetch instead if the device didn't move
+     * since and it isn't stale.
+     *
+     * @param location Location to fetch the weather for
+     */
+    private void startRefreshTask(Location location) {
+        if (mFetchReusable && !mRefreshCoordinator.isForced()) {
+            BetterWeatherData weatherData = mMovementGate.getFreshData(location, getStaleAfterMillis());
+            if (weatherData != null) {
+                publishReusedWeather(weatherData);
+                return;
+            }
+        }
+
+        LOGD(TAG, "Refreshing weather");
+        mRefreshLocation = location;
+        mRefreshEngine.refresh(location);
+    }
+
+    /**
+     * Publishes the data of the last fetch again, for settings that changed how it's shown.
+     * The next regular refresh is kept where the fetch put it, moved if the interval changed.
+     *
+     * @param weatherData Data of the last fetch
+     */
+    private void publishReusedWeather(BetterWeatherData weatherData) {
+        if (publishIfChanged(renderExtensionData(weatherData))) {
+            LOGD(TAG, "Published the last fetch again");
+        }
+
+        ExtensionSettings settings = sSettings;
+        if (settings.pebbleEnable) {
+            Pebble.sendWeather(getApplicationContext(), weatherData, settings.pebbleShowFeelsLike);
+        }
+
+        mRefreshScheduler.scheduleRefresh(settings.refreshInterval, mMovementGate.getAgeMillis());
+        mLocationAcquirer.cancel();
+        finishRefresh();
+    }
+
+    /**
+     * Cancels the refresh that's still running at its deadline, the location provider or a
+     * stage may be stuck. Runs on the main thread like the engine's listener, so a result
+     * can't be published after it.
+     */
+    private final Runnable mRefreshDeadline = new Runnable() {
+        @Override
+        public void run() {
+            LOGW(TAG, "Refresh didn't finish in " + REFRESH_DEADLINE_MILLIS / 1000 + " seconds, cancelling it");
+            mLocationAcquirer.cancel();
+            mRefreshEngine.cancel();
+            scheduleRetry(RefreshScheduler.Failure.API);
+            finishRefresh();
+        }
+    };
+
+    /**
+     * Marks the running refresh as done
+     */
+    private void finishRefresh() {
+        mMainHandler.removeCallbacks(mRefreshDeadline);
+        if (mRefreshCoordinator.finishRefresh()) {
+            LOGD(TAG, "The user requested a refresh while this one was running, running it now");
+            mForceRequested = true;
+            onUpdateData(UPDATE_REASON_USER_REQUESTED);
+        }
     }
 
     /*
@@ -410,118 +664,121 @@ public class BetterWeatherExtension extends DashClockExtension {
         @Override
         public void onReceive(Context context, Intent intent) {
             showRefreshToast();
+            if (!intent.getBooleanExtra(EXTRA_SCHEDULED_REFRESH, false)) {
+                mForceRequested = true;
+            }
             onUpdateData(UPDATE_REASON_USER_REQUESTED);
         }
     }
 
     /**
-     * Schedule an update with a {@link android.app.PendingIntent}
-     *
-     * @param intervalOverride Override in minutes for the next refresh, if 0 use settings value
+     * Schedules the next regular refresh from the settings' interval
      */
-    private void scheduleRefresh(int intervalOverride) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(this);
-        sRefreshInterval = Integer.parseInt(sp.getString(PREF_WEATHER_REFRESH_INTERVAL, "60"));
-        if (sRefreshInterval < 0) {
-            WeatherRefreshReceiver.cancelPendingIntent(this);
-            return;
-        }
-
-        int realRefreshInterval = sRefreshInterval;
-        if (intervalOverride > 0)
-            realRefreshInterval = intervalOverride;
-
-        AlarmManager am = (AlarmManager) getSystemService(ALARM_SERVICE);
-        am.set(AlarmManager.ELAPSED_REALTIME, SystemClock.elapsedRealtime() + (realRefreshInterval * 60 * 1000), WeatherRefreshReceiver.getPendingIntent(this));
-        LOGD(TAG, "Scheduled refresh in " + realRefreshInterval + " minutes.");
+    private void scheduleRefresh() {
+        mRefreshScheduler.scheduleRefresh(sSettings.refreshInterval);
     }
 
+    /**
+     * Schedules a retry after a failed refresh, backing off on consecutive failures
+     *
+     * @param failure Kind of failure
+     */
+    private void scheduleRetry(RefreshScheduler.Failure failure) {
+        mRefreshScheduler.scheduleRetry(failure, sSettings.refreshInterval);
+    }
 
     /**
-     * Calls the API and publishes the update
+     * Background stages of a refresh, run by {@link RefreshEngine}
      */
-    private class RefreshWeatherTask extends AsyncTask<Void, Void, BetterWeatherData> {
+    private final RefreshEngine.Pipeline mRefreshPipeline = new RefreshEngine.Pipeline() {
+        @Override
+        public LocationInfo geocode(Location location) throws InvalidLocationException, IOException {
+            return getLocationInfo(location);
+        }
 
-        Location mLocation = null;
+        /**
+         * Units the running fetch was requested in, fetch and complete of a job run one after the other
+         */
+        private volatile String mFetchUnits;
 
-        public RefreshWeatherTask(Location location) {
-            mLocation = location;
+        @Override
+        public Future<BetterWeatherData> fetch(LocationInfo locationInfo) {
+            mFetchUnits = sSettings.weatherUnits;
+            // A tap asks for the latest weather, a fresh cached response isn't enough
+            return fetchWeatherForLocationInfo(locationInfo, mRefreshCoordinator.isForced());
         }
 
         @Override
-        protected BetterWeatherData doInBackground(Void... params) {
-            LOGD(TAG, "Refreshing weather from RefreshWeatherTask");
-            gpsFixHandler.removeCallbacksAndMessages(null);
-            BetterWeatherData weatherData = null;
-            try {
-                weatherData = getWeatherForLocation(mLocation);
-            } catch (InvalidLocationException | IOException e) {
-                e.printStackTrace();
+        public BetterWeatherData complete(LocationInfo locationInfo, BetterWeatherData weatherData) {
+            weatherData = completeWeatherData(locationInfo, weatherData);
+            if (weatherData != null) {
+                WeatherSnapshot.save(getApplicationContext(), weatherData, mFetchUnits);
+                if (weatherData.errorCode == BetterWeatherData.ErrorCodes.NONE) {
+                    mExtraLocationsWeather = fetchExtraLocationsWeather(sSettings);
+                }
             }
             return weatherData;
         }
+    };
 
+    /**
+     * Publishes the update once a refresh is done
+     */
+    private final RefreshEngine.Listener mRefreshListener = new RefreshEngine.Listener() {
         @Override
-        protected void onPostExecute(BetterWeatherData betterWeatherData) {
+        public void onRefreshFinished(BetterWeatherData betterWeatherData) {
             if (betterWeatherData != null) {
                 LOGD(TAG, "Using new weather data for location: " + betterWeatherData.location + " at " +
                         SimpleDateFormat.getTimeInstance().format(new Date()));
                 if (betterWeatherData.errorCode == BetterWeatherData.ErrorCodes.API) {
-                    LOGD(TAG, "API Error encountered, trying again in 5 minutes");
-                    scheduleRefresh(5);
+                    LOGD(TAG, "API Error encountered, scheduling a retry");
+                    scheduleRetry(RefreshScheduler.Failure.API);
+                    finishRefresh();
                     return;
                 }
                 if (betterWeatherData.errorCode == BetterWeatherData.ErrorCodes.NONE) {
-                    new SendAnalyticsTask(sWeatherAPI).execute();
+                    mMovementGate.recordFetch(mRefreshLocation, betterWeatherData);
+                    sendAnalytics(sSettings.weatherAPI);
                 }
                 publishUpdate(betterWeatherData);
             } else {
                 publishUpdate(new BetterWeatherData(BetterWeatherData.ErrorCodes.API));
             }
         }
-    }
-
-    private class SendAnalyticsTask extends AsyncTask<String, Void, Void> {
-
-        String mService = null;
-        OkHttpClient mHttpClient;
-        private final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+    };
 
-        public SendAnalyticsTask(String service) {
-            mHttpClient = new OkHttpClient();
-            mService = service;
-        }
+    private final RefreshEngine mRefreshEngine = new RefreshEngine(mRefreshPipeline, mRefreshListener);
 
-        @Override
-        protected Void doInBackground(String... params) {
-            try {
-                LOGD(TAG, "Sending analytics");
-                String response = post(BuildConfig.ANALYTICS_ENDPOINT, "{\"service\":\"" + mService + "\"}");
-                LOGD(TAG, "Analytics response: " + response);
-            } catch (IOException ioe) {
+    /**
+     * Sends the service used for a successful refresh, asynchronously on the HTTP client's threads
+     *
+     * @param service Weather API setting value
+     */
+    private void sendAnalytics(String service) {
+        LOGD(TAG, "Sending analytics");
+        RequestBody body = RequestBody.create(JSON, "{\"service\":\"" + service + "\"}");
+        Request request = new Request.Builder()
+                .url(BuildConfig.ANALYTICS_ENDPOINT)
+                .post(body)
+                .build();
+        Utils.getHttpClient().newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
                 LOGD(TAG, "Could not send analytics");
             }
-            return null;
-        }
 
-        String post(String url, String json) throws IOException {
-            RequestBody body = RequestBody.create(JSON, json);
-            Request request = new Request.Builder()
-                    .url(url)
-                    .post(body)
-                    .build();
-            Response response = mHttpClient.newCall(request).execute();
-            return response.body().string();
-        }
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                LOGD(TAG, "Analytics response: " + response.body().string());
+            }
+        });
     }
 
     /**
      * Displays a toast if setting is enabled
      */
     private void showRefreshToast() {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(this);
-        boolean showRefreshToast = sp.getBoolean(PREF_WEATHER_SHOW_REFRESH_TOAST, false);
-        if (showRefreshToast)
+        if (sSettings.showRefreshToast)
             Toast.makeText(this, getString(R.string.toast_refreshing), Toast.LENGTH_SHORT).show();
     }
 
@@ -554,59 +811,59 @@ public class BetterWeatherExtension extends DashClockExtension {
     }
 
     /**
-     * Methods used to get current app settings
+     * Reads the settings and replaces {@link #sSettings} with them
      */
-    private void getCurrentPreferences() {
+    private void loadSettings() {
         SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(this);
-        sWeatherUnits = sp.getString(PREF_WEATHER_UNITS, sWeatherUnits);
-        sSpeedUnits = Integer.parseInt(sp.getString(PREF_WEATHER_SPEED_UNITS, Integer.toString(sSpeedUnits)));
-        sSetLocation = sp.getString(PREF_WEATHER_LOCATION, sSetLocation).trim();
-        sUseCurrentLocation = TextUtils.isEmpty(sSetLocation);
-        sUseOnlyNetworkLocation = sp.getBoolean(PREF_WEATHER_USE_ONLY_NETWORK, sUseOnlyNetworkLocation);
-        sShowTodayForecast = sp.getBoolean(PREF_WEATHER_SHOW_TODAY_FORECAST, sShowTodayForecast);
-        sShowTomorrowForecast = sp.getBoolean(PREF_WEATHER_SHOW_TOMORROW_FORECAST, sShowTomorrowForecast);
-        sRefreshOnTouch = sp.getBoolean(PREF_WEATHER_REFRESH_ON_TOUCH, sRefreshOnTouch);
-        sWeatherIntent = AppChooserPreference.getIntentValue(sp.getString(PREF_WEATHER_SHORTCUT, null), DEFAULT_WEATHER_INTENT);
-        sRefreshInterval = Integer.parseInt(sp.getString(PREF_WEATHER_REFRESH_INTERVAL, "60"));
-        sHideLocationName = sp.getBoolean(PREF_WEATHER_HIDE_LOCATION_NAME, sHideLocationName);
-        sShowHumidity = sp.getBoolean(PREF_WEATHER_SHOW_HUMIDITY, sShowHumidity);
-        sShowFeelsLike = sp.getBoolean(PREF_WEATHER_SHOW_FEELS_LIKE, sShowFeelsLike);
-        sShowWindDetails = sp.getBoolean(PREF_WEATHER_SHOW_WIND_DETAILS, sShowWindDetails);
-        sShowWindLabel = sp.getBoolean(PREF_WEATHER_SHOW_WIND_SPEED_AS_LABEL, sShowWindLabel);
-        sInvertHighLowTemps = sp.getBoolean(PREF_WEATHER_INVERT_HIGHLOW, sInvertHighLowTemps);
-        sPebbleEnable = sp.getBoolean(PREF_PEBBLE_ENABLE, sPebbleEnable);
-        sPebbleShowFeelsLike = sp.getBoolean(PREF_PEBBLE_SHOW_FEELS_LIKE, sPebbleShowFeelsLike);
-        sWeatherAPI = sp.getString(PREF_WEATHER_API, sWeatherAPI);
-        sWeatherAPIKey = sp.getString(PREF_WEATHER_API_KEY, sWeatherAPIKey);
+        ExtensionSettings settings = ExtensionSettings.fromPreferences(sp);
 
         //Fail safe for change in format from 2.3.3 to 3.0
-        convertLocationToNewFormat(sSetLocation, sp);
+        if (convertLocationToNewFormat(settings, sp)) {
+            settings = ExtensionSettings.fromPreferences(sp);
+        }
+
+        ExtensionSettings previous = sSettings;
+        sSettings = settings;
 
-        LOGD(TAG, "Location from settings is: " + ((sUseCurrentLocation) ? "Automatic" : sSetLocation));
+        // Display settings can reuse the last fetch, the others need new data
+        if (!settings.fetchesSameWeather(previous)) {
+            mMovementGate.reset();
+        }
     }
 
-    private static void convertLocationToNewFormat(String oldLocationData, SharedPreferences sp) {
+    /**
+     * @return true if the location was converted
+     */
+    private static boolean convertLocationToNewFormat(ExtensionSettings settings, SharedPreferences sp) {
 
-        if (oldLocationData.contains("/") || sUseCurrentLocation)
-            return;
+        if (settings.setLocation.contains("/") || settings.useCurrentLocation)
+            return false;
 
         SharedPreferences.Editor editor = sp.edit();
-        editor.putString(PREF_WEATHER_LOCATION, oldLocationData.replaceFirst(",", "/") + "/0.0/0.0");
+        editor.putString(PREF_WEATHER_LOCATION, settings.setLocation.replaceFirst(",", "/") + "/0.0/0.0");
         editor.apply();
+        return true;
+    }
+
+    /**
+     * @return Current settings, safe to use from any thread
+     */
+    public static ExtensionSettings getSettings() {
+        return sSettings;
     }
 
     /**
      * @return App's API key
      */
     public static String getWeatherAPIKey() {
-        return sWeatherAPIKey;
+        return sSettings.weatherAPIKey;
     }
 
     /**
      * @return App's weather units setting
      */
     public static String getWeatherUnits() {
-        return sWeatherUnits;
+        return sSettings.weatherUnits;
     }
 
     /*
@@ -620,63 +877,66 @@ public class BetterWeatherExtension extends DashClockExtension {
      * @return ExtensionData for DashClock
      */
     private ExtensionData renderExtensionData(BetterWeatherData weatherData) {
+        ExtensionData extensionData = getRenderPlan().render(weatherData, mExtraLocationsWeather);
+        LOGD(TAG, "Created ExtensionData, " + extensionData.expandedTitle());
+        return extensionData;
+    }
 
-        if (weatherData.errorCode != BetterWeatherData.ErrorCodes.NONE) {
-
-            int[] errorStrings = BetterWeatherData.getErrorMessage(weatherData.errorCode);
-
-            @SuppressWarnings("ResourceType") ExtensionData extensionData = new ExtensionData()
-                    .visible(true)
-                    .status(getString(R.string.error_status))
-                    .expandedTitle(getString(errorStrings[0]))
-                    .expandedBody(getString(errorStrings[1]))
-                    .icon(getConditionIconId(-1))
-                    .clickIntent(prepareClickIntent());
-
-            LOGD(TAG, "Created error data, " + extensionData.expandedTitle());
-
-            return extensionData;
-        } else {
-
-            String temperature = weatherData.hasValidTemperature()
-                    ? getString(R.string.temperature_template, weatherData.temperature)
-                    : getString(R.string.status_none);
-
-
-            String status = formatStatusText(weatherData, temperature);
-
-            int conditionIconId = getConditionIconId(weatherData.conditionCode);
-
-            @SuppressWarnings("ResourceType") String conditionText = getString(BetterWeatherData.getStatusText(weatherData.conditionCode));
-
-            StringBuilder expandedBody = formatExpendedBody(weatherData);
+    /**
+     * @return The render plan for the current settings and locale, built if needed
+     */
+    private RenderPlan getRenderPlan() {
+        ExtensionSettings settings = sSettings;
+        Locale locale = getResources().getConfiguration().locale;
+        if (mRenderPlan != null && mRenderPlan.isValidFor(settings, locale)) {
+            return mRenderPlan;
+        }
 
-            Intent clickIntent = prepareClickIntent();
+        mRenderPlan = new RenderPlan(this, settings, prepareClickIntent(settings));
+        LOGD(TAG, "Built a new render plan");
+        return mRenderPlan;
+    }
 
-            ExtensionData extData = new ExtensionData()
-                    .visible(true)
-                    .status(status)
-                    .expandedTitle(getString(R.string.weather_expanded_title_template,
-                            temperature + sWeatherUnits.toUpperCase(Locale.getDefault()),
-                            conditionText))
-                    .icon(conditionIconId)
-                    .expandedBody(expandedBody.toString());
+    /**
+     * Sends the data to DashClock unless it renders exactly like the last data sent
+     *
+     * @return true if the data was sent
+     */
+    private boolean publishIfChanged(ExtensionData extensionData) {
+        String fingerprint = getFingerprint(extensionData);
+        if (fingerprint.equals(mLastPublishedFingerprint)) {
+            mSuppressedUpdates++;
+            LOGD(TAG, "Data didn't change, not publishing it (" + mSuppressedUpdates + " updates suppressed)");
+            return false;
+        }
 
-            LOGD(TAG, "Created ExtensionData, " + extData.expandedTitle());
+        publishUpdate(extensionData);
+        mLastPublishedFingerprint = fingerprint;
+        return true;
+    }
 
-            return extData.clickIntent(clickIntent);
-        }
+    /**
+     * @return Everything DashClock displays from the data, as a single string
+     */
+    private static String getFingerprint(ExtensionData extensionData) {
+        Intent clickIntent = extensionData.clickIntent();
+        return extensionData.visible() + "\n" + extensionData.icon()
+                + "\n" + extensionData.status()
+                + "\n" + extensionData.expandedTitle()
+                + "\n" + extensionData.expandedBody()
+                + "\n" + ((clickIntent != null) ? clickIntent.toUri(Intent.URI_INTENT_SCHEME) : "");
     }
 
     /**
      * Creates the intent from the settings
      *
+     * @param settings Settings to create the intent from
      * @return Intent from the settings
      */
-    private Intent prepareClickIntent() {
-        Intent clickIntent = sWeatherIntent;
+    private Intent prepareClickIntent(ExtensionSettings settings) {
+        Intent clickIntent = settings.weatherIntent;
 
-        if (sRefreshOnTouch) {
+        if (settings.refreshOnTouch) {
             clickIntent = REFRESH_INTENT;
         }
         //Shortcut is set to Default
@@ -689,9 +949,9 @@ public class BetterWeatherExtension extends DashClockExtension {
                 LOGE(TAG, "Malformed URI exception");
             }
 
-            if (!sUseCurrentLocation) {
+            if (!settings.useCurrentLocation) {
                 try {
-                    intentURI = new URI("http", "www.google.com", "/search", "q=weather " + WeatherLocationPreference.getDisplayValue(this, sSetLocation), null);
+                    intentURI = new URI("http", "www.google.com", "/search", "q=weather " + WeatherLocationPreference.getDisplayValue(this, settings.setLocation), null);
 
                 } catch (URISyntaxException e) {
                     LOGE(TAG, "Malformed URI exception");
@@ -704,208 +964,11 @@ public class BetterWeatherExtension extends DashClockExtension {
             }
 
             assert intentURI != null;
+            // The settings' intent is shared, it is copied before being changed
+            clickIntent = new Intent(clickIntent);
             clickIntent.setData(Uri.parse(intentURI.toASCIIString()));
             LOGD(TAG, "Intent URI: " + clickIntent.getData());
         }
         return clickIntent;
     }
-
-    /**
-     * Formats the expended body's text from the weather data
-     *
-     * @param weatherData Weather data from the API
-     * @return Formatted data
-     */
-    private StringBuilder formatExpendedBody(BetterWeatherData weatherData) {
-        StringBuilder expandedBody = new StringBuilder();
-
-        if (sShowFeelsLike && weatherData.feelsLike != weatherData.temperature && weatherData.feelsLike != BetterWeatherData.INVALID_TEMPERATURE) {
-            expandedBody.append(getString(R.string.wind_chill_template, weatherData.feelsLike));
-            expandedBody.append("\n");
-        }
-
-        if (sShowHumidity || sShowWindDetails) {
-            StringBuilder detailsLine = new StringBuilder();
-            if (sShowWindDetails && !"".equals(weatherData.windSpeed)) {
-                // Western users.
-                //      "Wind: SW 1 mph"
-                // Asian users with their wind_details_template in values-*
-                //      "WIND: DIRECTION PREFIX SPEED UNIT"
-                String speed = BetterWeatherData.convertSpeedUnits(sWeatherUnits, weatherData.windSpeed, sSpeedUnits);
-                String unit = getSpeedUnitDisplayValue(sSpeedUnits);
-                String prefix = getSpeedUnitDisplayPrefixValue(sSpeedUnits);
-                @SuppressWarnings("ResourceType") String windDirection = getString(BetterWeatherData.getWindDirectionText(weatherData.windDirection));
-                detailsLine.append(getString(R.string.wind_details_template, windDirection, speed, unit, prefix));
-
-                if (sShowWindLabel) {
-                    // For example, "Wind: SW 1 mph (Light breeze)"
-                    @SuppressWarnings("ResourceType") String speedLabel = getString(BetterWeatherData.getWindSpeedLabel(sWeatherUnits, weatherData.windSpeed));
-                    detailsLine.append(" (").append(speedLabel).append(")");
-                }
-                if (sShowHumidity) {
-                    // if sShowWindLabel, then detailsLine can be a little long.
-                    detailsLine.append(sShowWindLabel ? "\n" : ", ");
-                }
-
-            }
-            if (sShowHumidity)
-                detailsLine.append(getString(R.string.humidity_template, weatherData.humidity)).append("%");
-
-            expandedBody.append(detailsLine.toString());
-        }
-
-        if (sShowTodayForecast) {
-            if (sShowHumidity || sShowWindDetails) expandedBody.append("\n");
-            int todayForecastTextId = BetterWeatherData.getStatusText(weatherData.todayForecastConditionCode);
-            @SuppressWarnings("ResourceType") String todayForecastText = getString(todayForecastTextId);
-            expandedBody.append((sInvertHighLowTemps) ?
-                    getString(R.string.today_forecast_template, todayForecastText, weatherData.todayHigh, weatherData.todayLow) :
-                    getString(R.string.today_forecast_template, todayForecastText, weatherData.todayLow, weatherData.todayHigh));
-        }
-
-        if (sShowTomorrowForecast) {
-            if (sShowTodayForecast || sShowHumidity || sShowWindDetails) expandedBody.append("\n");
-            int tomorrowForecastTextId = BetterWeatherData.getStatusText(weatherData.tomorrowForecastConditionCode);
-            @SuppressWarnings("ResourceType") String tomorrowForecastText = getString(tomorrowForecastTextId);
-            expandedBody.append((sInvertHighLowTemps) ?
-                    getString(R.string.tomorrow_forecast_template, tomorrowForecastText, weatherData.tomorrowHigh, weatherData.tomorrowLow) :
-                    getString(R.string.tomorrow_forecast_template, tomorrowForecastText, weatherData.tomorrowLow, weatherData.tomorrowHigh));
-        }
-
-        if (!sHideLocationName) {
-            if (sShowHumidity || sShowTodayForecast || sShowTomorrowForecast || sShowWindDetails)
-                expandedBody.append("\n");
-
-            // Irrespective of sUseCurrentLocation, weatherData.location has its value,
-            // because getLocationInfoFromSettings called before calling this formatExpendedBody() method
-            // we prepared location field from settings already.
-            String displayLocationName = weatherData.location;
-
-            // displayLocationName shown in pref setting has always "small, large" format.
-            // However asian users can customize location name in WIDGET with location_template
-            // having a form like "%2$s %1$s", in which %1$s is small, %2$s is large location name.
-            String[] locs = displayLocationName.split(",");
-            String smallLocation, largeLocation;
-            if (locs.length == 2) {
-                smallLocation = locs[0].trim();
-                largeLocation = locs[1].trim();
-            } else {
-                smallLocation = displayLocationName;
-                largeLocation = "";
-            }
-            expandedBody.append(getString(R.string.location_template, smallLocation, largeLocation));
-
-        }
-
-        return expandedBody;
-    }
-
-    /**
-     * Formats the status text depending on the settings
-     *
-     * @param weatherData Weather data from the API
-     * @param temperature Temperature formatted for validity
-     * @return Formatted status text
-     */
-    private String formatStatusText(BetterWeatherData weatherData, String temperature) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(this);
-        sShowHighlow = sp.getBoolean(PREF_WEATHER_SHOW_HIGHLOW, sShowHighlow);
-
-        String status = temperature;
-
-        if (sShowHighlow) {
-            status += "\n" + ((!sInvertHighLowTemps) ?
-                    getString(R.string.highlow_template, weatherData.todayLow, weatherData.todayHigh) :
-                    getString(R.string.highlow_template, weatherData.todayHigh, weatherData.todayLow));
-        }
-        return status;
-    }
-
-    /**
-     * Gets the appropriate icon from the right icon theme
-     *
-     * @param conditionCode The status code for the current condition
-     * @return Resource ID for the icon
-     */
-    private int getConditionIconId(int conditionCode) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(this);
-        String sIconTheme = sp.getString(PREF_WEATHER_ICON_THEME, CLIMACONS_ICON_THEME);
-
-        return IconThemeFactory.getIconThemeFromSetting(sIconTheme).getConditionIcon(conditionCode);
-    }
-
-    /**
-     * Gets the wind speed unit from the settings
-     *
-     * @param speedUnitIndex Index to fetch
-     * @return Wind speed unit
-     */
-    private String getSpeedUnitDisplayValue(int speedUnitIndex) {
-        // array R.array.pref_weather_speed_units_display_names is for use in pref menu.
-        // array R.array.weather_speed_units_display_names is for use in widget.
-        // For asian users, two arrays may be not same, so it is modified.
-        String[] units = getResources().getStringArray(R.array.weather_speed_units_display_names);
-        if (speedUnitIndex >= 0 && speedUnitIndex < units.length)
-            return units[speedUnitIndex];
-        return units[0];
-    }
-
-    /**
-     * Gets the wind speed unit prefix for asian users
-     *
-     * @param speedUnitIndex Index to fetch
-     * @return Wind speed unit prefix
-     */
-    private String getSpeedUnitDisplayPrefixValue(int speedUnitIndex) {
-        String[] prefixes = getResources().getStringArray(R.array.weather_speed_units_display_prefix_names);
-        if (speedUnitIndex >= 0 && speedUnitIndex < prefixes.length)
-            return prefixes[speedUnitIndex];
-        return prefixes[0];
-    }
-
-    /*
-     * Methods used for Location updates and management
-     */
-
-    /**
-     * Disables the location listener
-     */
-    private void disableOneTimeLocationListener() {
-        if (mOneTimeLocationListenerActive) {
-            LocationManager lm = (LocationManager) getSystemService(Context.LOCATION_SERVICE);
-            if (ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED && ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_COARSE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
-                LOGE(TAG, "Location permission was not granted, cannot remove location updates");
-                return;
-            }
-            lm.removeUpdates(mOneTimeLocationListener);
-            mOneTimeLocationListenerActive = false;
-        }
-    }
-
-    /**
-     * Detects when location changes or if the service is disabled
-     */
-    private LocationListener mOneTimeLocationListener = new LocationListener() {
-        @Override
-        public void onLocationChanged(Location location) {
-            LOGD(TAG, "Location changed, new location : " + location.getLatitude() + ", " + location.getLongitude());
-            if (sUseCurrentLocation)
-                new RefreshWeatherTask(location).execute();
-            disableOneTimeLocationListener();
-        }
-
-        @Override
-        public void onStatusChanged(String s, int i, Bundle bundle) {
-        }
-
-        @Override
-        public void onProviderEnabled(String s) {
-        }
-
-        @Override
-        public void onProviderDisabled(String s) {
-            LOGD(TAG, "Provider disabled");
-            publishUpdate(new BetterWeatherData(BetterWeatherData.ErrorCodes.LOCATION));
-        }
-    };
 }
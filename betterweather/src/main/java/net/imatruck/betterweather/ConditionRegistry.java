@@ -0,0 +1,111 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather;
+
+import net.imatruck.betterweather.core.ConditionCodes;
+
+/**
+ * Lookup tables for the condition codes, shared by the weather APIs, the status texts, the
+ * icon themes and the Pebble app.
+ * The tables follow {@link ConditionCodes}: one entry per Yahoo! condition code, in order
+ * from {@value #MIN_CODE}. Adding a theme or a display means adding such a table, adding an
+ * API means adding a {@link ConditionCodes.ProviderTable}.
+ */
+public final class ConditionRegistry {
+
+    public static final int MIN_CODE = ConditionCodes.MIN_CODE;
+    public static final int MAX_CODE = ConditionCodes.MAX_CODE;
+    /**
+     * Number of entries each table must have
+     */
+    public static final int CODE_COUNT = ConditionCodes.CODE_COUNT;
+
+    private static final int[] STATUS_TEXTS = checkTable(new int[]{
+            R.string.cond_na,                       // -1 not available
+            R.string.cond_tornado,                  // 0 tornado
+            R.string.cond_tropical_storm,           // 1 tropical storm
+            R.string.cond_hurricane,                // 2 hurricane
+            R.string.cond_severe_thunderstorms,     // 3 severe thunderstorms
+            R.string.cond_thunderstorms,            // 4 thunderstorms
+            R.string.cond_mixed_rain_and_snow,      // 5 mixed rain and snow
+            R.string.cond_mixed_rain_and_sleet,     // 6 mixed rain and sleet
+            R.string.cond_mixed_snow_and_sleet,     // 7 mixed snow and sleet
+            R.string.cond_freezing_drizzle,         // 8 freezing drizzle
+            R.string.cond_drizzle,                  // 9 drizzle
+            R.string.cond_freezing_rain,            // 10 freezing rain
+            R.string.cond_showers,                  // 11 showers
+            R.string.cond_showers,                  // 12 showers
+            R.string.cond_snow_flurries,            // 13 snow flurries
+            R.string.cond_light_snow_showers,       // 14 light snow showers
+            R.string.cond_blowing_snow,             // 15 blowing snow
+            R.string.cond_snow,                     // 16 snow
+            R.string.cond_hail,                     // 17 hail
+            R.string.cond_sleet,                    // 18 sleet
+            R.string.cond_dust,                     // 19 dust
+            R.string.cond_foggy,                    // 20 foggy
+            R.string.cond_haze,                     // 21 haze
+            R.string.cond_smoky,                    // 22 smoky
+            R.string.cond_breezy,                   // 23 blustery
+            R.string.cond_windy,                    // 24 windy
+            R.string.cond_cold,                     // 25 cold
+            R.string.cond_cloudy,                   // 26 cloudy
+            R.string.cond_mostly_cloudy,            // 27 mostly cloudy (night)
+            R.string.cond_mostly_cloudy,            // 28 mostly cloudy (day)
+            R.string.cond_partly_cloudy,            // 29 partly cloudy (night)
+            R.string.cond_partly_cloudy,            // 30 partly cloudy (day)
+            R.string.cond_clear,                    // 31 clear (night)
+            R.string.cond_sunny,                    // 32 sunny
+            R.string.cond_fair,                     // 33 fair (night)
+            R.string.cond_fair,                     // 34 fair (day)
+            R.string.cond_mixed_rain_and_hail,      // 35 mixed rain and hail
+            R.string.cond_hot,                      // 36 hot
+            R.string.cond_isolated_thunderstorms,   // 37 isolated thunderstorms
+            R.string.cond_scattered_thunderstorms,  // 38 scattered thunderstorms
+            R.string.cond_scattered_thunderstorms,  // 39 scattered thunderstorms
+            R.string.cond_scattered_showers,        // 40 scattered showers
+            R.string.cond_heavy_snow,               // 41 heavy snow
+            R.string.cond_scattered_snow_showers,   // 42 scattered snow showers
+            R.string.cond_heavy_snow,               // 43 heavy snow
+            R.string.cond_partly_cloudy,            // 44 partly cloudy
+            R.string.cond_thundershowers,           // 45 thundershowers
+            R.string.cond_snow_showers,             // 46 snow showers
+            R.string.cond_isolated_thundershowers   // 47 isolated thundershowers
+    }, "status texts");
+
+    private ConditionRegistry() {
+    }
+
+    /**
+     * @see ConditionCodes#lookup(int[], int)
+     */
+    public static int lookup(int[] table, int conditionCode) {
+        return ConditionCodes.lookup(table, conditionCode);
+    }
+
+    /**
+     * @return String resource describing the condition
+     */
+    public static int getStatusText(int conditionCode) {
+        return lookup(STATUS_TEXTS, conditionCode);
+    }
+
+    /**
+     * @see ConditionCodes#checkTable(int[], String)
+     */
+    public static int[] checkTable(int[] table, String name) {
+        return ConditionCodes.checkTable(table, name);
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather;
+
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.text.TextUtils;
+
+import net.imatruck.betterweather.settings.AppChooserPreference;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable copy of the extension's settings. A new one is read when a preference changes and
+ * replaces the previous one in a single step, so code running on other threads always sees a
+ * consistent set of values without reading the preferences itself.
+ */
+public final class ExtensionSettings {
+
+    /**
+     * Values used when a preference was never set
+     */
+    public static final ExtensionSettings DEFAULTS = new ExtensionSettings();
+
+    public final String weatherUnits;
+    public final int speedUnits;
+    /**
+     * Location set in the settings, empty when the current location is used
+     */
+    public final String setLocation;
+    public final boolean useCurrentLocation;
+    /**
+     * Other locations set in the settings, in the same format as {@link #setLocation}
+     */
+    public final List<String> extraLocations;
+    public final boolean useOnlyNetworkLocation;
+    public final boolean showTodayForecast;
+    public final boolean showTomorrowForecast;
+    public final boolean refreshOnTouch;
+    /**
+     * Intent from the shortcut setting, must be copied before being modified
+     */
+    public final Intent weatherIntent;
+    /**
+     * In minutes, 0 if refreshing is only done by DashClock
+     */
+    public final int refreshInterval;
+    public final boolean showRefreshToast;
+    public final boolean showHighlow;
+    public final String iconTheme;
+    public final boolean hideLocationName;
+    public final boolean showWindDetails;
+    public final boolean showWindLabel;
+    public final boolean showFeelsLike;
+    public final boolean showHumidity;
+    public final boolean invertHighLowTemps;
+    public final boolean pebbleEnable;
+    public final boolean pebbleShowFeelsLike;
+    public final String weatherAPI;
+    public final String weatherAPIKey;
+
+    private ExtensionSettings() {
+        weatherUnits = "f";
+        speedUnits = 0;
+        setLocation = "";
+        useCurrentLocation = true;
+        extraLocations = Collections.emptyList();
+        useOnlyNetworkLocation = false;
+        showTodayForecast = false;
+        showTomorrowForecast = false;
+        refreshOnTouch = false;
+        weatherIntent = BetterWeatherExtension.DEFAULT_WEATHER_INTENT;
+        refreshInterval = 60;
+        showRefreshToast = false;
+        showHighlow = false;
+        iconTheme = BetterWeatherExtension.CLIMACONS_ICON_THEME;
+        hideLocationName = false;
+        showWindDetails = false;
+        showWindLabel = false;
+        showFeelsLike = false;
+        showHumidity = false;
+        invertHighLowTemps = false;
+        pebbleEnable = false;
+        pebbleShowFeelsLike = true;
+        weatherAPI = BetterWeatherExtension.YAHOO_WEATHER_API;
+        weatherAPIKey = "";
+    }
+
+    private ExtensionSettings(SharedPreferences sp, ExtensionSettings defaults) {
+        weatherUnits = sp.getString(BetterWeatherExtension.PREF_WEATHER_UNITS, defaults.weatherUnits);
+        speedUnits = parseInt(sp.getString(BetterWeatherExtension.PREF_WEATHER_SPEED_UNITS, null), defaults.speedUnits);
+        setLocation = sp.getString(BetterWeatherExtension.PREF_WEATHER_LOCATION, defaults.setLocation).trim();
+        useCurrentLocation = TextUtils.isEmpty(setLocation);
+        extraLocations = readExtraLocations(sp);
+        useOnlyNetworkLocation = sp.getBoolean(BetterWeatherExtension.PREF_WEATHER_USE_ONLY_NETWORK, defaults.useOnlyNetworkLocation);
+        showTodayForecast = sp.getBoolean(BetterWeatherExtension.PREF_WEATHER_SHOW_TODAY_FORECAST, defaults.showTodayForecast);
+        showTomorrowForecast = sp.getBoolean(BetterWeatherExtension.PREF_WEATHER_SHOW_TOMORROW_FORECAST, defaults.showTomorrowForecast);
+        refreshOnTouch = sp.getBoolean(BetterWeatherExtension.PREF_WEATHER_REFRESH_ON_TOUCH, defaults.refreshOnTouch);
+        weatherIntent = AppChooserPreference.getIntentValue(sp.getString(BetterWeatherExtension.PREF_WEATHER_SHORTCUT, null), BetterWeatherExtension.DEFAULT_WEATHER_INTENT);
+        refreshInterval = parseInt(sp.getString(BetterWeatherExtension.PREF_WEATHER_REFRESH_INTERVAL, null), defaults.refreshInterval);
+        showRefreshToast = sp.getBoolean(BetterWeatherExtension.PREF_WEATHER_SHOW_REFRESH_TOAST, defaults.showRefreshToast);
+        showHighlow = sp.getBoolean(BetterWeatherExtension.PREF_WEATHER_SHOW_HIGHLOW, defaults.showHighlow);
+        iconTheme = sp.getString(BetterWeatherExtension.PREF_WEATHER_ICON_THEME, defaults.iconTheme);
+        hideLocationName = sp.getBoolean(BetterWeatherExtension.PREF_WEATHER_HIDE_LOCATION_NAME, defaults.hideLocationName);
+        showWindDetails = sp.getBoolean(BetterWeatherExtension.PREF_WEATHER_SHOW_WIND_DETAILS, defaults.showWindDetails);
+        showWindLabel = sp.getBoolean(BetterWeatherExtension.PREF_WEATHER_SHOW_WIND_SPEED_AS_LABEL, defaults.showWindLabel);
+        showFeelsLike = sp.getBoolean(BetterWeatherExtension.PREF_WEATHER_SHOW_FEELS_LIKE, defaults.showFeelsLike);
+        showHumidity = sp.getBoolean(BetterWeatherExtension.PREF_WEATHER_SHOW_HUMIDITY, defaults.showHumidity);
+        invertHighLowTemps = sp.getBoolean(BetterWeatherExtension.PREF_WEATHER_INVERT_HIGHLOW, defaults.invertHighLowTemps);
+        pebbleEnable = sp.getBoolean(BetterWeatherExtension.PREF_PEBBLE_ENABLE, defaults.pebbleEnable);
+        pebbleShowFeelsLike = sp.getBoolean(BetterWeatherExtension.PREF_PEBBLE_SHOW_FEELS_LIKE, defaults.pebbleShowFeelsLike);
+        weatherAPI = sp.getString(BetterWeatherExtension.PREF_WEATHER_API, defaults.weatherAPI);
+        weatherAPIKey = sp.getString(BetterWeatherExtension.PREF_WEATHER_API_KEY, defaults.weatherAPIKey);
+    }
+
+    public static ExtensionSettings fromPreferences(SharedPreferences sp) {
+        return new ExtensionSettings(sp, DEFAULTS);
+    }
+
+    /**
+     * @return true if both settings fetch the same weather: same locations, units and API.
+     * Display settings don't matter, they are applied when the data is rendered.
+     */
+    public boolean fetchesSameWeather(ExtensionSettings other) {
+        return useCurrentLocation == other.useCurrentLocation
+                && TextUtils.equals(setLocation, other.setLocation)
+                && extraLocations.equals(other.extraLocations)
+                && TextUtils.equals(weatherUnits, other.weatherUnits)
+                && TextUtils.equals(weatherAPI, other.weatherAPI)
+                && TextUtils.equals(weatherAPIKey, other.weatherAPIKey);
+    }
+
+    /**
+     * @return The extra locations that are set, the empty value means none
+     */
+    private static List<String> readExtraLocations(SharedPreferences sp) {
+        List<String> locations = new ArrayList<String>(BetterWeatherExtension.PREF_WEATHER_EXTRA_LOCATIONS.length);
+        for (String key : BetterWeatherExtension.PREF_WEATHER_EXTRA_LOCATIONS) {
+            String location = sp.getString(key, "").trim();
+            if (location.indexOf('/') > 0) {
+                locations.add(location);
+            }
+        }
+        return Collections.unmodifiableList(locations);
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException nfe) {
+            return defaultValue;
+        }
+    }
+}
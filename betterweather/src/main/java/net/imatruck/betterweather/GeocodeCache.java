@@ -0,0 +1,154 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Persistent cache of reverse-geocoded places, so the places API doesn't have to be called
+ * on every refresh when the device stays in the same area.
+ * Coordinates are quantized to a grid of {@value #GRID_CELLS_PER_DEGREE} cells per degree
+ * (about 1 km), entries expire after {@link #TTL_MILLIS} and the least recently used entries
+ * are evicted past {@value #MAX_ENTRIES} entries.
+ */
+public class GeocodeCache {
+
+    private static final String PREFS_NAME = "geocode_cache";
+
+    private static final int GRID_CELLS_PER_DEGREE = 100;
+    private static final long TTL_MILLIS = 7 * 24 * 60 * 60 * 1000L; // 7 days
+    private static final int MAX_ENTRIES = 32;
+    /**
+     * The last use of an entry is only saved again once it's this old, so cache hits don't
+     * all write to disk. Eviction order is then only precise to this.
+     */
+    private static final long LAST_USED_RESOLUTION_MILLIS = 24 * 60 * 60 * 1000L; // 1 day
+
+    private static final String SEPARATOR = "|";
+
+    private final SharedPreferences mPreferences;
+
+    public GeocodeCache(Context context) {
+        mPreferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * @return The cached place for these coordinates and language, or null if there's none
+     */
+    public synchronized Place get(double lat, double lng, String lang) {
+        String key = makeKey(lat, lng, lang);
+        Entry entry = Entry.parse(mPreferences.getString(key, null));
+        if (entry == null) {
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        if (now - entry.created > TTL_MILLIS) {
+            mPreferences.edit().remove(key).apply();
+            return null;
+        }
+
+        if (now - entry.lastUsed > LAST_USED_RESOLUTION_MILLIS) {
+            entry.lastUsed = now;
+            mPreferences.edit().putString(key, entry.toString()).apply();
+        }
+        return entry.place;
+    }
+
+    public synchronized void put(double lat, double lng, String lang, String woeid, String displayName) {
+        long now = System.currentTimeMillis();
+        Entry entry = new Entry(now, now, new Place(woeid, displayName));
+
+        String key = makeKey(lat, lng, lang);
+        SharedPreferences.Editor editor = mPreferences.edit();
+        editor.putString(key, entry.toString());
+
+        Map<String, ?> entries = mPreferences.getAll();
+        if (entries.size() >= MAX_ENTRIES && !entries.containsKey(key)) {
+            String leastRecentlyUsedKey = null;
+            long leastRecentlyUsed = Long.MAX_VALUE;
+            for (Map.Entry<String, ?> e : entries.entrySet()) {
+                Entry cached = Entry.parse((String) e.getValue());
+                if (cached == null) {
+                    editor.remove(e.getKey());
+                } else if (cached.lastUsed < leastRecentlyUsed) {
+                    leastRecentlyUsed = cached.lastUsed;
+                    leastRecentlyUsedKey = e.getKey();
+                }
+            }
+            if (leastRecentlyUsedKey != null) {
+                editor.remove(leastRecentlyUsedKey);
+            }
+        }
+
+        editor.apply();
+    }
+
+    private static String makeKey(double lat, double lng, String lang) {
+        return String.format(Locale.US, "%s/%d/%d", lang,
+                Math.round(lat * GRID_CELLS_PER_DEGREE), Math.round(lng * GRID_CELLS_PER_DEGREE));
+    }
+
+    public static class Place {
+        public final String woeid;
+        public final String displayName;
+
+        public Place(String woeid, String displayName) {
+            this.woeid = woeid;
+            this.displayName = displayName;
+        }
+    }
+
+    /**
+     * Stored as "created|lastUsed|woeid|displayName"
+     */
+    private static class Entry {
+        final long created;
+        long lastUsed;
+        final Place place;
+
+        Entry(long created, long lastUsed, Place place) {
+            this.created = created;
+            this.lastUsed = lastUsed;
+            this.place = place;
+        }
+
+        static Entry parse(String value) {
+            if (value == null) {
+                return null;
+            }
+            String[] fields = value.split("\\" + SEPARATOR, 4);
+            if (fields.length != 4) {
+                return null;
+            }
+            try {
+                return new Entry(Long.parseLong(fields[0]), Long.parseLong(fields[1]),
+                        new Place(fields[2], fields[3]));
+            } catch (NumberFormatException nfe) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return created + SEPARATOR + lastUsed + SEPARATOR + place.woeid + SEPARATOR + place.displayName;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather;
+
+import android.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static net.imatruck.betterweather.YahooPlacesAPIClient.LocationSearchResult;
+
+/**
+ * Keeps the results of the last location searches. A query that isn't cached can be given a
+ * first answer from the results of a shorter query it starts with, to show while it is
+ * searched: the places API doesn't search by prefix, so these results may miss matches of
+ * the longer query.
+ */
+class LocationSearchCache {
+
+    private final LruCache<String, List<LocationSearchResult>> mEntries;
+
+    LocationSearchCache(int maxSize) {
+        mEntries = new LruCache<String, List<LocationSearchResult>>(maxSize);
+    }
+
+    /**
+     * @param query Query folded with {@link OfflineGeocoder#foldForSearch(String)}
+     * @return A copy of the cached results, or null if they aren't known
+     */
+    List<LocationSearchResult> get(String lang, String query) {
+        List<LocationSearchResult> results = mEntries.get(makeKey(lang, query));
+        return results != null ? new ArrayList<LocationSearchResult>(results) : null;
+    }
+
+    /**
+     * @param query Query folded with {@link OfflineGeocoder#foldForSearch(String)}
+     * @return The cached results, or the cached results of the longest shorter query that
+     * match this one, null if neither are known
+     */
+    List<LocationSearchResult> getRefined(String lang, String query) {
+        List<LocationSearchResult> results = get(lang, query);
+        if (results != null) {
+            return results;
+        }
+
+        for (int length = query.length() - 1; length > 0; length--) {
+            results = mEntries.get(makeKey(lang, query.substring(0, length)));
+            if (results != null) {
+                return refine(results, query);
+            }
+        }
+        return null;
+    }
+
+    void put(String lang, String query, List<LocationSearchResult> results) {
+        mEntries.put(makeKey(lang, query), new ArrayList<LocationSearchResult>(results));
+    }
+
+    private static List<LocationSearchResult> refine(List<LocationSearchResult> results, String query) {
+        List<LocationSearchResult> refined = new ArrayList<LocationSearchResult>();
+        for (LocationSearchResult result : results) {
+            String name = OfflineGeocoder.foldForSearch(result.displayName);
+            if (name.startsWith(query) || name.contains(" " + query)) {
+                refined.add(result);
+            }
+        }
+        return refined;
+    }
+
+    private static String makeKey(String lang, String query) {
+        return lang + "/" + query;
+    }
+}
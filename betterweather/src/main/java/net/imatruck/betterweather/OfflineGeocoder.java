@@ -0,0 +1,370 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.location.Location;
+
+import net.imatruck.betterweather.utils.LogUtils;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+import static net.imatruck.betterweather.utils.LogUtils.LOGD;
+
+/**
+ * Finds the populated place closest to coordinates, or the places whose name starts with some
+ * text, in an index bundled with the app. Location names still come from the places API, the
+ * index only has large cities and is used when the places API can't be reached, while
+ * location search uses it for instant suggestions.
+ * <p/>
+ * The index is the {@value #ASSET_NAME} asset, memory-mapped (it must be stored uncompressed),
+ * big-endian:
+ * <pre>
+ * header:  int magic "BWPI", int version, int cellsPerDegree, int bucketCount, int placeCount,
+ *          int searchCount
+ * buckets: bucketCount * (int cell, int firstPlace), sorted by cell
+ * places:  placeCount * (float lat, float lng, int woeid, int namesOffset), grouped by cell
+ * search:  searchCount * (int keyOffset, int place), sorted by key bytes
+ * names:   at namesOffset, from the start of the names: byte count, then count *
+ *          (byte length + language, short length + small name, short length + large name,
+ *          short length + country), the first names are the default ones
+ *          at keyOffset: byte length + key, a name folded with {@link #foldForSearch(String)}
+ * </pre>
+ * A place has a search key for each of its distinct small names.
+ * Strings are UTF-8. A place's cell is
+ * {@code floor((lat + 90) * cellsPerDegree) * 360 * cellsPerDegree + floor((lng + 180) * cellsPerDegree)},
+ * a lookup looks at every cell that can hold a place within {@link #MAX_DISTANCE_METERS}.
+ * <p/>
+ * The index is built by {@code tools/build_places_index.py}.
+ */
+public class OfflineGeocoder {
+
+    private static final String TAG = LogUtils.makeLogTag(OfflineGeocoder.class);
+
+    private static final String ASSET_NAME = "places.idx";
+
+    private static final int MAGIC = 0x42575049; // "BWPI"
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 6 * 4;
+    private static final int BUCKET_SIZE = 2 * 4;
+    private static final int PLACE_SIZE = 4 * 4;
+    private static final int SEARCH_ENTRY_SIZE = 2 * 4;
+
+    /**
+     * Finer grids would overflow the cell numbers
+     */
+    private static final int MAX_CELLS_PER_DEGREE = 100;
+
+    /**
+     * Places farther than this from the coordinates are not used, the area is considered
+     * unknown
+     */
+    private static final float MAX_DISTANCE_METERS = 20 * 1000;
+
+    /**
+     * Length of a degree of latitude, and of longitude at the equator
+     */
+    private static final double METERS_PER_DEGREE = 111195;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[\\s,'-]+");
+
+    private final ByteBuffer mIndex;
+    private final int mCellsPerDegree;
+    private final int mBucketCount;
+    private final int mPlaceCount;
+    private final int mSearchCount;
+    private final int mPlacesStart;
+    private final int mSearchStart;
+    private final int mNamesStart;
+
+    private OfflineGeocoder(ByteBuffer index) throws IOException {
+        if (index.capacity() < HEADER_SIZE || index.getInt(0) != MAGIC) {
+            throw new IOException("Not a places index");
+        }
+        if (index.getInt(4) != VERSION) {
+            throw new IOException("Unsupported places index version " + index.getInt(4));
+        }
+
+        mIndex = index;
+        mCellsPerDegree = index.getInt(8);
+        mBucketCount = index.getInt(12);
+        mPlaceCount = index.getInt(16);
+        mSearchCount = index.getInt(20);
+        mPlacesStart = HEADER_SIZE + mBucketCount * BUCKET_SIZE;
+        mSearchStart = mPlacesStart + mPlaceCount * PLACE_SIZE;
+        mNamesStart = mSearchStart + mSearchCount * SEARCH_ENTRY_SIZE;
+
+        if (mCellsPerDegree <= 0 || mCellsPerDegree > MAX_CELLS_PER_DEGREE || mBucketCount < 0
+                || mPlaceCount < 0 || mSearchCount < 0 || mNamesStart > index.capacity()) {
+            throw new IOException("Corrupted places index");
+        }
+    }
+
+    /**
+     * Maps the bundled index
+     *
+     * @return The geocoder, or null if the app has no index or it can't be read
+     */
+    public static OfflineGeocoder open(Context context) {
+        AssetFileDescriptor descriptor = null;
+        try {
+            descriptor = context.getAssets().openFd(ASSET_NAME);
+            FileChannel channel = new FileInputStream(descriptor.getFileDescriptor()).getChannel();
+            ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, descriptor.getStartOffset(), descriptor.getLength());
+            OfflineGeocoder geocoder = new OfflineGeocoder(index);
+            LOGD(TAG, "Opened places index with " + geocoder.mPlaceCount + " places");
+            return geocoder;
+        } catch (IOException ioe) {
+            LOGD(TAG, "No usable places index, places will only be looked up online: " + ioe.getMessage());
+            return null;
+        } finally {
+            if (descriptor != null) {
+                try {
+                    descriptor.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * @param lang Language in Yahoo's format ("en-US"), names in this language are used if the
+     *             index has them
+     * @return The closest place, or null if there's none close enough
+     */
+    public Place lookup(double lat, double lng, String lang) {
+        int row = (int) Math.floor((lat + 90) * mCellsPerDegree);
+        int col = (int) Math.floor((lng + 180) * mCellsPerDegree);
+        int rows = 180 * mCellsPerDegree;
+        int columns = 360 * mCellsPerDegree;
+
+        // Cells around the coordinates that can hold a place close enough, cells get narrower
+        // towards the poles so the widest span is taken at the latitude closest to them
+        int rowSpan = (int) Math.ceil(MAX_DISTANCE_METERS * mCellsPerDegree / METERS_PER_DEGREE);
+        double polarLat = Math.min(90, Math.abs(lat) + (double) rowSpan / mCellsPerDegree);
+        double columnMeters = METERS_PER_DEGREE * Math.cos(Math.toRadians(polarLat)) / mCellsPerDegree;
+        int firstCol = 0, lastCol = columns - 1;
+        if (columnMeters > 0) {
+            int colSpan = (int) Math.ceil(MAX_DISTANCE_METERS / columnMeters);
+            if (colSpan < columns / 2) {
+                firstCol = col - colSpan;
+                lastCol = col + colSpan;
+            }
+        }
+
+        int closest = -1;
+        float closestDistance = MAX_DISTANCE_METERS;
+        float[] distance = new float[1];
+
+        for (int r = Math.max(0, row - rowSpan); r <= Math.min(rows - 1, row + rowSpan); r++) {
+            for (int c = firstCol; c <= lastCol; c++) {
+                // Longitudes wrap around, latitudes don't
+                int wrapped = (c + columns) % columns;
+                int bucket = findBucket(r * columns + wrapped);
+                if (bucket < 0) {
+                    continue;
+                }
+
+                int end = (bucket + 1 < mBucketCount) ? getBucketFirstPlace(bucket + 1) : mPlaceCount;
+                for (int place = getBucketFirstPlace(bucket); place < end; place++) {
+                    int offset = mPlacesStart + place * PLACE_SIZE;
+                    Location.distanceBetween(lat, lng, mIndex.getFloat(offset), mIndex.getFloat(offset + 4), distance);
+                    if (distance[0] < closestDistance) {
+                        closestDistance = distance[0];
+                        closest = place;
+                    }
+                }
+            }
+        }
+
+        if (closest < 0) {
+            return null;
+        }
+        return readPlace(closest, lang);
+    }
+
+    /**
+     * @param prefix     Start of the name, accents and case are ignored
+     * @param lang       Language in Yahoo's format ("en-US")
+     * @param maxResults Maximum number of places returned
+     * @return Places whose name starts with prefix, in the order of their names
+     */
+    public List<Place> search(String prefix, String lang, int maxResults) {
+        List<Place> results = new ArrayList<Place>();
+        byte[] key = foldForSearch(prefix).getBytes(UTF_8);
+        if (key.length == 0) {
+            return results;
+        }
+
+        // Binary search for the first key that is not before the prefix
+        int low = 0, high = mSearchCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compareKey(middle, key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        List<Integer> seen = new ArrayList<Integer>();
+        for (int entry = low; entry < mSearchCount && results.size() < maxResults; entry++) {
+            if (compareKey(entry, key) != 0) {
+                break;
+            }
+            int place = mIndex.getInt(mSearchStart + entry * SEARCH_ENTRY_SIZE + 4);
+            if (seen.contains(place)) {
+                continue;
+            }
+            seen.add(place);
+
+            Place result = readPlace(place, lang);
+            if (result != null) {
+                results.add(result);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Search keys are lower case, without accents, words separated by one space
+     */
+    public static String foldForSearch(String name) {
+        if (name == null) {
+            return "";
+        }
+        String folded = Normalizer.normalize(name, Normalizer.Form.NFD);
+        folded = DIACRITICS.matcher(folded).replaceAll("");
+        folded = SEPARATORS.matcher(folded).replaceAll(" ");
+        return folded.toLowerCase(Locale.US).trim();
+    }
+
+    /**
+     * Compares the start of a search key with a prefix, byte by byte
+     *
+     * @return 0 if the key starts with the prefix, otherwise the order of the key relative to it
+     */
+    private int compareKey(int entry, byte[] prefix) {
+        int keyStart = mNamesStart + mIndex.getInt(mSearchStart + entry * SEARCH_ENTRY_SIZE);
+        int keyLength = mIndex.get(keyStart) & 0xFF;
+
+        int length = Math.min(keyLength, prefix.length);
+        for (int i = 0; i < length; i++) {
+            int difference = (mIndex.get(keyStart + 1 + i) & 0xFF) - (prefix[i] & 0xFF);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return keyLength < prefix.length ? -1 : 0;
+    }
+
+    /**
+     * Binary search in the buckets
+     *
+     * @return Index of the cell's bucket, -1 if the cell has no places
+     */
+    private int findBucket(int cell) {
+        int low = 0, high = mBucketCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleCell = mIndex.getInt(HEADER_SIZE + middle * BUCKET_SIZE);
+            if (middleCell < cell) {
+                low = middle + 1;
+            } else if (middleCell > cell) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private int getBucketFirstPlace(int bucket) {
+        return mIndex.getInt(HEADER_SIZE + bucket * BUCKET_SIZE + 4);
+    }
+
+    private Place readPlace(int place, String lang) {
+        int offset = mPlacesStart + place * PLACE_SIZE;
+
+        // Positioned reads on a copy, the mapped buffer is shared between threads
+        ByteBuffer names = mIndex.duplicate();
+        names.position(mNamesStart + mIndex.getInt(offset + 12));
+
+        String language = (lang != null && lang.length() >= 2) ? lang.substring(0, 2) : "";
+        String smallName = null, largeName = null, countryName = null;
+
+        int count = names.get() & 0xFF;
+        for (int i = 0; i < count; i++) {
+            String nameLanguage = readString(names, names.get() & 0xFF);
+            String small = readString(names, names.getShort() & 0xFFFF);
+            String large = readString(names, names.getShort() & 0xFFFF);
+            String country = readString(names, names.getShort() & 0xFFFF);
+            if (i == 0 || nameLanguage.equals(language)) {
+                smallName = small;
+                largeName = large;
+                countryName = country;
+                if (i > 0) {
+                    break;
+                }
+            }
+        }
+
+        if (smallName == null) {
+            return null;
+        }
+        String displayName = largeName.isEmpty() ? smallName : smallName + ", " + largeName;
+        return new Place(Integer.toString(mIndex.getInt(offset + 8)), displayName, countryName,
+                mIndex.getFloat(offset), mIndex.getFloat(offset + 4));
+    }
+
+    private static String readString(ByteBuffer buffer, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    public static class Place {
+        public final String woeid;
+        /**
+         * In the "small, large" format used by the places API client
+         */
+        public final String displayName;
+        public final String country;
+        public final float lat, lng;
+
+        Place(String woeid, String displayName, String country, float lat, float lng) {
+            this.woeid = woeid;
+            this.displayName = displayName;
+            this.country = country;
+            this.lat = lat;
+            this.lng = lng;
+        }
+    }
+}
@@ -22,6 +22,7 @@ import android.content.Intent;
 import com.getpebble.android.kit.PebbleKit;
 import com.getpebble.android.kit.util.PebbleDictionary;
 
+import net.imatruck.betterweather.core.PebblePayload;
 import net.imatruck.betterweather.utils.LogUtils;
 
 import java.util.UUID;
@@ -34,17 +35,11 @@ public class Pebble {
 
     private static PebbleKit.PebbleDataReceiver dataReceiver;
 
-    private static final int ICON_ATM = 0;
-    private static final int ICON_CLEAR = 1;
-    private static final int ICON_CLOUDS = 2;
-    private static final int ICON_DRIZZLE = 3;
-    private static final int ICON_EXTREME = 4;
-    private static final int ICON_RAIN = 5;
-    private static final int ICON_SNOW = 6;
-    private static final int ICON_STORM = 7;
-    private static final int ICON_CLOUDS_NIGHT = 8;
-    private static final int ICON_CLEAR_NIGHT = 9;
-    private static final int ICON_UNKNOWN = 10;
+    /**
+     * Last icon and temperature sent to the watch, null if it has to be sent again
+     */
+    private static String lastPayload;
+    private static int suppressedUpdates = 0;
 
     public static void registerPebbleDataReceived(Context appContext) {
         PebbleKit.registerReceivedDataHandler(appContext, getDataReceiver());
@@ -58,6 +53,8 @@ public class Pebble {
                     PebbleKit.sendAckToPebble(context, transactionId);
 
                     if (data.getInteger(0) == 1) {
+                        // The watch app asked for the weather, it has to be sent even if it didn't change
+                        forgetLastPayload();
                         requestWeatherUpdate(context);
                     }
                 }
@@ -77,11 +74,22 @@ public class Pebble {
                 try {
                     LogUtils.LOGD(TAG, "Pebble is connected!");
 
+                    PebblePayload payload = PebblePayload.build(weatherData.conditionCode,
+                            weatherData.temperature, weatherData.feelsLike, showFeelsLike,
+                            BetterWeatherExtension.getWeatherUnits());
+                    if (payload.getKey().equals(lastPayload)) {
+                        suppressedUpdates++;
+                        LogUtils.LOGD(TAG, "Weather didn't change, not sending it to Pebble ("
+                                + suppressedUpdates + " updates suppressed).");
+                        return;
+                    }
+
                     PebbleDictionary pebbleData = new PebbleDictionary();
-                    pebbleData.addInt8(0, (byte) getWeatherIconId(weatherData.conditionCode));
-                    pebbleData.addString(1, getDisplayTemperature(weatherData, showFeelsLike));
+                    pebbleData.addInt8(PebblePayload.KEY_ICON, payload.iconId);
+                    pebbleData.addString(PebblePayload.KEY_TEMPERATURE, payload.temperature);
 
                     PebbleKit.sendDataToPebble(appContext, APP_UUID, pebbleData);
+                    lastPayload = payload.getKey();
                     LogUtils.LOGD(TAG, "Data sent to Pebble.");
                 } catch (NullPointerException npe) {
                     npe.printStackTrace();
@@ -91,84 +99,18 @@ public class Pebble {
             }
         } else {
             LogUtils.LOGD(TAG, "Pebble not connected.");
+            // Whatever was sent before may be gone when the watch reconnects
+            forgetLastPayload();
         }
 
     }
 
-    private static String getDisplayTemperature(BetterWeatherData weatherData, boolean showFeelsLike) {
-        StringBuilder displayTemp = new StringBuilder();
-        if (weatherData.feelsLike < weatherData.temperature && showFeelsLike) {
-            displayTemp.append(Integer.toString(weatherData.feelsLike)).append("\u002A");
-        } else {
-            displayTemp.append(Integer.toString(weatherData.temperature)).append("\u00B0");
-        }
-        return displayTemp.append(BetterWeatherExtension.getWeatherUnits().toUpperCase()).toString();
-    }
-
-    private static int getWeatherIconId(int conditionCode) {
-
-        switch (conditionCode) {
-            case 20: // foggy
-            case 19: // dust
-            case 21: // haze
-            case 24: // windy
-            case 22: // smoky
-                return ICON_ATM;
-            case 27: // mostly cloudy (night)
-            case 29: // partly cloudy (night)
-                return ICON_CLOUDS_NIGHT;
-            case 26: // cloudy
-            case 28: // mostly cloudy (day)
-            case 30: // partly cloudy (day)
-            case 44: // partly cloudy
-                return ICON_CLOUDS;
-            case 31: // clear (night)
-            case 33: // fair (night)
-                return ICON_CLEAR_NIGHT;
-            case 34: // fair (day)
-            case 32: // sunny
-            case 23: // blustery
-            case 36: // hot
-                return ICON_CLEAR;
-            case 9: // drizzle
-                return ICON_DRIZZLE;
-            case 35: // mixed rain and hail
-            case 11: // showers
-            case 12: // showers
-            case 40: // scattered showers
-                return ICON_RAIN;
-            case 0: // tornado
-            case 1: // tropical storm
-            case 2: // hurricane
-                return ICON_EXTREME;
-            case 4: // thunderstorms
-            case 37: // isolated thunderstorms
-            case 45: // thundershowers
-            case 47: // isolated thundershowers
-            case 3: // severe thunderstorms
-            case 38: // scattered thunderstorms
-            case 39: // scattered thunderstorms
-                return ICON_STORM;
-            case 15: // blowing snow
-            case 16: // snow
-            case 25: // cold
-            case 46: // snow showers
-            case 13: // snow flurries
-            case 42: // scattered snow showers
-            case 41: // heavy snow
-            case 43: // heavy snow
-            case 5: // mixed rain and snow
-            case 6: // mixed rain and sleet
-            case 7: // mixed snow and sleet
-            case 18: // sleet
-            case 8: // freezing drizzle
-            case 10: // freezing rain
-            case 14: // light snow showers
-            case 17: // hail
-                return ICON_SNOW;
-        }
-
-        return ICON_UNKNOWN;
+    /**
+     * Makes the next {@link #sendWeather(Context, BetterWeatherData, boolean)} send the weather
+     * even if it is the same as last time
+     */
+    public static void forgetLastPayload() {
+        lastPayload = null;
     }
 
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather;
+
+import android.os.SystemClock;
+
+import net.imatruck.betterweather.utils.LogUtils;
+
+import static net.imatruck.betterweather.utils.LogUtils.LOGD;
+import static net.imatruck.betterweather.utils.LogUtils.LOGW;
+
+/**
+ * Makes sure only one refresh runs at a time.
+ * Refreshes can be triggered from many places (touch, alarms, Pebble, location updates), a
+ * trigger that comes in while a refresh is running is merged into it and gets its result
+ * when it's published. A forced trigger (a tap) merged into a refresh that wasn't forced
+ * gets a forced refresh of its own once the running one is done.
+ */
+public class RefreshCoordinator {
+
+    private static final String TAG = LogUtils.makeLogTag(RefreshCoordinator.class);
+
+    /**
+     * A refresh that didn't finish after this long is considered lost
+     */
+    private static final long MAX_REFRESH_MILLIS = 2 * 60 * 1000;
+
+    private static final long IDLE = -1;
+
+    private long mRefreshStartedAt = IDLE;
+    /**
+     * The running refresh was started by a forced trigger
+     */
+    private boolean mRunForced = false;
+    /**
+     * A forced trigger was merged into a refresh that wasn't forced
+     */
+    private boolean mForcePending = false;
+    /**
+     * Triggers merged into the running refresh, and into every refresh so far
+     */
+    private int mMergedRefreshes = 0;
+    private int mCollapsedRefreshes = 0;
+
+    /**
+     * Called when a refresh is triggered
+     *
+     * @param forced Whether the trigger asks for a refresh that doesn't reuse earlier results
+     * @return true if the caller should start the refresh, false if it was merged in the
+     * running one
+     */
+    public synchronized boolean beginRefresh(boolean forced) {
+        if (isRefreshing()) {
+            mMergedRefreshes++;
+            mCollapsedRefreshes++;
+            if (forced && !mRunForced) {
+                mForcePending = true;
+            }
+            return false;
+        }
+        mRefreshStartedAt = SystemClock.elapsedRealtime();
+        mRunForced = forced || mForcePending;
+        mForcePending = false;
+        return true;
+    }
+
+    /**
+     * @return true if the running refresh was started by a forced trigger
+     */
+    public synchronized boolean isForced() {
+        return mRunForced;
+    }
+
+    /**
+     * Called when a refresh is done, successfully or not
+     *
+     * @return true if a forced trigger was merged into this refresh while it wasn't forced,
+     * the caller should then start a forced refresh
+     */
+    public synchronized boolean finishRefresh() {
+        if (mMergedRefreshes > 0) {
+            LOGD(TAG, "Refresh done, " + mMergedRefreshes + " triggers merged into it ("
+                    + mCollapsedRefreshes + " refreshes saved so far)");
+        }
+        boolean forcePending = mForcePending;
+        mMergedRefreshes = 0;
+        mRunForced = false;
+        mForcePending = false;
+        mRefreshStartedAt = IDLE;
+        return forcePending;
+    }
+
+    private boolean isRefreshing() {
+        if (mRefreshStartedAt == IDLE) {
+            return false;
+        }
+        if (SystemClock.elapsedRealtime() - mRefreshStartedAt > MAX_REFRESH_MILLIS) {
+            LOGW(TAG, "Previous refresh never finished, ignoring it");
+            mRefreshStartedAt = IDLE;
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.res.Resources;
+import android.util.SparseArray;
+
+import com.google.android.apps.dashclock.api.ExtensionData;
+
+import net.imatruck.betterweather.core.StringTemplate;
+import net.imatruck.betterweather.iconthemes.IIconTheme;
+import net.imatruck.betterweather.iconthemes.IconThemeFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Everything {@link BetterWeatherExtension} needs to render weather data, resolved once for a
+ * locale and a set of settings: templates are parsed, unit names and the icon theme are looked
+ * up, and strings are only read from the resources the first time they are used. Rendering
+ * then formats into a single reused builder without touching the resources or the settings.
+ * <p/>
+ * A plan must be rebuilt when {@link #isValidFor(ExtensionSettings, Locale)} is false.
+ */
+class RenderPlan {
+
+    private final Resources mResources;
+    private final Locale mLocale;
+    private final ExtensionSettings mSettings;
+    private final IIconTheme mIconTheme;
+    private final Intent mClickIntent;
+
+    private final StringTemplate mTemperatureTemplate;
+    private final StringTemplate mHighLowTemplate;
+    private final StringTemplate mExpandedTitleTemplate;
+    private final StringTemplate mTodayForecastTemplate;
+    private final StringTemplate mTomorrowForecastTemplate;
+    private final StringTemplate mLocationTemplate;
+    private final StringTemplate mWindDetailsTemplate;
+    private final StringTemplate mWindChillTemplate;
+    private final StringTemplate mHumidityTemplate;
+    private final StringTemplate mExtraLocationTemplate;
+
+    private final String mStatusNone;
+    private final String mErrorStatus;
+    private final String mUnitsSuffix;
+    private final String mSpeedUnit;
+    private final String mSpeedUnitPrefix;
+
+    /**
+     * Strings from the resources, by ID, read the first time they are needed
+     */
+    private final SparseArray<String> mStrings = new SparseArray<String>();
+
+    private final StringBuilder mBuilder = new StringBuilder(256);
+
+    /**
+     * Last location name displayed and its two parts, the name rarely changes
+     */
+    private String mLocationName;
+    private String mSmallLocation, mLargeLocation;
+
+    /**
+     * @param settings    Settings to render with
+     * @param clickIntent Intent to start when the extension is clicked
+     */
+    RenderPlan(Context context, ExtensionSettings settings, Intent clickIntent) {
+        mResources = context.getResources();
+        mLocale = mResources.getConfiguration().locale;
+        mSettings = settings;
+        mIconTheme = IconThemeFactory.getIconThemeFromSetting(settings.iconTheme);
+        mClickIntent = clickIntent;
+
+        mTemperatureTemplate = compile(R.string.temperature_template);
+        mHighLowTemplate = compile(R.string.highlow_template);
+        mExpandedTitleTemplate = compile(R.string.weather_expanded_title_template);
+        mTodayForecastTemplate = compile(R.string.today_forecast_template);
+        mTomorrowForecastTemplate = compile(R.string.tomorrow_forecast_template);
+        mLocationTemplate = compile(R.string.location_template);
+        mWindDetailsTemplate = compile(R.string.wind_details_template);
+        mWindChillTemplate = compile(R.string.wind_chill_template);
+        mHumidityTemplate = compile(R.string.humidity_template);
+        mExtraLocationTemplate = compile(R.string.extra_location_template);
+
+        mStatusNone = mResources.getString(R.string.status_none);
+        mErrorStatus = mResources.getString(R.string.error_status);
+        mUnitsSuffix = settings.weatherUnits.toUpperCase(Locale.getDefault());
+
+        // array R.array.pref_weather_speed_units_display_names is for use in pref menu.
+        // array R.array.weather_speed_units_display_names is for use in widget.
+        // For asian users, two arrays may be not same, so it is modified.
+        mSpeedUnit = getItem(R.array.weather_speed_units_display_names, settings.speedUnits);
+        mSpeedUnitPrefix = getItem(R.array.weather_speed_units_display_prefix_names, settings.speedUnits);
+    }
+
+    /**
+     * @return false if the plan was built for other settings or another locale
+     */
+    boolean isValidFor(ExtensionSettings settings, Locale locale) {
+        return mSettings == settings && mLocale.equals(locale);
+    }
+
+    /**
+     * Displays weather data, or an error if there's one
+     *
+     * @param weatherData Weather data from the API
+     * @return ExtensionData for DashClock
+     */
+    ExtensionData render(BetterWeatherData weatherData) {
+        return render(weatherData, Collections.<BetterWeatherData>emptyList());
+    }
+
+    /**
+     * Displays weather data, or an error if there's one, with a line for each other location
+     *
+     * @param weatherData Weather data from the API
+     * @param extras      Weather data of the other locations from the settings
+     * @return ExtensionData for DashClock
+     */
+    @SuppressWarnings("ResourceType")
+    ExtensionData render(BetterWeatherData weatherData, List<BetterWeatherData> extras) {
+
+        if (weatherData.errorCode != BetterWeatherData.ErrorCodes.NONE) {
+
+            int[] errorStrings = BetterWeatherData.getErrorMessage(weatherData.errorCode);
+
+            return new ExtensionData()
+                    .visible(true)
+                    .status(mErrorStatus)
+                    .expandedTitle(getCachedString(errorStrings[0]))
+                    .expandedBody(getCachedString(errorStrings[1]))
+                    .icon(mIconTheme.getConditionIcon(-1))
+                    .clickIntent(mClickIntent);
+        }
+
+        String temperature = weatherData.hasValidTemperature()
+                ? format(mTemperatureTemplate, Integer.toString(weatherData.temperature))
+                : mStatusNone;
+
+        String conditionText = getCachedString(BetterWeatherData.getStatusText(weatherData.conditionCode));
+
+        return new ExtensionData()
+                .visible(true)
+                .status(formatStatusText(weatherData, temperature))
+                .expandedTitle(format(mExpandedTitleTemplate, temperature + mUnitsSuffix, conditionText))
+                .icon(mIconTheme.getConditionIcon(weatherData.conditionCode))
+                .expandedBody(formatExpandedBody(weatherData, extras))
+                .clickIntent(mClickIntent);
+    }
+
+    /**
+     * Formats the status text depending on the settings
+     *
+     * @param weatherData Weather data from the API
+     * @param temperature Temperature formatted for validity
+     * @return Formatted status text
+     */
+    private String formatStatusText(BetterWeatherData weatherData, String temperature) {
+        if (!mSettings.showHighlow) {
+            return temperature;
+        }
+
+        StringBuilder status = begin().append(temperature).append('\n');
+        String todayHigh = formatTemperature(weatherData.todayHigh), todayLow = formatTemperature(weatherData.todayLow);
+        if (!mSettings.invertHighLowTemps) {
+            mHighLowTemplate.appendTo(status, todayLow, todayHigh);
+        } else {
+            mHighLowTemplate.appendTo(status, todayHigh, todayLow);
+        }
+        return status.toString();
+    }
+
+    /**
+     * Formats the expanded body's text from the weather data
+     *
+     * @param weatherData Weather data from the API
+     * @param extras      Weather data of the other locations
+     * @return Formatted data
+     */
+    @SuppressWarnings("ResourceType")
+    private String formatExpandedBody(BetterWeatherData weatherData, List<BetterWeatherData> extras) {
+        ExtensionSettings settings = mSettings;
+        StringBuilder expandedBody = begin();
+
+        if (settings.showFeelsLike && weatherData.feelsLike != weatherData.temperature && weatherData.feelsLike != BetterWeatherData.INVALID_TEMPERATURE) {
+            mWindChillTemplate.appendTo(expandedBody, Integer.toString(weatherData.feelsLike));
+            expandedBody.append('\n');
+        }
+
+        if (settings.showWindDetails) {
+            // Western users.
+            //      "Wind: SW 1 mph"
+            // Asian users with their wind_details_template in values-*
+            //      "WIND: DIRECTION PREFIX SPEED UNIT"
+            String speed = Integer.toString(BetterWeatherData.convertSpeedUnits(settings.weatherUnits, weatherData.windSpeed, settings.speedUnits));
+            String windDirection = getCachedString(BetterWeatherData.getWindDirectionText(weatherData.windDirection));
+            mWindDetailsTemplate.appendTo(expandedBody, windDirection, speed, mSpeedUnit, mSpeedUnitPrefix);
+
+            if (settings.showWindLabel) {
+                // For example, "Wind: SW 1 mph (Light breeze)"
+                String speedLabel = getCachedString(BetterWeatherData.getWindSpeedLabel(settings.weatherUnits, weatherData.windSpeed));
+                expandedBody.append(" (").append(speedLabel).append(')');
+            }
+            if (settings.showHumidity) {
+                // if showWindLabel, then the details line can be a little long.
+                expandedBody.append(settings.showWindLabel ? "\n" : ", ");
+            }
+        }
+        if (settings.showHumidity) {
+            mHumidityTemplate.appendTo(expandedBody, weatherData.hasHumidity()
+                    ? Integer.toString(weatherData.humidity) : mStatusNone).append('%');
+        }
+
+        if (settings.showTodayForecast) {
+            if (settings.showHumidity || settings.showWindDetails) expandedBody.append('\n');
+            appendForecast(expandedBody, mTodayForecastTemplate, weatherData.todayForecastConditionCode,
+                    weatherData.todayLow, weatherData.todayHigh);
+        }
+
+        if (settings.showTomorrowForecast) {
+            if (settings.showTodayForecast || settings.showHumidity || settings.showWindDetails) expandedBody.append('\n');
+            appendForecast(expandedBody, mTomorrowForecastTemplate, weatherData.tomorrowForecastConditionCode,
+                    weatherData.tomorrowLow, weatherData.tomorrowHigh);
+        }
+
+        if (!settings.hideLocationName) {
+            if (settings.showHumidity || settings.showTodayForecast || settings.showTomorrowForecast || settings.showWindDetails)
+                expandedBody.append('\n');
+
+            splitLocationName(weatherData.location);
+            mLocationTemplate.appendTo(expandedBody, mSmallLocation, mLargeLocation);
+        }
+
+        for (BetterWeatherData extra : extras) {
+            if (expandedBody.length() > 0) expandedBody.append('\n');
+            String conditionText = getCachedString(BetterWeatherData.getStatusText(extra.conditionCode));
+            mExtraLocationTemplate.appendTo(expandedBody, extra.location,
+                    formatTemperature(extra.temperature), conditionText);
+        }
+
+        return expandedBody.toString();
+    }
+
+    @SuppressWarnings("ResourceType")
+    private void appendForecast(StringBuilder builder, StringTemplate template, int conditionCode, int low, int high) {
+        String forecastText = getCachedString(BetterWeatherData.getStatusText(conditionCode));
+        String lowText = formatTemperature(low), highText = formatTemperature(high);
+        if (mSettings.invertHighLowTemps) {
+            template.appendTo(builder, forecastText, highText, lowText);
+        } else {
+            template.appendTo(builder, forecastText, lowText, highText);
+        }
+    }
+
+    /**
+     * The location name is always in the "small, large" format. Asian users can customize how it
+     * is displayed with location_template having a form like "%2$s %1$s", in which %1$s is the
+     * small and %2$s the large location name.
+     */
+    private void splitLocationName(String locationName) {
+        if (locationName == null) {
+            locationName = "";
+        }
+        if (locationName.equals(mLocationName)) {
+            return;
+        }
+
+        int comma = locationName.indexOf(',');
+        if (comma >= 0 && locationName.indexOf(',', comma + 1) < 0) {
+            mSmallLocation = locationName.substring(0, comma).trim();
+            mLargeLocation = locationName.substring(comma + 1).trim();
+        } else {
+            mSmallLocation = locationName;
+            mLargeLocation = "";
+        }
+        mLocationName = locationName;
+    }
+
+    /**
+     * @return The temperature as text, or the placeholder for missing values if it's invalid
+     */
+    private String formatTemperature(int temperature) {
+        return (temperature != BetterWeatherData.INVALID_TEMPERATURE) ? Integer.toString(temperature) : mStatusNone;
+    }
+
+    private String format(StringTemplate template, CharSequence... args) {
+        return template.appendTo(begin(), args).toString();
+    }
+
+    private StringBuilder begin() {
+        mBuilder.setLength(0);
+        return mBuilder;
+    }
+
+    private StringTemplate compile(int resId) {
+        return StringTemplate.compile(mResources.getString(resId));
+    }
+
+    private String getCachedString(int resId) {
+        String value = mStrings.get(resId);
+        if (value == null) {
+            value = mResources.getString(resId);
+            mStrings.put(resId, value);
+        }
+        return value;
+    }
+
+    private String getItem(int arrayId, int index) {
+        String[] items = mResources.getStringArray(arrayId);
+        return (index >= 0 && index < items.length) ? items[index] : items[0];
+    }
+}
@@ -20,7 +20,9 @@ import android.app.PendingIntent;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.preference.PreferenceManager;
 
+import net.imatruck.betterweather.refresh.RefreshScheduler;
 import net.imatruck.betterweather.utils.LogUtils;
 
 import static net.imatruck.betterweather.utils.LogUtils.LOGD;
@@ -41,7 +43,15 @@ public class WeatherRefreshReceiver extends BroadcastReceiver {
 
     @Override
     public void onReceive(Context context, Intent intent) {
-        context.sendBroadcast(new Intent(BetterWeatherExtension.REFRESH_INTENT_FILTER));
+        // DashClock isn't visible with the screen off, but a Pebble still shows the weather
+        if (!RefreshScheduler.isScreenOn(context) && !ExtensionSettings.fromPreferences(
+                PreferenceManager.getDefaultSharedPreferences(context)).pebbleEnable) {
+            LOGD(TAG, "Screen is off, refresh will run when it's turned on");
+            new RefreshScheduler(context).markRefreshSkipped();
+            return;
+        }
+        context.sendBroadcast(new Intent(BetterWeatherExtension.REFRESH_INTENT_FILTER)
+                .putExtra(BetterWeatherExtension.EXTRA_SCHEDULED_REFRESH, true));
     }
 
 }
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather;
+
+import android.content.Context;
+import android.util.AtomicFile;
+
+import net.imatruck.betterweather.core.WindSpeed;
+import net.imatruck.betterweather.utils.LogUtils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static net.imatruck.betterweather.utils.LogUtils.LOGD;
+import static net.imatruck.betterweather.utils.LogUtils.LOGW;
+
+/**
+ * Last successfully fetched {@link BetterWeatherData}, persisted in a small binary file so it
+ * can be displayed right away when DashClock restarts the extension.
+ * The units of the readings are saved with them, a snapshot fetched in other units than the
+ * current settings' is not used.
+ */
+public class WeatherSnapshot {
+
+    private static final String TAG = LogUtils.makeLogTag(WeatherSnapshot.class);
+
+    private static final String FILE_NAME = "weather_snapshot";
+    private static final int VERSION = 3;
+
+    public final BetterWeatherData data;
+    /**
+     * Time at which the data was saved, in milliseconds since epoch
+     */
+    public final long savedAt;
+
+    private WeatherSnapshot(BetterWeatherData data, long savedAt) {
+        this.data = data;
+        this.savedAt = savedAt;
+    }
+
+    public long getAgeMillis() {
+        return System.currentTimeMillis() - savedAt;
+    }
+
+    /**
+     * Saves the data, replacing the previous snapshot. Data with an error is ignored.
+     *
+     * @param weatherUnits Weather unit setting the data was fetched with
+     */
+    public static void save(Context context, BetterWeatherData data, String weatherUnits) {
+        if (data.errorCode != BetterWeatherData.ErrorCodes.NONE) {
+            return;
+        }
+
+        AtomicFile file = getFile(context);
+        FileOutputStream fos = null;
+        try {
+            fos = file.startWrite();
+            DataOutputStream out = new DataOutputStream(fos);
+            out.writeInt(VERSION);
+            out.writeLong(System.currentTimeMillis());
+            out.writeUTF(weatherUnits);
+            out.writeByte(WindSpeed.getFetchedUnit(weatherUnits));
+            data.writeTo(out);
+            out.flush();
+            file.finishWrite(fos);
+        } catch (IOException ioe) {
+            LOGW(TAG, "Could not save weather snapshot");
+            if (fos != null) {
+                file.failWrite(fos);
+            }
+        }
+    }
+
+    /**
+     * @param weatherUnits Current weather unit setting
+     * @return The last saved snapshot, or null if there's none, it can't be read or its readings
+     * are in other units
+     */
+    public static WeatherSnapshot load(Context context, String weatherUnits) {
+        FileInputStream fis = null;
+        try {
+            fis = getFile(context).openRead();
+            DataInputStream in = new DataInputStream(fis);
+            if (in.readInt() != VERSION) {
+                LOGD(TAG, "Ignoring weather snapshot from another version");
+                return null;
+            }
+            long savedAt = in.readLong();
+            String savedWeatherUnits = in.readUTF();
+            int savedSpeedUnit = in.readByte();
+            if (!savedWeatherUnits.equals(weatherUnits) || savedSpeedUnit != WindSpeed.getFetchedUnit(weatherUnits)) {
+                LOGD(TAG, "Ignoring weather snapshot fetched in other units");
+                return null;
+            }
+            return new WeatherSnapshot(BetterWeatherData.readFrom(in), savedAt);
+        } catch (FileNotFoundException fnfe) {
+            return null;
+        } catch (IOException ioe) {
+            LOGW(TAG, "Could not read weather snapshot");
+            return null;
+        } finally {
+            if (fis != null) {
+                try {
+                    fis.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private static AtomicFile getFile(Context context) {
+        return new AtomicFile(new File(context.getFilesDir(), FILE_NAME));
+    }
+}
@@ -15,9 +15,13 @@
  */
 package net.imatruck.betterweather;
 
+import android.content.Context;
 import android.location.Location;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
 import android.text.TextUtils;
 
+import net.imatruck.betterweather.core.YahooPlacesParser;
 import net.imatruck.betterweather.utils.LogUtils;
 import net.imatruck.betterweather.utils.Utils;
 
@@ -26,12 +30,14 @@ import org.xmlpull.v1.XmlPullParserException;
 import org.xmlpull.v1.XmlPullParserFactory;
 
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+
+import okhttp3.Call;
+import okhttp3.Response;
 
 import static net.imatruck.betterweather.utils.LogUtils.LOGD;
 import static net.imatruck.betterweather.utils.LogUtils.LOGE;
@@ -56,32 +62,89 @@ public class YahooPlacesAPIClient {
     }
 
     private static final int MAX_SEARCH_RESULTS = 10;
-    private static final int PARSE_STATE_NONE = 0;
-    private static final int PARSE_STATE_PLACE = 1;
-    private static final int PARSE_STATE_WOEID = 2;
-    private static final int PARSE_STATE_NAME = 3;
-    private static final int PARSE_STATE_COUNTRY = 4;
-    private static final int PARSE_STATE_ADMIN1 = 5;
-    private static final int PARSE_STATE_LAT = 7;
-    private static final int PARSE_STATE_LNG = 8;
-    private static final int PARSE_STATE_ADMIN2 = 9;
-    private static final int PARSE_STATE_ADMIN3 = 10;
-
-    // sLang has Yahoo lang form like "en-US, not en_US"
+    /**
+     * The places API is only searched when the bundled index has fewer matches than this
+     */
+    private static final int MIN_OFFLINE_SEARCH_RESULTS = 5;
+    private static final int SEARCH_CACHE_SIZE = 32;
+
+    /**
+     * Shared by every client, they are thread-safe
+     */
+    private static GeocodeCache sGeocodeCache;
+    private static OfflineGeocoder sOfflineGeocoder;
+    private static boolean sOfflineGeocoderOpened = false;
+    private static final LocationSearchCache sSearchCache = new LocationSearchCache(SEARCH_CACHE_SIZE);
+
+    private static volatile YahooPlacesAPIClient sInstance =
+            new YahooPlacesAPIClient(toYahooLang(Locale.getDefault()), null, null);
+
+    // mLang has Yahoo lang form like "en-US, not en_US"
     // this parameter enables for users to have location name with their language.
-    public static String sLang;
-    // Method findLocationsAutocomplete get WOEID from methodgetLocationNameFromCoords
-    // using this static variable.
-    private static String sWoeid;
+    private final String mLang;
+    private final GeocodeCache mGeocodeCache;
+    private final OfflineGeocoder mOfflineGeocoder;
+
+    /**
+     * The client holds no state between lookups, it can be used from several threads at once
+     *
+     * @param lang            Language of the place names, in Yahoo's format ("en-US")
+     * @param geocodeCache    Persistent cache of the places found, can be null
+     * @param offlineGeocoder Bundled places index, can be null
+     */
+    public YahooPlacesAPIClient(String lang, GeocodeCache geocodeCache, OfflineGeocoder offlineGeocoder) {
+        mLang = lang;
+        mGeocodeCache = geocodeCache;
+        mOfflineGeocoder = offlineGeocoder;
+    }
+
+    /**
+     * Enables the persistent cache and the bundled places index for the shared client, and
+     * makes it use the language of the context's configuration. Lookups already running keep
+     * the client they were started on.
+     *
+     * @return The shared client
+     */
+    public static synchronized YahooPlacesAPIClient install(Context context) {
+        if (sGeocodeCache == null) {
+            sGeocodeCache = new GeocodeCache(context.getApplicationContext());
+        }
+        if (!sOfflineGeocoderOpened) {
+            sOfflineGeocoder = OfflineGeocoder.open(context.getApplicationContext());
+            sOfflineGeocoderOpened = true;
+        }
+
+        String lang = toYahooLang(context.getResources().getConfiguration().locale);
+        YahooPlacesAPIClient instance = sInstance;
+        if (!lang.equals(instance.mLang) || instance.mGeocodeCache != sGeocodeCache
+                || instance.mOfflineGeocoder != sOfflineGeocoder) {
+            sInstance = new YahooPlacesAPIClient(lang, sGeocodeCache, sOfflineGeocoder);
+        }
+        return sInstance;
+    }
+
+    /**
+     * @return The client set up by {@link #install(Context)}
+     */
+    public static YahooPlacesAPIClient getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * @return Yahoo's format of the locale, "en-US" and not "en_US"
+     */
+    public static String toYahooLang(Locale locale) {
+        return locale.getLanguage() + "-" + locale.getCountry();
+    }
 
-    public static String buildPlaceSearchUrl(Location l) throws MalformedURLException {
+    public String buildPlaceSearchUrl(Location l) throws MalformedURLException {
         // GeoPlanet API
         return "http://where.yahooapis.com/v1/places.q('"
                 + l.getLatitude() + "," + l.getLongitude() + "')"
-                + "?lang=" + sLang + "&appid=" + API_KEY;
+                + "?lang=" + mLang + "&appid=" + API_KEY;
     }
 
-    private static String buildPlaceSearchStartsWithUrl(String startsWith) {
+    private String buildPlaceSearchStartsWithUrl(String startsWith) {
         // GeoPlanet API
         startsWith = startsWith.replaceAll("[^\\w ]+", "").replaceAll(" ", "%20");
 
@@ -93,309 +156,246 @@ public class YahooPlacesAPIClient {
 
         return "http://where.yahooapis.com/v1/places.q('" + startsWith + "');"
                 + "count=" + MAX_SEARCH_RESULTS
-                + "?lang=" + sLang + "&appid=" + API_KEY;
+                + "?lang=" + mLang + "&appid=" + API_KEY;
+    }
+
+    /**
+     * @return The place's name, "N/A" if it can't be found
+     */
+    public String getLocationNameFromCoords(double lat, double lng) {
+        Place place = getPlace(lat, lng);
+        return place != null ? place.getDisplayName() : "N/A";
     }
 
-    public static String getLocationNameFromCoords(double lat, double lng) {
+    /**
+     * Looks up the place at these coordinates in the persistent cache, then the places API.
+     * The bundled places index only has large cities, it is used when the places API can't
+     * be reached so nearby towns aren't given the name of the city.
+     *
+     * @return The place, or null if it can't be found
+     */
+    public Place getPlace(double lat, double lng) {
         LOGD(TAG, "Looking up name for location : " + lat + ", " + lng);
 
-        String displayName = "N/A";
-        // reset WOEID.
-        sWoeid = "";
-        HttpURLConnection connection = null;
+        if (mGeocodeCache != null) {
+            GeocodeCache.Place cached = mGeocodeCache.get(lat, lng, mLang);
+            if (cached != null) {
+                LOGD(TAG, "Using cached name for location: " + cached.displayName);
+                return Place.fromDisplayName(cached.woeid, cached.displayName, lat, lng, mLang);
+            }
+        }
+
+        Place place = getPlaceOnline(lat, lng);
+        if (place != null) {
+            if (mGeocodeCache != null) {
+                mGeocodeCache.put(lat, lng, mLang, place.woeid, place.getDisplayName());
+            }
+            return place;
+        }
+
+        if (mOfflineGeocoder != null) {
+            OfflineGeocoder.Place bundled = mOfflineGeocoder.lookup(lat, lng, mLang);
+            if (bundled != null) {
+                // Not cached, the places API is asked again on the next lookup
+                LOGD(TAG, "Using bundled name for location: " + bundled.displayName);
+                return Place.fromDisplayName(bundled.woeid, bundled.displayName, lat, lng, mLang);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The place found by the places API, or null if it can't be reached or has none
+     */
+    private Place getPlaceOnline(double lat, double lng) {
+        List<YahooPlacesParser.Place> places;
+
+        Response response = null;
         try {
             Location tempLoc = new Location("");
             tempLoc.setLatitude(lat);
             tempLoc.setLongitude(lng);
-            connection = Utils.openUrlConnection(buildPlaceSearchUrl(tempLoc));
+            response = Utils.openUrlConnection(buildPlaceSearchUrl(tempLoc));
 
             XmlPullParser xpp = sXmlPullParserFactory.newPullParser();
-            xpp.setInput(new InputStreamReader(connection.getInputStream()));
-
-            // addrs have {'name', 'admin3', 'admin2', 'admin1', 'country'}, small -> large.
-            // Not so few places have empty *local*, and/or admin* values in Yahoo place API.
-            // So in some cases, only one name or two names with same values was shown.
-            // For example, "SEOUL" or "SEOUL, SEOUL" can be removed.
-            // So modified algorithm to get names. Not used local fields.
-            // From name to country, skip empty or same value and make "small, large" form.
-            String[] addrs = {"", "", "", "", ""};
-            String smallLocation = "";
-            String largeLocation = "";
-
-            StringBuffer sb = new StringBuffer();
-
-            int state = PARSE_STATE_NONE;
-            int eventType = xpp.getEventType();
-            while (eventType != XmlPullParser.END_DOCUMENT) {
-                String tagName = xpp.getName();
-
-                if (eventType == XmlPullParser.START_TAG) {
-                    switch (state) {
-                        case PARSE_STATE_NONE:
-                            if ("place".equals(tagName)) {
-                                state = PARSE_STATE_PLACE;
-                            }
-                            break;
-
-                        case PARSE_STATE_PLACE:
-                            if ("name".equals(tagName)) {
-                                state = PARSE_STATE_NAME;
-                            } else if ("admin1".equals(tagName)) {
-                                state = PARSE_STATE_ADMIN1;
-                            } else if ("admin2".equals(tagName)) {
-                                state = PARSE_STATE_ADMIN2;
-                            } else if ("admin3".equals(tagName)) {
-                                state = PARSE_STATE_ADMIN3;
-                            } else if ("country".equals(tagName)) {
-                                state = PARSE_STATE_COUNTRY;
-                            } else if ("woeid".equals(tagName)) {
-                                state = PARSE_STATE_WOEID;
-                            }
-
-                            break;
-                    }
-
-                } else if (eventType == XmlPullParser.TEXT) {
-                    switch (state) {
-                        case PARSE_STATE_NAME:
-                            addrs[0] = xpp.getText();
-                            break;
-
-                        case PARSE_STATE_ADMIN3:
-                            addrs[1] = xpp.getText();
-                            break;
-
-                        case PARSE_STATE_ADMIN2:
-                            addrs[2] = xpp.getText();
-                            break;
-
-                        case PARSE_STATE_ADMIN1:
-                            addrs[3] = xpp.getText();
-                            break;
-
-                        case PARSE_STATE_COUNTRY:
-                            addrs[4] = xpp.getText();
-                            break;
-
-                        case PARSE_STATE_WOEID:
-                            // This method 'getLocationNameFromCoords' itself doesnt need WOEID.
-                            // But other method 'getLocationInfo' calls it and needs WOEID.
-                            // So in this methdd, save WOEID to private static variable.
-                            sWoeid = xpp.getText();
-                            break;
-                    }
-
-                } else if (eventType == XmlPullParser.END_TAG) {
-                    if ("place".equals(tagName)) {
-                        for (int i = 0; i < addrs.length; i++) {
-                            if (TextUtils.isEmpty(addrs[i])) {
-                                // if field is empty, skip.
-                                continue;
-                            } else {
-                                smallLocation = addrs[i];
-                                largeLocation = "";
-                                for (int j = i + 1; j < addrs.length; j++) {
-                                    if (TextUtils.isEmpty(addrs[j])) {
-                                        continue;
-                                    }
-                                    if (!smallLocation.equals(addrs[j])) {
-                                        // if second name is not empty and not same with previus one
-                                        // (smallLocation) then it is to be largeLocation.
-                                        largeLocation = addrs[j];
-                                        break;
-                                    }
-                                }
-                                break;
-                            }
-                        }
-
-                        sb.setLength(0);
-                        if (!TextUtils.isEmpty(smallLocation)) {
-                            sb.append(smallLocation);
-                        }
-                        if (!TextUtils.isEmpty(largeLocation)) {
-                            if (sb.length() > 0) {
-                                sb.append(", ");
-                            }
-                            sb.append(largeLocation);
-                        }
-                        displayName = sb.toString();
-                        state = PARSE_STATE_NONE;
-
-                    } else if (state != PARSE_STATE_NONE) {
-                        state = PARSE_STATE_PLACE;
-                    }
-                }
-
-                eventType = xpp.next();
-            }
+            xpp.setInput(response.body().charStream());
+            places = YahooPlacesParser.parse(xpp);
 
         } catch (XmlPullParserException xppe) {
             LOGW(TAG, "Error parsing place name XML");
+            return null;
         } catch (MalformedURLException mue) {
             LOGW(TAG, "Error parsing place name XML");
+            return null;
         } catch (IOException ioe) {
             LOGW(TAG, "Error parsing place name XML");
+            return null;
         } finally {
-            if (connection != null) {
-                connection.disconnect();
+            if (response != null) {
+                response.body().close();
             }
         }
-        return displayName;
+
+        if (places.isEmpty()) {
+            return null;
+        }
+        YahooPlacesParser.Place place = places.get(0);
+        if (TextUtils.isEmpty(place.woeid) || TextUtils.isEmpty(place.smallName)) {
+            return null;
+        }
+        return new Place(place.woeid, place.smallName, place.largeName, lat, lng, mLang);
     }
 
-    public static List<LocationSearchResult> findLocationsAutocomplete(String startsWith) {
+    /**
+     * Searches the bundled places index only, fast enough to be called on the main thread
+     *
+     * @return Matching places, empty if the app has no index
+     */
+    private List<LocationSearchResult> findLocationsOffline(String startsWith) {
+        List<LocationSearchResult> results = new ArrayList<LocationSearchResult>();
+
+        if (mOfflineGeocoder == null) {
+            return results;
+        }
+
+        for (OfflineGeocoder.Place place : mOfflineGeocoder.search(startsWith, mLang, MAX_SEARCH_RESULTS)) {
+            LocationSearchResult result = new LocationSearchResult();
+            result.woeid = place.woeid;
+            result.displayName = place.displayName;
+            result.country = place.country;
+            result.lat = Float.toString(place.lat);
+            result.lng = Float.toString(place.lng);
+            results.add(result);
+        }
+        return results;
+    }
+
+    /**
+     * Searches the results cached for this query or a shorter one, then the bundled places
+     * index, without calling the places API, fast enough to be called on the main thread.
+     * The results may miss places, they are only meant to be shown until
+     * {@link #findLocationsAutocomplete(String, CancellationSignal)} is done.
+     *
+     * @return Matching places, empty if none are known locally
+     */
+    public List<LocationSearchResult> findLocationsLocally(String startsWith) {
+        List<LocationSearchResult> results = sSearchCache.getRefined(mLang, OfflineGeocoder.foldForSearch(startsWith));
+        return (results != null && !results.isEmpty()) ? results : findLocationsOffline(startsWith);
+    }
+
+    /**
+     * Searches the results cached for this query, then the bundled places index, then the
+     * places API if the index has too few matches
+     *
+     * @param cancellationSignal Cancels the request to the places API, can be null
+     * @throws OperationCanceledException If the search was cancelled
+     */
+    public List<LocationSearchResult> findLocationsAutocomplete(String startsWith,
+                                                                CancellationSignal cancellationSignal) {
+        String query = OfflineGeocoder.foldForSearch(startsWith);
+        String lang = mLang;
+
+        List<LocationSearchResult> results = sSearchCache.get(lang, query);
+        if (results != null) {
+            LOGD(TAG, "Found " + results.size() + " cached locations starting with '" + startsWith + "'");
+            return results;
+        }
+
+        results = findLocationsOffline(startsWith);
+        if (results.size() >= MIN_OFFLINE_SEARCH_RESULTS) {
+            LOGD(TAG, "Found " + results.size() + " locations starting with '" + startsWith + "' offline");
+            sSearchCache.put(lang, query, results);
+            return results;
+        }
+
+        List<LocationSearchResult> onlineResults = findLocationsOnline(startsWith, cancellationSignal);
+        if (onlineResults == null) {
+            // Not cached, the next search for this query will try the places API again
+            return results;
+        }
+
+        for (LocationSearchResult onlineResult : onlineResults) {
+            if (results.size() >= MAX_SEARCH_RESULTS) {
+                break;
+            }
+            boolean duplicate = false;
+            for (LocationSearchResult result : results) {
+                if (result.woeid.equals(onlineResult.woeid)) {
+                    duplicate = true;
+                    break;
+                }
+            }
+            if (!duplicate) {
+                results.add(onlineResult);
+            }
+        }
+
+        sSearchCache.put(lang, query, results);
+        return results;
+    }
+
+    /**
+     * @return The places found, or null if the places API couldn't be reached
+     */
+    private List<LocationSearchResult> findLocationsOnline(String startsWith,
+                                                           CancellationSignal cancellationSignal) {
         LOGD(TAG, "Autocompleting locations starting with '" + startsWith + "'");
 
         List<LocationSearchResult> results = new ArrayList<LocationSearchResult>();
 
-        HttpURLConnection connection = null;
-        try {
-            connection = Utils.openUrlConnection(buildPlaceSearchStartsWithUrl(startsWith));
-            XmlPullParser xpp = sXmlPullParserFactory.newPullParser();
-            xpp.setInput(new InputStreamReader(connection.getInputStream()));
-
-            LocationSearchResult result = null;
-            // See above method 'getLocationNameFromCoords'.
-            String[] addrs = {"", "", "", "", "", ""};
-
-            int state = PARSE_STATE_NONE;
-
-            // latitude and longitude values are shown in many entries.
-            // But values in <centroid>, not in <boundingBox> are relatively exact one.
-            // So using this flag, get only values in centroid entry.
-            boolean centroid = false;
-
-            int eventType = xpp.getEventType();
-            while (eventType != XmlPullParser.END_DOCUMENT) {
-                String tagName = xpp.getName();
-
-                if (eventType == XmlPullParser.START_TAG) {
-                    switch (state) {
-                        case PARSE_STATE_NONE:
-                            if ("place".equals(tagName)) {
-                                state = PARSE_STATE_PLACE;
-                                result = new LocationSearchResult();
-                                // reset
-                                for (int i = 0; i < addrs.length; i++)
-                                    addrs[i] = "";
-                            }
-                            break;
-
-                        case PARSE_STATE_PLACE:
-                            if ("name".equals(tagName)) {
-                                state = PARSE_STATE_NAME;
-                            } else if ("woeid".equals(tagName)) {
-                                state = PARSE_STATE_WOEID;
-                            } else if ("country".equals(tagName)) {
-                                state = PARSE_STATE_COUNTRY;
-                            } else if ("admin1".equals(tagName)) {
-                                state = PARSE_STATE_ADMIN1;
-                            } else if (centroid && "latitude".equals(tagName)) {
-                                state = PARSE_STATE_LAT;
-                            } else if (centroid && "longitude".equals(tagName)) {
-                                state = PARSE_STATE_LNG;
-                            } else if ("admin2".equals(tagName)) {
-                                state = PARSE_STATE_ADMIN2;
-                            } else if ("admin3".equals(tagName)) {
-                                state = PARSE_STATE_ADMIN3;
-                            } else if ("centroid".equals(tagName)) {
-                                // We use lat/lon values in <centroid> entry.
-                                centroid = true;
-                            }
-                            break;
-                    }
-
-                } else if (eventType == XmlPullParser.TEXT) {
-                    switch (state) {
-                        case PARSE_STATE_WOEID:
-                            result.woeid = xpp.getText();
-                            break;
-
-                        case PARSE_STATE_NAME:
-                            addrs[0] = xpp.getText();
-                            break;
-
-                        case PARSE_STATE_ADMIN3:
-                            addrs[1] = xpp.getText();
-                            break;
-
-                        case PARSE_STATE_ADMIN2:
-                            addrs[2] = xpp.getText();
-                            break;
-
-                        case PARSE_STATE_ADMIN1:
-                            addrs[3] = xpp.getText();
-                            break;
-
-                        case PARSE_STATE_COUNTRY:
-                            addrs[4] = xpp.getText();
-                            break;
-
-                        case PARSE_STATE_LAT:
-                            result.lat = xpp.getText();
-                            break;
-
-                        case PARSE_STATE_LNG:
-                            result.lng = xpp.getText();
-                    }
-
-                } else if (eventType == XmlPullParser.END_TAG) {
-                    if ("place".equals(tagName)) {
-
-                        String smallLocation = "";
-                        String largeLocation = "";
-
-                        for (int i = 0; i < addrs.length; i++) {
-                            if (TextUtils.isEmpty(addrs[i])) {
-                                continue;
-                            } else {
-                                smallLocation = addrs[i];
-                                for (int j = i + 1; j < addrs.length; j++) {
-                                    if (TextUtils.isEmpty(addrs[j])) {
-                                        continue;
-                                    }
-                                    if (!smallLocation.equals(addrs[j])) {
-                                        largeLocation = addrs[j];
-                                        break;
-                                    }
-                                }
-                                if (!TextUtils.isEmpty(largeLocation)) {
-                                    largeLocation = ", " + largeLocation;
-                                }
-                                break;
-                            }
-                        }
-
-                        result.displayName = smallLocation + largeLocation;
-                        result.country = addrs[4];
-
-                        results.add(result);
-                        state = PARSE_STATE_NONE;
-                    } else if ("centroid".equals(tagName)) {
-                        centroid = false;
-                    } else if (state != PARSE_STATE_NONE) {
-                        state = PARSE_STATE_PLACE;
-                    }
+        final Call call = Utils.newGetCall(buildPlaceSearchStartsWithUrl(startsWith));
+        if (cancellationSignal != null) {
+            cancellationSignal.throwIfCanceled();
+            cancellationSignal.setOnCancelListener(new CancellationSignal.OnCancelListener() {
+                @Override
+                public void onCancel() {
+                    call.cancel();
                 }
+            });
+        }
 
-                eventType = xpp.next();
+        Response response = null;
+        try {
+            response = Utils.execute(call);
+            XmlPullParser xpp = sXmlPullParserFactory.newPullParser();
+            xpp.setInput(response.body().charStream());
+
+            for (YahooPlacesParser.Place place : YahooPlacesParser.parse(xpp)) {
+                LocationSearchResult result = new LocationSearchResult();
+                result.woeid = place.woeid;
+                result.displayName = place.getDisplayName();
+                result.country = place.country;
+                result.lat = place.lat;
+                result.lng = place.lng;
+                results.add(result);
             }
 
         } catch (IOException e) {
+            if (call.isCanceled()) {
+                throw new OperationCanceledException();
+            }
             LOGW(TAG, "Error parsing place search XML");
+            return null;
         } catch (XmlPullParserException e) {
             LOGW(TAG, "Error parsing place search XML");
+            return null;
         } finally {
-            if (connection != null) {
-                connection.disconnect();
+            if (cancellationSignal != null) {
+                cancellationSignal.setOnCancelListener(null);
+            }
+            if (response != null) {
+                response.body().close();
             }
         }
 
         return results;
     }
 
-    public static LocationInfo getLocationInfo(Location location)
+    /**
+     * @return The WOEID, localized name and coordinates of the location for the weather APIs
+     * @throws InvalidLocationException If the place can't be found
+     */
+    public LocationInfo getLocationInfo(Location location)
             throws IOException, InvalidLocationException {
 
         // Original routine used only WOEID/LNG/LAT values from Yahoo place API feed.
@@ -404,15 +404,55 @@ public class YahooPlacesAPIClient {
         // not in weather feed which only has english or mixed location names.
         double lat = location.getLatitude();
         double lon = location.getLongitude();
-        String displayName = getLocationNameFromCoords(lat, lon);
+        Place place = getPlace(lat, lon);
 
-        // After calling getLocationNameFromCoords, sWoeid may have WOEID.
-        if (!TextUtils.isEmpty(sWoeid)) {
-            return new LocationInfo(sWoeid, displayName, lat, lon);
+        if (place != null) {
+            return new LocationInfo(place.woeid, place.getDisplayName(), lat, lon);
         }
         throw new InvalidLocationException();
     }
 
+    /**
+     * Place found by {@link #getPlace(double, double)}
+     */
+    public static class Place {
+        public final String woeid;
+        /**
+         * Name of the place, and of the larger area it is in (empty if unknown)
+         */
+        public final String smallName, largeName;
+        public final double lat, lng;
+        public final String lang;
+
+        public Place(String woeid, String smallName, String largeName, double lat, double lng, String lang) {
+            this.woeid = woeid;
+            this.smallName = smallName;
+            this.largeName = largeName;
+            this.lat = lat;
+            this.lng = lng;
+            this.lang = lang;
+        }
+
+        /**
+         * @param displayName Name in the "small, large" format of {@link #getDisplayName()}
+         */
+        static Place fromDisplayName(String woeid, String displayName, double lat, double lng, String lang) {
+            int separator = displayName.indexOf(", ");
+            if (separator < 0) {
+                return new Place(woeid, displayName, "", lat, lng, lang);
+            }
+            return new Place(woeid, displayName.substring(0, separator),
+                    displayName.substring(separator + 2), lat, lng, lang);
+        }
+
+        /**
+         * @return "small, large", or only the small name if the large one is unknown
+         */
+        public String getDisplayName() {
+            return TextUtils.isEmpty(largeName) ? smallName : smallName + ", " + largeName;
+        }
+    }
+
     public static class LocationSearchResult {
         public String woeid;
         public String displayName;
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather.core;
+
+import java.util.Arrays;
+
+/**
+ * Condition code tables, without anything from Android so they can be benchmarked on a plain JVM.
+ * Every API converts its conditions to the Yahoo! condition codes (from -1 to 47, see
+ * https://developer.yahoo.com/weather/#codes). Anything that depends on the condition is an
+ * array with one entry per code, in order from {@value #MIN_CODE}. Codes outside of that range
+ * use the entry of {@value #MIN_CODE}, the unknown condition.
+ */
+public final class ConditionCodes {
+
+    /**
+     * Unknown condition
+     */
+    public static final int MIN_CODE = -1;
+    public static final int MAX_CODE = 47;
+    /**
+     * Number of entries each table must have
+     */
+    public static final int CODE_COUNT = MAX_CODE - MIN_CODE + 1;
+
+    private ConditionCodes() {
+    }
+
+    /**
+     * @param table Table with {@link #CODE_COUNT} entries
+     * @return The table's entry for the condition code
+     */
+    public static int lookup(int[] table, int conditionCode) {
+        return table[indexOf(conditionCode)];
+    }
+
+    /**
+     * Makes sure a table has an entry for every code, so a table that's missing one fails
+     * as soon as it's loaded instead of showing the wrong condition
+     *
+     * @return The table
+     */
+    public static int[] checkTable(int[] table, String name) {
+        if (table.length != CODE_COUNT) {
+            throw new IllegalStateException("Condition table " + name + " has " + table.length
+                    + " entries, expected " + CODE_COUNT);
+        }
+        return table;
+    }
+
+    private static int indexOf(int conditionCode) {
+        return (conditionCode < MIN_CODE || conditionCode > MAX_CODE) ? 0 : conditionCode - MIN_CODE;
+    }
+
+    /**
+     * Converts an API's condition codes to the Yahoo! codes.
+     * The table is made from rows of {apiCode, dayCode, nightCode} and stored as dense arrays
+     * indexed by the API's code.
+     */
+    public static final class ProviderTable {
+
+        private final int mMinApiCode;
+        private final int[] mDayCodes;
+        private final int[] mNightCodes;
+
+        /**
+         * @param rows Rows of {apiCode, dayCode, nightCode}, API codes that are not in a row
+         *             convert to {@link #MIN_CODE}
+         */
+        public ProviderTable(int[][] rows) {
+            int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+            for (int[] row : rows) {
+                min = Math.min(min, row[0]);
+                max = Math.max(max, row[0]);
+            }
+
+            mMinApiCode = min;
+            mDayCodes = new int[max - min + 1];
+            mNightCodes = new int[max - min + 1];
+            Arrays.fill(mDayCodes, MIN_CODE);
+            Arrays.fill(mNightCodes, MIN_CODE);
+
+            boolean[] seen = new boolean[max - min + 1];
+            for (int[] row : rows) {
+                if (row.length != 3 || seen[row[0] - min]
+                        || row[1] < MIN_CODE || row[1] > MAX_CODE || row[2] < MIN_CODE || row[2] > MAX_CODE) {
+                    throw new IllegalStateException("Invalid condition table row for code " + row[0]);
+                }
+                seen[row[0] - min] = true;
+                mDayCodes[row[0] - min] = row[1];
+                mNightCodes[row[0] - min] = row[2];
+            }
+        }
+
+        /**
+         * @param apiCode API's condition code
+         * @param isNight Use the night variant of the condition
+         * @return Yahoo! condition code, {@link #MIN_CODE} if the API's code is unknown
+         */
+        public int toConditionCode(int apiCode, boolean isNight) {
+            int index = apiCode - mMinApiCode;
+            if (index < 0 || index >= mDayCodes.length) {
+                return MIN_CODE;
+            }
+            return isNight ? mNightCodes[index] : mDayCodes[index];
+        }
+    }
+}
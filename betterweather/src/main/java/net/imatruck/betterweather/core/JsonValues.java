@@ -0,0 +1,103 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather.core;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Helpers to read API responses with a streaming {@link JsonReader}, without building the
+ * whole document in memory. The weather APIs often write numbers as strings or leave values
+ * null, these helpers take both.
+ */
+public final class JsonValues {
+
+    private JsonValues() {
+    }
+
+    // Consume a null value if there's one, returns true if the value was null
+    public static boolean skipNull(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return true;
+        }
+        return false;
+    }
+
+    // Begin the next object if there's one, else skip the value, returns true if the object was entered
+    public static boolean beginObject(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+            reader.beginObject();
+            return true;
+        }
+        reader.skipValue();
+        return false;
+    }
+
+    // Begin the next array if there's one, else skip the value, returns true if the array was entered
+    public static boolean beginArray(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+            reader.beginArray();
+            return true;
+        }
+        reader.skipValue();
+        return false;
+    }
+
+    // Read a string value, returns fallback if the value is null
+    public static String nextString(JsonReader reader, String fallback) throws IOException {
+        if (skipNull(reader)) {
+            return fallback;
+        }
+        return reader.nextString();
+    }
+
+    // Read a number that may be written as a string, returns fallback if it's null or invalid
+    public static double nextDouble(JsonReader reader, double fallback) throws IOException {
+        if (reader.peek() == JsonToken.NUMBER) {
+            // Parsed by the reader, only quoted numbers go through a String
+            return reader.nextDouble();
+        }
+        String value = nextString(reader, null);
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException nfe) {
+            return fallback;
+        }
+    }
+
+    // Same as nextDouble, but the value is truncated to an int
+    public static int nextInt(JsonReader reader, int fallback) throws IOException {
+        double value = nextDouble(reader, Double.NaN);
+        return Double.isNaN(value) ? fallback : (int) value;
+    }
+
+    public static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather.core;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.IOException;
+
+/**
+ * Reads OpenWeatherMap's current weather and daily forecast responses as they are streamed.
+ * Only the fields used by the extension are decoded, everything else is skipped.
+ */
+public final class OpenWeatherMapParser {
+
+    private static final int NO_CONDITION = Integer.MIN_VALUE;
+
+    /**
+     * OpenWeatherMap condition IDs, see http://openweathermap.org/weather-conditions
+     * Rows are {OWM ID, day code, night code}
+     */
+    private static final ConditionCodes.ProviderTable CONDITIONS = new ConditionCodes.ProviderTable(new int[][]{
+            {200, 4, 4},         // thunderstorm with light rain
+            {201, 4, 4},         // thunderstorm with rain
+            {202, 3, 3},         // thunderstorm with heavy rain
+            {210, 4, 4},         // light thunderstorm
+            {211, 4, 4},         // thunderstorm
+            {212, 3, 3},         // heavy thunderstorm
+            {221, 3, 3},         // ragged thunderstorm
+            {230, 4, 4},         // thunderstorm with light drizzle
+            {231, 4, 4},         // thunderstorm with drizzle
+            {232, 3, 3},         // thunderstorm with heavy drizzle
+            {300, 9, 9},         // light intensity drizzle
+            {301, 9, 9},         // drizzle
+            {302, 9, 9},         // heavy intensity drizzle
+            {310, 9, 9},         // light intensity drizzle rain
+            {311, 9, 9},         // drizzle rain
+            {312, 9, 9},         // heavy intensity drizzle rain
+            {313, 9, 9},         // shower rain and drizzle
+            {314, 9, 9},         // heavy shower rain and drizzle
+            {321, 9, 9},         // shower drizzle
+            {500, 12, 12},       // light rain
+            {501, 12, 12},       // moderate rain
+            {502, 12, 12},       // heavy intensity rain
+            {503, 12, 12},       // very heavy rain
+            {504, 12, 12},       // extreme rain
+            {511, 10, 10},       // freezing rain
+            {520, 12, 12},       // light intensity shower rain
+            {521, 12, 12},       // shower rain
+            {522, 12, 12},       // heavy intensity shower rain
+            {531, 12, 12},       // ragged shower rain
+            {600, 16, 16},       // light snow
+            {601, 16, 16},       // snow
+            {602, 41, 41},       // heavy snow
+            {611, 18, 18},       // sleet
+            {612, 18, 18},       // shower sleet
+            {615, 5, 5},         // light rain and snow
+            {616, 5, 5},         // rain and snow
+            {620, 46, 46},       // light shower snow
+            {621, 46, 46},       // shower snow
+            {622, 46, 46},       // heavy shower snow
+            {701, 20, 20},       // mist
+            {711, 22, 22},       // smoke
+            {721, 21, 21},       // haze
+            {731, 19, 19},       // Sand/Dust Whirls
+            {741, 20, 20},       // Fog
+            {751, 19, 19},       // sand
+            {761, 19, 19},       // dust
+            {762, 19, 19},       // VOLCANIC ASH
+            {771, 24, 24},       // SQUALLS
+            {781, 0, 0},         // TORNADO
+            {800, 32, 31},       // sky is clear
+            {801, 30, 29},       // few clouds
+            {802, 30, 29},       // scattered clouds
+            {803, 28, 27},       // broken clouds
+            {804, 26, 26},       // overcast clouds
+            {900, 0, 0},         // tornado
+            {901, 1, 1},         // tropical storm
+            {902, 2, 2},         // hurricane
+            {903, 25, 25},       // cold
+            {904, 36, 36},       // hot
+            {905, 24, 24},       // windy
+            {906, 17, 17},       // hail
+            {950, 32, 31},       // setting
+            {951, 32, 31},       // calm
+            {952, 32, 31},       // light breeze
+            {953, 32, 31},       // gentle breeze
+            {954, 32, 31},       // moderate breeze
+            {955, 32, 31},       // fresh breeze
+            {956, 24, 24},       // strong breeze
+            {957, 24, 24},       // high wind, near gale
+            {958, 24, 24},       // gale
+            {959, 24, 24},       // severe gale
+            {960, 1, 1},         // storm
+            {961, 1, 1},         // violent storm
+            {962, 2, 2}          // hurricane
+    });
+
+    private static final double METERS_PER_SECOND_TO_KM_PER_HOUR = 3.6;
+
+    private OpenWeatherMapParser() {
+    }
+
+    /**
+     * Streams the current conditions response into data
+     *
+     * @param metric true if the response is in metric units, its wind speed is then converted
+     *               from m/s to km/h like Yahoo's
+     * @return true if the condition, the temperature and the wind were all found
+     */
+    public static boolean parseCurrentConditions(JsonReader response, WeatherFields data, boolean metric)
+            throws IOException {
+        boolean foundWeather = false, foundMain = false, foundWind = false;
+
+        try {
+            if (!JsonValues.beginObject(response)) {
+                return false;
+            }
+            while (response.hasNext()) {
+                String name = response.nextName();
+                if ("weather".equals(name)) {
+                    int conditionCode = parseWeatherCondition(response, true);
+                    foundWeather = conditionCode != NO_CONDITION;
+                    if (foundWeather) {
+                        data.conditionCode = conditionCode;
+                    }
+                } else if ("main".equals(name)) {
+                    foundMain = parseCurrentMain(data, response);
+                } else if ("wind".equals(name)) {
+                    foundWind = parseCurrentWind(data, response, metric);
+                } else {
+                    response.skipValue();
+                }
+            }
+            response.endObject();
+        } catch (MalformedJsonException | IllegalStateException e) {
+            return false;
+        }
+
+        return foundWeather && foundMain && foundWind;
+    }
+
+    /**
+     * Streams the daily forecast response into data, only the first two days are read. Days
+     * that can't be read are left invalid.
+     */
+    public static void parseForecast(JsonReader response, WeatherFields data) throws IOException {
+        try {
+            if (!JsonValues.beginObject(response)) {
+                return;
+            }
+            while (response.hasNext()) {
+                if ("list".equals(response.nextName())) {
+                    if (JsonValues.beginArray(response)) {
+                        parseForecastList(data, response);
+                    }
+                } else {
+                    response.skipValue();
+                }
+            }
+            response.endObject();
+        } catch (MalformedJsonException | IllegalStateException e) {
+            // What was read until the error is kept
+        }
+    }
+
+    /**
+     * Reads the first element of a "weather" array and converts its condition code
+     *
+     * @param withNight Use the icon to tell night conditions apart
+     * @return Converted condition code or {@link #NO_CONDITION} if the array was empty
+     */
+    private static int parseWeatherCondition(JsonReader weather, boolean withNight)
+            throws IOException {
+        if (!JsonValues.beginArray(weather)) {
+            return NO_CONDITION;
+        }
+
+        int conditionCode = NO_CONDITION;
+        if (weather.hasNext() && JsonValues.beginObject(weather)) {
+            int id = -1;
+            String icon = "";
+            while (weather.hasNext()) {
+                String field = weather.nextName();
+                if ("id".equals(field)) {
+                    id = JsonValues.nextInt(weather, -1);
+                } else if ("icon".equals(field)) {
+                    icon = JsonValues.nextString(weather, "");
+                } else {
+                    weather.skipValue();
+                }
+            }
+            weather.endObject();
+            conditionCode = CONDITIONS.toConditionCode(id, withNight && icon.contains("n"));
+        }
+        while (weather.hasNext()) {
+            weather.skipValue();
+        }
+        weather.endArray();
+
+        return conditionCode;
+    }
+
+    private static boolean parseCurrentMain(WeatherFields data, JsonReader main) throws IOException {
+        if (!JsonValues.beginObject(main)) {
+            return false;
+        }
+
+        while (main.hasNext()) {
+            String field = main.nextName();
+            if ("temp".equals(field)) {
+                double temp = JsonValues.nextDouble(main, Double.NaN);
+                if (!Double.isNaN(temp)) {
+                    data.temperature = data.feelsLike = (int) Math.round(temp);
+                }
+            } else if ("humidity".equals(field)) {
+                int humidity = JsonValues.nextInt(main, WeatherFields.INVALID_HUMIDITY);
+                if (humidity >= 0) {
+                    data.humidity = humidity;
+                }
+            } else {
+                main.skipValue();
+            }
+        }
+        main.endObject();
+        return true;
+    }
+
+    private static boolean parseCurrentWind(WeatherFields data, JsonReader wind, boolean metric) throws IOException {
+        if (!JsonValues.beginObject(wind)) {
+            return false;
+        }
+
+        while (wind.hasNext()) {
+            String field = wind.nextName();
+            if ("speed".equals(field)) {
+                double speed = JsonValues.nextDouble(wind, Double.NaN);
+                if (!Double.isNaN(speed)) {
+                    if (metric) {
+                        speed *= METERS_PER_SECOND_TO_KM_PER_HOUR;
+                    }
+                    data.windSpeed = (float) speed;
+                }
+            } else if ("deg".equals(field)) {
+                data.windDirection = JsonValues.nextInt(wind, 0);
+            } else {
+                wind.skipValue();
+            }
+        }
+        wind.endObject();
+        return true;
+    }
+
+    private static void parseForecastList(WeatherFields data, JsonReader list) throws IOException {
+        int day = 0;
+        while (list.hasNext()) {
+            if (day < 2 && JsonValues.beginObject(list)) {
+                parseForecastDay(data, list, day == 0);
+            } else if (day >= 2) {
+                list.skipValue();
+            }
+            day++;
+        }
+        list.endArray();
+    }
+
+    private static void parseForecastDay(WeatherFields data, JsonReader day, boolean today)
+            throws IOException {
+        int conditionCode = NO_CONDITION;
+        double max = Double.NaN, min = Double.NaN;
+
+        while (day.hasNext()) {
+            String name = day.nextName();
+            if ("weather".equals(name)) {
+                conditionCode = parseWeatherCondition(day, false);
+            } else if ("temp".equals(name)) {
+                if (!JsonValues.beginObject(day)) {
+                    continue;
+                }
+                while (day.hasNext()) {
+                    String field = day.nextName();
+                    if ("max".equals(field)) {
+                        max = JsonValues.nextDouble(day, Double.NaN);
+                    } else if ("min".equals(field)) {
+                        min = JsonValues.nextDouble(day, Double.NaN);
+                    } else {
+                        day.skipValue();
+                    }
+                }
+                day.endObject();
+            } else {
+                day.skipValue();
+            }
+        }
+        day.endObject();
+
+        if (conditionCode == NO_CONDITION || Double.isNaN(max) || Double.isNaN(min)) {
+            return;
+        }
+
+        if (today) {
+            data.todayForecastConditionCode = conditionCode;
+            data.todayHigh = (int) Math.round(max);
+            data.todayLow = (int) Math.round(min);
+        } else {
+            data.tomorrowForecastConditionCode = conditionCode;
+            data.tomorrowHigh = (int) Math.round(max);
+            data.tomorrowLow = (int) Math.round(min);
+        }
+    }
+}
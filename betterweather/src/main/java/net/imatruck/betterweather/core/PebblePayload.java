@@ -0,0 +1,128 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather.core;
+
+import java.util.Locale;
+
+/**
+ * What is sent to the Pebble watch app: an icon and the temperature as text. Built without
+ * PebbleKit so it can be benchmarked on a plain JVM, {@link #getKey()} tells two payloads
+ * apart so the same weather isn't sent twice.
+ */
+public final class PebblePayload {
+
+    /**
+     * Keys of the values in the watch app's dictionary
+     */
+    public static final int KEY_ICON = 0;
+    public static final int KEY_TEMPERATURE = 1;
+
+    private static final int ICON_ATM = 0;
+    private static final int ICON_CLEAR = 1;
+    private static final int ICON_CLOUDS = 2;
+    private static final int ICON_DRIZZLE = 3;
+    private static final int ICON_EXTREME = 4;
+    private static final int ICON_RAIN = 5;
+    private static final int ICON_SNOW = 6;
+    private static final int ICON_STORM = 7;
+    private static final int ICON_CLOUDS_NIGHT = 8;
+    private static final int ICON_CLEAR_NIGHT = 9;
+    private static final int ICON_UNKNOWN = 10;
+
+    private static final int[] ICONS = ConditionCodes.checkTable(new int[]{
+            ICON_UNKNOWN,       // -1 not available
+            ICON_EXTREME,       // 0 tornado
+            ICON_EXTREME,       // 1 tropical storm
+            ICON_EXTREME,       // 2 hurricane
+            ICON_STORM,         // 3 severe thunderstorms
+            ICON_STORM,         // 4 thunderstorms
+            ICON_SNOW,          // 5 mixed rain and snow
+            ICON_SNOW,          // 6 mixed rain and sleet
+            ICON_SNOW,          // 7 mixed snow and sleet
+            ICON_SNOW,          // 8 freezing drizzle
+            ICON_DRIZZLE,       // 9 drizzle
+            ICON_SNOW,          // 10 freezing rain
+            ICON_RAIN,          // 11 showers
+            ICON_RAIN,          // 12 showers
+            ICON_SNOW,          // 13 snow flurries
+            ICON_SNOW,          // 14 light snow showers
+            ICON_SNOW,          // 15 blowing snow
+            ICON_SNOW,          // 16 snow
+            ICON_SNOW,          // 17 hail
+            ICON_SNOW,          // 18 sleet
+            ICON_ATM,           // 19 dust
+            ICON_ATM,           // 20 foggy
+            ICON_ATM,           // 21 haze
+            ICON_ATM,           // 22 smoky
+            ICON_CLEAR,         // 23 blustery
+            ICON_ATM,           // 24 windy
+            ICON_SNOW,          // 25 cold
+            ICON_CLOUDS,        // 26 cloudy
+            ICON_CLOUDS_NIGHT,  // 27 mostly cloudy (night)
+            ICON_CLOUDS,        // 28 mostly cloudy (day)
+            ICON_CLOUDS_NIGHT,  // 29 partly cloudy (night)
+            ICON_CLOUDS,        // 30 partly cloudy (day)
+            ICON_CLEAR_NIGHT,   // 31 clear (night)
+            ICON_CLEAR,         // 32 sunny
+            ICON_CLEAR_NIGHT,   // 33 fair (night)
+            ICON_CLEAR,         // 34 fair (day)
+            ICON_RAIN,          // 35 mixed rain and hail
+            ICON_CLEAR,         // 36 hot
+            ICON_STORM,         // 37 isolated thunderstorms
+            ICON_STORM,         // 38 scattered thunderstorms
+            ICON_STORM,         // 39 scattered thunderstorms
+            ICON_RAIN,          // 40 scattered showers
+            ICON_SNOW,          // 41 heavy snow
+            ICON_SNOW,          // 42 scattered snow showers
+            ICON_SNOW,          // 43 heavy snow
+            ICON_CLOUDS,        // 44 partly cloudy
+            ICON_STORM,         // 45 thundershowers
+            ICON_SNOW,          // 46 snow showers
+            ICON_STORM          // 47 isolated thundershowers
+    }, "Pebble icons");
+
+    public final byte iconId;
+    public final String temperature;
+
+    private PebblePayload(byte iconId, String temperature) {
+        this.iconId = iconId;
+        this.temperature = temperature;
+    }
+
+    /**
+     * @param showFeelsLike Show the feels like temperature, with a *, when it's lower
+     * @param weatherUnits  Units of the temperatures, "c" or "f"
+     */
+    public static PebblePayload build(int conditionCode, int temperature, int feelsLike,
+                                      boolean showFeelsLike, String weatherUnits) {
+        StringBuilder displayTemp = new StringBuilder(8);
+        if (feelsLike < temperature && showFeelsLike) {
+            displayTemp.append(feelsLike).append('\u002A');
+        } else {
+            displayTemp.append(temperature).append('\u00B0');
+        }
+        displayTemp.append(weatherUnits.toUpperCase(Locale.US));
+
+        return new PebblePayload((byte) ConditionCodes.lookup(ICONS, conditionCode), displayTemp.toString());
+    }
+
+    /**
+     * @return Text that is the same for two payloads only if they display the same thing
+     */
+    public String getKey() {
+        return iconId + "|" + temperature;
+    }
+}
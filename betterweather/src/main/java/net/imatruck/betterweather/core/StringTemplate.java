@@ -0,0 +1,116 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A format string parsed once, so it can be filled many times without parsing it again.
+ * Only the {@code %s}, {@code %1$s} and {@code %%} specifiers used in the string resources are
+ * supported, other format strings are left to {@link String#format(String, Object...)}.
+ */
+public class StringTemplate {
+
+    private static final int NO_ARG = -1;
+
+    /**
+     * Text before each argument, the last one has no argument after it
+     */
+    private final String[] mLiterals;
+    private final int[] mArgs;
+    /**
+     * Format string to use with {@link String#format(String, Object...)} if it couldn't be parsed
+     */
+    private final String mFallback;
+
+    private StringTemplate(String[] literals, int[] args, String fallback) {
+        mLiterals = literals;
+        mArgs = args;
+        mFallback = fallback;
+    }
+
+    public static StringTemplate compile(String format) {
+        List<String> literals = new ArrayList<String>();
+        List<Integer> args = new ArrayList<Integer>();
+        StringBuilder literal = new StringBuilder();
+        int nextArg = 0;
+
+        int i = 0;
+        while (i < format.length()) {
+            char c = format.charAt(i);
+            if (c != '%') {
+                literal.append(c);
+                i++;
+                continue;
+            }
+
+            int end = format.indexOf('s', i + 1);
+            if (i + 1 < format.length() && format.charAt(i + 1) == '%') {
+                literal.append('%');
+                i += 2;
+            } else if (end == i + 1) {
+                literals.add(literal.toString());
+                args.add(nextArg++);
+                literal.setLength(0);
+                i += 2;
+            } else if (end > i + 2 && format.charAt(end - 1) == '$' && isDigits(format, i + 1, end - 1)) {
+                literals.add(literal.toString());
+                args.add(Integer.parseInt(format.substring(i + 1, end - 1)) - 1);
+                literal.setLength(0);
+                i = end + 1;
+            } else {
+                return new StringTemplate(null, null, format);
+            }
+        }
+        literals.add(literal.toString());
+        args.add(NO_ARG);
+
+        int[] argArray = new int[args.size()];
+        for (int j = 0; j < argArray.length; j++) {
+            argArray[j] = args.get(j);
+        }
+        return new StringTemplate(literals.toArray(new String[literals.size()]), argArray, null);
+    }
+
+    /**
+     * Appends the template filled with the arguments, missing arguments are left empty
+     */
+    public StringBuilder appendTo(StringBuilder builder, CharSequence... args) {
+        if (mFallback != null) {
+            return builder.append(String.format(Locale.getDefault(), mFallback, (Object[]) args));
+        }
+
+        for (int i = 0; i < mLiterals.length; i++) {
+            builder.append(mLiterals[i]);
+            int arg = mArgs[i];
+            if (arg != NO_ARG && arg < args.length) {
+                builder.append(args[arg]);
+            }
+        }
+        return builder;
+    }
+
+    private static boolean isDigits(String s, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!Character.isDigit(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather.core;
+
+/**
+ * Weather values as they are parsed from a response, without anything from Android so the
+ * parsers can be benchmarked on a plain JVM. Missing values are kept as the sentinels below,
+ * they are only turned into text when the data is displayed.
+ */
+public class WeatherFields {
+
+    public static final int INVALID_TEMPERATURE = Integer.MIN_VALUE;
+    public static final int INVALID_CONDITION = ConditionCodes.MIN_CODE;
+    public static final int INVALID_HUMIDITY = -1;
+    public static final float INVALID_WIND_SPEED = Float.NaN;
+
+    public int temperature = INVALID_TEMPERATURE;
+    public int conditionCode = INVALID_CONDITION;
+    public float windSpeed = INVALID_WIND_SPEED;
+    public int windDirection = 0;
+    public int feelsLike = INVALID_TEMPERATURE;
+    public int humidity = INVALID_HUMIDITY;
+    public int todayForecastConditionCode = INVALID_CONDITION;
+    public int todayLow = INVALID_TEMPERATURE, todayHigh = INVALID_TEMPERATURE;
+    public int tomorrowForecastConditionCode = INVALID_CONDITION;
+    public int tomorrowLow = INVALID_TEMPERATURE, tomorrowHigh = INVALID_TEMPERATURE;
+    public String location;
+
+    public WeatherFields() {
+    }
+
+    /**
+     * @param other Fields to copy
+     */
+    public WeatherFields(WeatherFields other) {
+        temperature = other.temperature;
+        conditionCode = other.conditionCode;
+        windSpeed = other.windSpeed;
+        windDirection = other.windDirection;
+        feelsLike = other.feelsLike;
+        humidity = other.humidity;
+        location = other.location;
+        todayForecastConditionCode = other.todayForecastConditionCode;
+        todayLow = other.todayLow;
+        todayHigh = other.todayHigh;
+        tomorrowForecastConditionCode = other.tomorrowForecastConditionCode;
+        tomorrowLow = other.tomorrowLow;
+        tomorrowHigh = other.tomorrowHigh;
+    }
+
+    public boolean hasValidTemperature() {
+        return temperature != INVALID_TEMPERATURE;
+    }
+
+    public boolean hasWindSpeed() {
+        return !Float.isNaN(windSpeed);
+    }
+
+    public boolean hasHumidity() {
+        return humidity != INVALID_HUMIDITY;
+    }
+
+    /**
+     * @return true if today's and tomorrow's high and low were all found
+     */
+    public boolean hasForecast() {
+        return todayLow != INVALID_TEMPERATURE && todayHigh != INVALID_TEMPERATURE
+                && tomorrowLow != INVALID_TEMPERATURE && tomorrowHigh != INVALID_TEMPERATURE;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather.core;
+
+/**
+ * Wind speed math, without anything from Android so it can be benchmarked on a plain JVM.
+ * Speeds are in km/h for the "c" weather unit and in mph otherwise.
+ */
+public final class WindSpeed {
+
+    /**
+     * Returned by {@link #getBeaufortScale(String, float)} when the speed is unknown
+     */
+    public static final int UNKNOWN_SCALE = -1;
+
+    /**
+     * Upper bound, in mph, of each Beaufort scale force but the last one
+     */
+    private static final float[] BEAUFORT_MPH = {1, 4, 8, 13, 18, 25, 31, 39, 47, 55, 64, 74};
+
+    private WindSpeed() {
+    }
+
+    /**
+     * @return Unit, as taken by {@link #convert(String, float, int)}, of the speeds fetched
+     * in this weather unit
+     */
+    public static int getFetchedUnit(String weatherUnit) {
+        return weatherUnit.equals("c") ? 1 : 0;
+    }
+
+    /**
+     * @param wantedUnit 0 for mph, 1 for km/h, 2 for m/s
+     * @return Rounded speed in the wanted unit, 0 if the speed is unknown
+     */
+    public static int convert(String weatherUnit, float windSpeed, int wantedUnit) {
+        if (!Float.isNaN(windSpeed)) {
+            if (weatherUnit.equals("c")) {
+                switch (wantedUnit) {
+                    case 0:
+                        windSpeed = windSpeed / 1.609344f;
+                        break; // Km/h -> Mph
+                    case 2:
+                        windSpeed = windSpeed * 0.2778f;
+                        break; // Km/h -> M/s
+                }
+            } else {
+                switch (wantedUnit) {
+                    case 1:
+                        windSpeed = windSpeed * 1.609344f;
+                        break; // Mph -> Km/h
+                    case 2:
+                        windSpeed = windSpeed * 0.44704f;
+                        break; // Mph -> M/s
+                }
+            }
+            return Math.round(windSpeed);
+        }
+        return 0;
+    }
+
+    /**
+     * @return Force on the Beaufort scale, from 0 to 12, or {@link #UNKNOWN_SCALE}
+     * @see <a href="http://www.windfinder.com/wind/windspeed.htm">Wind speed labels</a>
+     */
+    public static int getBeaufortScale(String weatherUnit, float windSpeed) {
+        if (Float.isNaN(windSpeed)) {
+            return UNKNOWN_SCALE;
+        }
+        if (weatherUnit.equals("c")) {
+            windSpeed = windSpeed / 1.609344f; // Km/h -> Mph
+        }
+        for (int force = 0; force < BEAUFORT_MPH.length; force++) {
+            if (windSpeed < BEAUFORT_MPH[force]) {
+                return force;
+            }
+        }
+        return BEAUFORT_MPH.length;
+    }
+}
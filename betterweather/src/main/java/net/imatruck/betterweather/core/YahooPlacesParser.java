@@ -0,0 +1,220 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather.core;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the places of Yahoo! GeoPlanet XML responses, for both the lookup by coordinates and
+ * the search by name. Only uses the XmlPullParser API, so it runs on a plain JVM with any
+ * implementation of it.
+ */
+public final class YahooPlacesParser {
+
+    private static final int PARSE_STATE_NONE = 0;
+    private static final int PARSE_STATE_PLACE = 1;
+    private static final int PARSE_STATE_WOEID = 2;
+    private static final int PARSE_STATE_NAME = 3;
+    private static final int PARSE_STATE_COUNTRY = 4;
+    private static final int PARSE_STATE_ADMIN1 = 5;
+    private static final int PARSE_STATE_LAT = 7;
+    private static final int PARSE_STATE_LNG = 8;
+    private static final int PARSE_STATE_ADMIN2 = 9;
+    private static final int PARSE_STATE_ADMIN3 = 10;
+
+    private YahooPlacesParser() {
+    }
+
+    /**
+     * @param xpp Parser set to the start of the response
+     * @return The places, in the order of the response
+     */
+    public static List<Place> parse(XmlPullParser xpp) throws XmlPullParserException, IOException {
+        List<Place> places = new ArrayList<Place>();
+
+        String woeid = "", lat = "", lng = "";
+        // addrs have {'name', 'admin3', 'admin2', 'admin1', 'country'}, small -> large.
+        // Not so few places have empty *local*, and/or admin* values in Yahoo place API.
+        // So in some cases, only one name or two names with same values was shown.
+        // For example, "SEOUL" or "SEOUL, SEOUL" can be removed.
+        // So modified algorithm to get names. Not used local fields.
+        // From name to country, skip empty or same value and make "small, large" form.
+        String[] addrs = {"", "", "", "", ""};
+
+        int state = PARSE_STATE_NONE;
+
+        // latitude and longitude values are shown in many entries.
+        // But values in <centroid>, not in <boundingBox> are relatively exact one.
+        // So using this flag, get only values in centroid entry.
+        boolean centroid = false;
+
+        int eventType = xpp.getEventType();
+        while (eventType != XmlPullParser.END_DOCUMENT) {
+            String tagName = xpp.getName();
+
+            if (eventType == XmlPullParser.START_TAG) {
+                switch (state) {
+                    case PARSE_STATE_NONE:
+                        if ("place".equals(tagName)) {
+                            state = PARSE_STATE_PLACE;
+                            // reset
+                            woeid = lat = lng = "";
+                            for (int i = 0; i < addrs.length; i++)
+                                addrs[i] = "";
+                        }
+                        break;
+
+                    case PARSE_STATE_PLACE:
+                        if ("name".equals(tagName)) {
+                            state = PARSE_STATE_NAME;
+                        } else if ("woeid".equals(tagName)) {
+                            state = PARSE_STATE_WOEID;
+                        } else if ("country".equals(tagName)) {
+                            state = PARSE_STATE_COUNTRY;
+                        } else if ("admin1".equals(tagName)) {
+                            state = PARSE_STATE_ADMIN1;
+                        } else if (centroid && "latitude".equals(tagName)) {
+                            state = PARSE_STATE_LAT;
+                        } else if (centroid && "longitude".equals(tagName)) {
+                            state = PARSE_STATE_LNG;
+                        } else if ("admin2".equals(tagName)) {
+                            state = PARSE_STATE_ADMIN2;
+                        } else if ("admin3".equals(tagName)) {
+                            state = PARSE_STATE_ADMIN3;
+                        } else if ("centroid".equals(tagName)) {
+                            // We use lat/lon values in <centroid> entry.
+                            centroid = true;
+                        }
+                        break;
+                }
+
+            } else if (eventType == XmlPullParser.TEXT) {
+                switch (state) {
+                    case PARSE_STATE_WOEID:
+                        woeid = xpp.getText();
+                        break;
+
+                    case PARSE_STATE_NAME:
+                        addrs[0] = xpp.getText();
+                        break;
+
+                    case PARSE_STATE_ADMIN3:
+                        addrs[1] = xpp.getText();
+                        break;
+
+                    case PARSE_STATE_ADMIN2:
+                        addrs[2] = xpp.getText();
+                        break;
+
+                    case PARSE_STATE_ADMIN1:
+                        addrs[3] = xpp.getText();
+                        break;
+
+                    case PARSE_STATE_COUNTRY:
+                        addrs[4] = xpp.getText();
+                        break;
+
+                    case PARSE_STATE_LAT:
+                        lat = xpp.getText();
+                        break;
+
+                    case PARSE_STATE_LNG:
+                        lng = xpp.getText();
+                }
+
+            } else if (eventType == XmlPullParser.END_TAG) {
+                if ("place".equals(tagName)) {
+                    places.add(toPlace(woeid, addrs, lat, lng));
+                    state = PARSE_STATE_NONE;
+                } else if ("centroid".equals(tagName)) {
+                    centroid = false;
+                } else if (state != PARSE_STATE_NONE) {
+                    state = PARSE_STATE_PLACE;
+                }
+            }
+
+            eventType = xpp.next();
+        }
+
+        return places;
+    }
+
+    /**
+     * The small name is the first name that isn't empty, the large one the next that isn't
+     * empty nor the same
+     */
+    private static Place toPlace(String woeid, String[] addrs, String lat, String lng) {
+        String smallName = "", largeName = "";
+        for (int i = 0; i < addrs.length; i++) {
+            if (isEmpty(addrs[i])) {
+                continue;
+            }
+            smallName = addrs[i];
+            for (int j = i + 1; j < addrs.length; j++) {
+                if (isEmpty(addrs[j])) {
+                    continue;
+                }
+                if (!smallName.equals(addrs[j])) {
+                    largeName = addrs[j];
+                    break;
+                }
+            }
+            break;
+        }
+        return new Place(woeid, smallName, largeName, addrs[4], lat, lng);
+    }
+
+    private static boolean isEmpty(String text) {
+        return text == null || text.length() == 0;
+    }
+
+    /**
+     * Place as written in the response, missing values are empty
+     */
+    public static final class Place {
+        public final String woeid;
+        /**
+         * Name of the place, and of the larger area it is in (empty if unknown)
+         */
+        public final String smallName, largeName;
+        public final String country;
+        /**
+         * Coordinates of the place's centroid, as text
+         */
+        public final String lat, lng;
+
+        Place(String woeid, String smallName, String largeName, String country, String lat, String lng) {
+            this.woeid = woeid;
+            this.smallName = smallName;
+            this.largeName = largeName;
+            this.country = country;
+            this.lat = lat;
+            this.lng = lng;
+        }
+
+        /**
+         * @return "small, large", or only the small name if the large one is unknown
+         */
+        public String getDisplayName() {
+            return isEmpty(largeName) ? smallName : smallName + ", " + largeName;
+        }
+    }
+}
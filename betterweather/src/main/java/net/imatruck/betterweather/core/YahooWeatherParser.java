@@ -0,0 +1,261 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather.core;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads Yahoo! weather YQL responses as they are streamed. Only the fields used by the
+ * extension are decoded, everything else is skipped.
+ */
+public final class YahooWeatherParser {
+
+    /**
+     * Channel links end with the WOEID, like https://weather.yahoo.com/country/state/city-2459115/
+     */
+    private static final Pattern LINK_WOEID = Pattern.compile("-(\\d+)/?$");
+
+    private YahooWeatherParser() {
+    }
+
+    /**
+     * @return One channel per location found, empty if the query had no results
+     * @throws IOException           If the response can't be read or isn't JSON
+     * @throws IllegalStateException If the JSON doesn't have the expected structure
+     */
+    public static List<Channel> parse(JsonReader response) throws IOException {
+        List<Channel> channels = new ArrayList<Channel>();
+
+        if (JsonValues.beginObject(response)) {
+            while (response.hasNext()) {
+                if ("query".equals(response.nextName())) {
+                    if (JsonValues.beginObject(response)) {
+                        parseQuery(channels, response);
+                    }
+                } else {
+                    response.skipValue();
+                }
+            }
+            response.endObject();
+        }
+
+        return channels;
+    }
+
+    private static void parseQuery(List<Channel> channels, JsonReader query) throws IOException {
+        while (query.hasNext()) {
+            if ("results".equals(query.nextName())) {
+                // results is null when the WOEID is unknown
+                if (JsonValues.beginObject(query)) {
+                    while (query.hasNext()) {
+                        if ("channel".equals(query.nextName())) {
+                            // channel is an array when more than one WOEID was found
+                            if (query.peek() == JsonToken.BEGIN_ARRAY) {
+                                query.beginArray();
+                                while (query.hasNext()) {
+                                    if (JsonValues.beginObject(query)) {
+                                        channels.add(parseChannel(query));
+                                    }
+                                }
+                                query.endArray();
+                            } else if (JsonValues.beginObject(query)) {
+                                channels.add(parseChannel(query));
+                            }
+                        } else {
+                            query.skipValue();
+                        }
+                    }
+                    query.endObject();
+                }
+            } else {
+                query.skipValue();
+            }
+        }
+        query.endObject();
+    }
+
+    private static Channel parseChannel(JsonReader channel) throws IOException {
+        WeatherFields data = new WeatherFields();
+        String woeid = null;
+        while (channel.hasNext()) {
+            String name = channel.nextName();
+            if ("item".equals(name)) {
+                if (JsonValues.beginObject(channel))
+                    parseItem(data, channel);
+            } else if ("wind".equals(name)) {
+                if (JsonValues.beginObject(channel))
+                    parseWind(data, channel);
+            } else if ("atmosphere".equals(name)) {
+                if (JsonValues.beginObject(channel))
+                    parseAtmosphere(data, channel);
+            } else if ("location".equals(name)) {
+                if (JsonValues.beginObject(channel))
+                    parseLocation(data, channel);
+            } else if ("link".equals(name)) {
+                String link = JsonValues.nextString(channel, null);
+                if (link != null) {
+                    Matcher matcher = LINK_WOEID.matcher(link);
+                    woeid = matcher.find() ? matcher.group(1) : null;
+                }
+            } else {
+                // units, image, astronomy, etc. are not used
+                channel.skipValue();
+            }
+        }
+        channel.endObject();
+        return new Channel(woeid, data);
+    }
+
+    private static void parseItem(WeatherFields data, JsonReader item) throws IOException {
+        while (item.hasNext()) {
+            String name = item.nextName();
+            if ("condition".equals(name)) {
+                if (!JsonValues.beginObject(item)) {
+                    continue;
+                }
+                while (item.hasNext()) {
+                    String field = item.nextName();
+                    if ("temp".equals(field)) {
+                        data.temperature = data.feelsLike = JsonValues.nextInt(item, WeatherFields.INVALID_TEMPERATURE);
+                    } else if ("code".equals(field)) {
+                        data.conditionCode = JsonValues.nextInt(item, WeatherFields.INVALID_CONDITION);
+                    } else {
+                        item.skipValue();
+                    }
+                }
+                item.endObject();
+            } else if ("forecast".equals(name)) {
+                if (!JsonValues.beginArray(item)) {
+                    continue;
+                }
+                // Only today and tomorrow are displayed
+                int day = 0;
+                while (item.hasNext()) {
+                    if (day < 2 && JsonValues.beginObject(item)) {
+                        parseForecastDay(data, item, day == 0);
+                    } else if (day >= 2) {
+                        item.skipValue();
+                    }
+                    day++;
+                }
+                item.endArray();
+            } else {
+                item.skipValue();
+            }
+        }
+        item.endObject();
+    }
+
+    private static void parseForecastDay(WeatherFields data, JsonReader forecast, boolean today)
+            throws IOException {
+        int code = WeatherFields.INVALID_CONDITION;
+        int high = WeatherFields.INVALID_TEMPERATURE, low = WeatherFields.INVALID_TEMPERATURE;
+        while (forecast.hasNext()) {
+            String field = forecast.nextName();
+            if ("code".equals(field)) {
+                code = JsonValues.nextInt(forecast, WeatherFields.INVALID_CONDITION);
+            } else if ("high".equals(field)) {
+                high = JsonValues.nextInt(forecast, WeatherFields.INVALID_TEMPERATURE);
+            } else if ("low".equals(field)) {
+                low = JsonValues.nextInt(forecast, WeatherFields.INVALID_TEMPERATURE);
+            } else {
+                forecast.skipValue();
+            }
+        }
+        forecast.endObject();
+
+        if (today) {
+            data.todayForecastConditionCode = code;
+            data.todayHigh = high;
+            data.todayLow = low;
+        } else {
+            data.tomorrowForecastConditionCode = code;
+            data.tomorrowHigh = high;
+            data.tomorrowLow = low;
+        }
+    }
+
+    private static void parseWind(WeatherFields data, JsonReader wind) throws IOException {
+        while (wind.hasNext()) {
+            String field = wind.nextName();
+            if ("speed".equals(field)) {
+                data.windSpeed = (float) JsonValues.nextDouble(wind, Double.NaN);
+            } else if ("direction".equals(field)) {
+                data.windDirection = JsonValues.nextInt(wind, 0);
+            } else {
+                wind.skipValue();
+            }
+        }
+        wind.endObject();
+    }
+
+    private static void parseAtmosphere(WeatherFields data, JsonReader atmosphere) throws IOException {
+        while (atmosphere.hasNext()) {
+            if ("humidity".equals(atmosphere.nextName())) {
+                int humidity = JsonValues.nextInt(atmosphere, WeatherFields.INVALID_HUMIDITY);
+                if (humidity >= 0) {
+                    data.humidity = humidity;
+                }
+            } else {
+                atmosphere.skipValue();
+            }
+        }
+        atmosphere.endObject();
+    }
+
+    private static void parseLocation(WeatherFields data, JsonReader location) throws IOException {
+        String city = null, region = null;
+        while (location.hasNext()) {
+            String field = location.nextName();
+            if ("city".equals(field)) {
+                city = JsonValues.nextString(location, null);
+            } else if ("region".equals(field)) {
+                region = JsonValues.nextString(location, null);
+            } else {
+                location.skipValue();
+            }
+        }
+        location.endObject();
+
+        if (city != null && region != null) {
+            data.location = String.format(Locale.getDefault(), "%s, %s", city.trim(), region.trim());
+        }
+    }
+
+    /**
+     * Weather of a location from the response, with its WOEID when it could be read
+     */
+    public static final class Channel {
+        /**
+         * WOEID from the channel's link, null if the link didn't have one
+         */
+        public final String woeid;
+        public final WeatherFields data;
+
+        Channel(String woeid, WeatherFields data) {
+            this.woeid = woeid;
+            this.data = data;
+        }
+    }
+}
@@ -17,80 +17,61 @@ package net.imatruck.betterweather.iconthemes;
 
 import net.imatruck.betterweather.R;
 
-public class ChameleonIconTheme implements IIconTheme {
+public class ChameleonIconTheme extends TableIconTheme {
 
-    @Override
-    public int getConditionIcon(int conditionCode) {
-        switch (conditionCode) {
-            case 20: // foggy
-            case 19: // dust
-                return R.drawable.chameleon_foggy;
-            case 21: // haze
-                return R.drawable.chameleon_haze;
-            case 26: // cloudy
-                return R.drawable.chameleon_cloudy;
-            case 27: // mostly cloudy (night)
-                return R.drawable.chameleon_mostly_cloudy_night;
-            case 29: // partly cloudy (night)
-                return R.drawable.chameleon_partly_cloudy_night;
-            case 28: // mostly cloudy (day)
-                return R.drawable.chameleon_mostly_cloudy;
-            case 30: // partly cloudy (day)
-            case 44: // partly cloudy
-                return R.drawable.chameleon_partly_cloudy;
-            case 31: // clear (night)
-            case 33: // fair (night)
-                return R.drawable.chameleon_clear_night;
-            case 34: // fair (day)
-            case 32: // sunny
-            case 23: // blustery
-            case 36: // hot
-                return R.drawable.chameleon_sunny;
-            case 0: // tornado
-            case 1: // tropical storm
-            case 2: // hurricane
-            case 24: // windy
-            case 22: // smoky
-                return R.drawable.chameleon_windy;
-            case 5: // mixed rain and snow
-            case 6: // mixed rain and sleet
-            case 7: // mixed snow and sleet
-            case 18: // sleet
-            case 8: // freezing drizzle
-            case 10: // freezing rain
-            case 14: // light snow showers
-                return R.drawable.chameleon_mixed_rain_and_snow;
-            case 17: // hail
-            case 35: // mixed rain and hail
-                return R.drawable.chameleon_hail;
-            case 9: // drizzle
-                return R.drawable.chameleon_drizzle;
-            case 11: // showers
-            case 12: // showers
-            case 40: // scattered showers
-                return R.drawable.chameleon_showers;
-            case 4: // thunderstorms
-            case 37: // isolated thunderstorms
-                return R.drawable.chameleon_thunderstorms;
-            case 45: // thundershowers
-            case 47: // isolated thundershowers
-                return R.drawable.chameleon_thundershowers;
-            case 3: // severe thunderstorms
-            case 38: // scattered thunderstorms
-            case 39: // scattered thunderstorms
-                return R.drawable.chameleon_scattered_thunderstorms;
-            case 15: // blowing snow
-            case 16: // snow
-            case 25: // cold
-            case 46: // snow showers
-            case 13: // snow flurries
-            case 42: // scattered snow showers
-                return R.drawable.chameleon_cold;
-            case 41: // heavy snow
-            case 43: // heavy snow
-                return R.drawable.chameleon_heavy_snow;
-        }
+    private static final int[] ICONS = {
+            R.drawable.chameleon_sunny,                    // -1 not available
+            R.drawable.chameleon_windy,                    // 0 tornado
+            R.drawable.chameleon_windy,                    // 1 tropical storm
+            R.drawable.chameleon_windy,                    // 2 hurricane
+            R.drawable.chameleon_scattered_thunderstorms,  // 3 severe thunderstorms
+            R.drawable.chameleon_thunderstorms,            // 4 thunderstorms
+            R.drawable.chameleon_mixed_rain_and_snow,      // 5 mixed rain and snow
+            R.drawable.chameleon_mixed_rain_and_snow,      // 6 mixed rain and sleet
+            R.drawable.chameleon_mixed_rain_and_snow,      // 7 mixed snow and sleet
+            R.drawable.chameleon_mixed_rain_and_snow,      // 8 freezing drizzle
+            R.drawable.chameleon_drizzle,                  // 9 drizzle
+            R.drawable.chameleon_mixed_rain_and_snow,      // 10 freezing rain
+            R.drawable.chameleon_showers,                  // 11 showers
+            R.drawable.chameleon_showers,                  // 12 showers
+            R.drawable.chameleon_cold,                     // 13 snow flurries
+            R.drawable.chameleon_mixed_rain_and_snow,      // 14 light snow showers
+            R.drawable.chameleon_cold,                     // 15 blowing snow
+            R.drawable.chameleon_cold,                     // 16 snow
+            R.drawable.chameleon_hail,                     // 17 hail
+            R.drawable.chameleon_mixed_rain_and_snow,      // 18 sleet
+            R.drawable.chameleon_foggy,                    // 19 dust
+            R.drawable.chameleon_foggy,                    // 20 foggy
+            R.drawable.chameleon_haze,                     // 21 haze
+            R.drawable.chameleon_windy,                    // 22 smoky
+            R.drawable.chameleon_sunny,                    // 23 blustery
+            R.drawable.chameleon_windy,                    // 24 windy
+            R.drawable.chameleon_cold,                     // 25 cold
+            R.drawable.chameleon_cloudy,                   // 26 cloudy
+            R.drawable.chameleon_mostly_cloudy_night,      // 27 mostly cloudy (night)
+            R.drawable.chameleon_mostly_cloudy,            // 28 mostly cloudy (day)
+            R.drawable.chameleon_partly_cloudy_night,      // 29 partly cloudy (night)
+            R.drawable.chameleon_partly_cloudy,            // 30 partly cloudy (day)
+            R.drawable.chameleon_clear_night,              // 31 clear (night)
+            R.drawable.chameleon_sunny,                    // 32 sunny
+            R.drawable.chameleon_clear_night,              // 33 fair (night)
+            R.drawable.chameleon_sunny,                    // 34 fair (day)
+            R.drawable.chameleon_hail,                     // 35 mixed rain and hail
+            R.drawable.chameleon_sunny,                    // 36 hot
+            R.drawable.chameleon_thunderstorms,            // 37 isolated thunderstorms
+            R.drawable.chameleon_scattered_thunderstorms,  // 38 scattered thunderstorms
+            R.drawable.chameleon_scattered_thunderstorms,  // 39 scattered thunderstorms
+            R.drawable.chameleon_showers,                  // 40 scattered showers
+            R.drawable.chameleon_heavy_snow,               // 41 heavy snow
+            R.drawable.chameleon_cold,                     // 42 scattered snow showers
+            R.drawable.chameleon_heavy_snow,               // 43 heavy snow
+            R.drawable.chameleon_partly_cloudy,            // 44 partly cloudy
+            R.drawable.chameleon_thundershowers,           // 45 thundershowers
+            R.drawable.chameleon_cold,                     // 46 snow showers
+            R.drawable.chameleon_thundershowers            // 47 isolated thundershowers
+    };
 
-        return R.drawable.chameleon_sunny;
+    public ChameleonIconTheme() {
+        super(ICONS, "Chameleon");
     }
 }
@@ -17,78 +17,61 @@ package net.imatruck.betterweather.iconthemes;
 
 import net.imatruck.betterweather.R;
 
-public class ClimaconsIconTheme implements IIconTheme {
-    @Override
-    public int getConditionIcon(int conditionCode) {
-        switch (conditionCode) {
-            case 20: // foggy
-                return R.drawable.climacons_foggy;
-            case 21: // haze
-            case 19: // dust
-            case 22: // smoky
-                return R.drawable.climacons_smoky;
-            case 25: // cold
-                return R.drawable.climacons_cold;
-            case 26: // cloudy
-                return R.drawable.climacons_cloudy;
-            case 27: // mostly cloudy (night)
-            case 29: // partly cloudy (night)
-                return R.drawable.climacons_partly_cloudy_night;
-            case 28: // mostly cloudy (day)
-            case 30: // partly cloudy (day)
-            case 44: // partly cloudy
-                return R.drawable.climacons_partly_cloudy;
-            case 31: // clear (night)
-            case 33: // fair (night)
-                return R.drawable.climacons_clear_night;
-            case 34: // fair (day)
-            case 32: // sunny
-            case 23: // blustery
-            case 36: // hot
-                return R.drawable.climacons_sunny;
-            case 0: // tornado
-            case 1: // tropical storm
-            case 2: // hurricane
-            case 24: // windy
-                return R.drawable.climacons_windy;
-            case 5: // mixed rain and snow
-            case 6: // mixed rain and sleet
-            case 7: // mixed snow and sleet
-            case 18: // sleet
-            case 8: // freezing drizzle
-            case 10: // freezing rain
-            case 14: // light snow showers
-                return R.drawable.climacons_mixed_rain_and_snow;
-            case 17: // hail
-            case 35: // mixed rain and hail
-                return R.drawable.climacons_hail;
-            case 9: // drizzle
-                return R.drawable.climacons_drizzle;
-            case 11: // showers
-            case 12: // showers
-                return R.drawable.climacons_showers;
-            case 40: // scattered showers
-                return R.drawable.climacons_scattered_showers;
-            case 3: // severe thunderstorms
-            case 4: // thunderstorms
-            case 37: // isolated thunderstorms
-            case 45: // thundershowers
-            case 47: // isolated thundershowers
-                return R.drawable.climacons_thunderstorms;
-            case 38: // scattered thunderstorms
-            case 39: // scattered thunderstorms
-                return R.drawable.climacons_scattered_thunderstorms;
-            case 15: // blowing snow
-                return R.drawable.climacons_blowing_snow;
-            case 16: // snow
-            case 41: // heavy snow
-            case 43: // heavy snow
-            case 46: // snow showers
-            case 13: // snow flurries
-            case 42: // scattered snow showers
-                return R.drawable.climacons_heavy_snow;
-        }
+public class ClimaconsIconTheme extends TableIconTheme {
 
-        return R.drawable.climacons_sunny;
+    private static final int[] ICONS = {
+            R.drawable.climacons_sunny,                    // -1 not available
+            R.drawable.climacons_windy,                    // 0 tornado
+            R.drawable.climacons_windy,                    // 1 tropical storm
+            R.drawable.climacons_windy,                    // 2 hurricane
+            R.drawable.climacons_thunderstorms,            // 3 severe thunderstorms
+            R.drawable.climacons_thunderstorms,            // 4 thunderstorms
+            R.drawable.climacons_mixed_rain_and_snow,      // 5 mixed rain and snow
+            R.drawable.climacons_mixed_rain_and_snow,      // 6 mixed rain and sleet
+            R.drawable.climacons_mixed_rain_and_snow,      // 7 mixed snow and sleet
+            R.drawable.climacons_mixed_rain_and_snow,      // 8 freezing drizzle
+            R.drawable.climacons_drizzle,                  // 9 drizzle
+            R.drawable.climacons_mixed_rain_and_snow,      // 10 freezing rain
+            R.drawable.climacons_showers,                  // 11 showers
+            R.drawable.climacons_showers,                  // 12 showers
+            R.drawable.climacons_heavy_snow,               // 13 snow flurries
+            R.drawable.climacons_mixed_rain_and_snow,      // 14 light snow showers
+            R.drawable.climacons_blowing_snow,             // 15 blowing snow
+            R.drawable.climacons_heavy_snow,               // 16 snow
+            R.drawable.climacons_hail,                     // 17 hail
+            R.drawable.climacons_mixed_rain_and_snow,      // 18 sleet
+            R.drawable.climacons_smoky,                    // 19 dust
+            R.drawable.climacons_foggy,                    // 20 foggy
+            R.drawable.climacons_smoky,                    // 21 haze
+            R.drawable.climacons_smoky,                    // 22 smoky
+            R.drawable.climacons_sunny,                    // 23 blustery
+            R.drawable.climacons_windy,                    // 24 windy
+            R.drawable.climacons_cold,                     // 25 cold
+            R.drawable.climacons_cloudy,                   // 26 cloudy
+            R.drawable.climacons_partly_cloudy_night,      // 27 mostly cloudy (night)
+            R.drawable.climacons_partly_cloudy,            // 28 mostly cloudy (day)
+            R.drawable.climacons_partly_cloudy_night,      // 29 partly cloudy (night)
+            R.drawable.climacons_partly_cloudy,            // 30 partly cloudy (day)
+            R.drawable.climacons_clear_night,              // 31 clear (night)
+            R.drawable.climacons_sunny,                    // 32 sunny
+            R.drawable.climacons_clear_night,              // 33 fair (night)
+            R.drawable.climacons_sunny,                    // 34 fair (day)
+            R.drawable.climacons_hail,                     // 35 mixed rain and hail
+            R.drawable.climacons_sunny,                    // 36 hot
+            R.drawable.climacons_thunderstorms,            // 37 isolated thunderstorms
+            R.drawable.climacons_scattered_thunderstorms,  // 38 scattered thunderstorms
+            R.drawable.climacons_scattered_thunderstorms,  // 39 scattered thunderstorms
+            R.drawable.climacons_scattered_showers,        // 40 scattered showers
+            R.drawable.climacons_heavy_snow,               // 41 heavy snow
+            R.drawable.climacons_heavy_snow,               // 42 scattered snow showers
+            R.drawable.climacons_heavy_snow,               // 43 heavy snow
+            R.drawable.climacons_partly_cloudy,            // 44 partly cloudy
+            R.drawable.climacons_thunderstorms,            // 45 thundershowers
+            R.drawable.climacons_heavy_snow,               // 46 snow showers
+            R.drawable.climacons_thunderstorms             // 47 isolated thundershowers
+    };
+
+    public ClimaconsIconTheme() {
+        super(ICONS, "Climacons");
     }
 }
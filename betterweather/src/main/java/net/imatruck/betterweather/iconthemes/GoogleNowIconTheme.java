@@ -17,73 +17,61 @@ package net.imatruck.betterweather.iconthemes;
 
 import net.imatruck.betterweather.R;
 
-public class GoogleNowIconTheme implements IIconTheme {
+public class GoogleNowIconTheme extends TableIconTheme {
 
-    @Override
-    public int getConditionIcon(int conditionCode) {
-        switch (conditionCode) {
-            case 20: // foggy
-            case 19: // dust
-            case 21: // haze
-                return R.drawable.googlenow_foggy;
-            case 26: // cloudy
-                return R.drawable.googlenow_cloudy;
-            case 27: // mostly cloudy (night)
-                return R.drawable.googlenow_mostly_cloudy_night;
-            case 29: // partly cloudy (night)
-                return R.drawable.googlenow_partly_cloudy_night;
-            case 28: // mostly cloudy (day)
-                return R.drawable.googlenow_mostly_cloudy;
-            case 30: // partly cloudy (day)
-            case 44: // partly cloudy
-                return R.drawable.googlenow_partly_cloudy;
-            case 31: // clear (night)
-            case 33: // fair (night)
-                return R.drawable.googlenow_clear_night;
-            case 34: // fair (day)
-            case 32: // sunny
-            case 23: // blustery
-            case 36: // hot
-                return R.drawable.googlenow_sunny;
-            case 0: // tornado
-            case 1: // tropical storm
-            case 2: // hurricane
-            case 24: // windy
-            case 22: // smoky
-                return R.drawable.googlenow_windy;
-            case 5: // mixed rain and snow
-            case 6: // mixed rain and sleet
-            case 7: // mixed snow and sleet
-            case 18: // sleet
-            case 8: // freezing drizzle
-            case 10: // freezing rain
-            case 14: // light snow showers
-            case 17: // hail
-            case 35: // mixed rain and hail
-                return R.drawable.googlenow_mixed_rain_and_sleet;
-            case 9: // drizzle
-            case 11: // showers
-            case 12: // showers
-            case 40: // scattered showers
-                return R.drawable.googlenow_rain;
-            case 4: // thunderstorms
-            case 37: // isolated thunderstorms
-            case 45: // thundershowers
-            case 47: // isolated thundershowers
-            case 3: // severe thunderstorms
-            case 38: // scattered thunderstorms
-            case 39: // scattered thunderstorms
-                return R.drawable.googlenow_storm;
-            case 15: // blowing snow
-            case 16: // snow
-            case 25: // cold
-            case 46: // snow showers
-            case 13: // snow flurries
-            case 42: // scattered snow showers
-            case 41: // heavy snow
-            case 43: // heavy snow
-                return R.drawable.googlenow_snow;
-        }
-        return R.drawable.googlenow_unknown;
+    private static final int[] ICONS = {
+            R.drawable.googlenow_unknown,               // -1 not available
+            R.drawable.googlenow_windy,                 // 0 tornado
+            R.drawable.googlenow_windy,                 // 1 tropical storm
+            R.drawable.googlenow_windy,                 // 2 hurricane
+            R.drawable.googlenow_storm,                 // 3 severe thunderstorms
+            R.drawable.googlenow_storm,                 // 4 thunderstorms
+            R.drawable.googlenow_mixed_rain_and_sleet,  // 5 mixed rain and snow
+            R.drawable.googlenow_mixed_rain_and_sleet,  // 6 mixed rain and sleet
+            R.drawable.googlenow_mixed_rain_and_sleet,  // 7 mixed snow and sleet
+            R.drawable.googlenow_mixed_rain_and_sleet,  // 8 freezing drizzle
+            R.drawable.googlenow_rain,                  // 9 drizzle
+            R.drawable.googlenow_mixed_rain_and_sleet,  // 10 freezing rain
+            R.drawable.googlenow_rain,                  // 11 showers
+            R.drawable.googlenow_rain,                  // 12 showers
+            R.drawable.googlenow_snow,                  // 13 snow flurries
+            R.drawable.googlenow_mixed_rain_and_sleet,  // 14 light snow showers
+            R.drawable.googlenow_snow,                  // 15 blowing snow
+            R.drawable.googlenow_snow,                  // 16 snow
+            R.drawable.googlenow_mixed_rain_and_sleet,  // 17 hail
+            R.drawable.googlenow_mixed_rain_and_sleet,  // 18 sleet
+            R.drawable.googlenow_foggy,                 // 19 dust
+            R.drawable.googlenow_foggy,                 // 20 foggy
+            R.drawable.googlenow_foggy,                 // 21 haze
+            R.drawable.googlenow_windy,                 // 22 smoky
+            R.drawable.googlenow_sunny,                 // 23 blustery
+            R.drawable.googlenow_windy,                 // 24 windy
+            R.drawable.googlenow_snow,                  // 25 cold
+            R.drawable.googlenow_cloudy,                // 26 cloudy
+            R.drawable.googlenow_mostly_cloudy_night,   // 27 mostly cloudy (night)
+            R.drawable.googlenow_mostly_cloudy,         // 28 mostly cloudy (day)
+            R.drawable.googlenow_partly_cloudy_night,   // 29 partly cloudy (night)
+            R.drawable.googlenow_partly_cloudy,         // 30 partly cloudy (day)
+            R.drawable.googlenow_clear_night,           // 31 clear (night)
+            R.drawable.googlenow_sunny,                 // 32 sunny
+            R.drawable.googlenow_clear_night,           // 33 fair (night)
+            R.drawable.googlenow_sunny,                 // 34 fair (day)
+            R.drawable.googlenow_mixed_rain_and_sleet,  // 35 mixed rain and hail
+            R.drawable.googlenow_sunny,                 // 36 hot
+            R.drawable.googlenow_storm,                 // 37 isolated thunderstorms
+            R.drawable.googlenow_storm,                 // 38 scattered thunderstorms
+            R.drawable.googlenow_storm,                 // 39 scattered thunderstorms
+            R.drawable.googlenow_rain,                  // 40 scattered showers
+            R.drawable.googlenow_snow,                  // 41 heavy snow
+            R.drawable.googlenow_snow,                  // 42 scattered snow showers
+            R.drawable.googlenow_snow,                  // 43 heavy snow
+            R.drawable.googlenow_partly_cloudy,         // 44 partly cloudy
+            R.drawable.googlenow_storm,                 // 45 thundershowers
+            R.drawable.googlenow_snow,                  // 46 snow showers
+            R.drawable.googlenow_storm                  // 47 isolated thundershowers
+    };
+
+    public GoogleNowIconTheme() {
+        super(ICONS, "GoogleNow");
     }
 }
@@ -17,23 +17,32 @@ package net.imatruck.betterweather.iconthemes;
 
 import net.imatruck.betterweather.BetterWeatherExtension;
 
+/**
+ * Themes only map condition codes to resources, so a single instance of each is shared
+ */
 public class IconThemeFactory {
 
+    private static final IIconTheme sClimacons = new ClimaconsIconTheme();
+    private static final IIconTheme sWeathercons = new WeatherconsIconTheme();
+    private static final IIconTheme sChameleon = new ChameleonIconTheme();
+    private static final IIconTheme sGoogleNow = new GoogleNowIconTheme();
+    private static final IIconTheme sMeteocons = new MeteoconsIconTheme();
+
     public static IIconTheme getIconThemeFromSetting(String iconThemeSetting) {
 
         if (iconThemeSetting.equals(BetterWeatherExtension.CLIMACONS_ICON_THEME)) {
-            return new ClimaconsIconTheme();
+            return sClimacons;
         } else if (iconThemeSetting.equals(BetterWeatherExtension.WEATHERCONS_ICON_THEME)) {
-            return new WeatherconsIconTheme();
+            return sWeathercons;
         } else if (iconThemeSetting.equals(BetterWeatherExtension.CHAMELEON_ICON_THEME)) {
-            return new ChameleonIconTheme();
+            return sChameleon;
         } else if (iconThemeSetting.equals(BetterWeatherExtension.GOOGLENOW_ICON_THEME)) {
-            return new GoogleNowIconTheme();
+            return sGoogleNow;
         } else if (iconThemeSetting.equals(BetterWeatherExtension.METEOCONS_ICON_THEME)) {
-            return new MeteoconsIconTheme();
+            return sMeteocons;
         }
 
-        return new ClimaconsIconTheme();
+        return sClimacons;
 
     }
 
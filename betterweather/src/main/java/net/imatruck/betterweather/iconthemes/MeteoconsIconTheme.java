@@ -17,76 +17,61 @@ package net.imatruck.betterweather.iconthemes;
 
 import net.imatruck.betterweather.R;
 
-public class MeteoconsIconTheme implements IIconTheme {
+public class MeteoconsIconTheme extends TableIconTheme {
 
-    @Override
-    public int getConditionIcon(int conditionCode) {
-        switch (conditionCode) {
-            case 20: // foggy
-            case 19: // dust
-            case 21: // haze
-            case 22: // smoky
-                return R.drawable.meteocons_foggy;
-            case 26: // cloudy
-                return R.drawable.meteocons_cloudy;
-            case 27: // mostly cloudy (night)
-            case 29: // partly cloudy (night)
-                return R.drawable.meteocons_partly_cloudy_night;
-            case 28: // mostly cloudy (day)
-            case 30: // partly cloudy (day)
-            case 44: // partly cloudy
-                return R.drawable.meteocons_partly_cloudy_day;
-            case 31: // clear (night)
-            case 33: // fair (night)
-                return R.drawable.meteocons_clear_night;
-            case 34: // fair (day)
-            case 32: // sunny
-            case 36: // hot
-                return R.drawable.meteocons_clear_day;
-            case 0: // tornado
-            case 1: // tropical storm
-            case 2: // hurricane
-            case 23: // blustery
-            case 24: // windy
-                return R.drawable.meteocons_windy;
-            case 5: // mixed rain and snow
-            case 6: // mixed rain and sleet
-            case 7: // mixed snow and sleet
-            case 18: // sleet
-            case 8: // freezing drizzle
-            case 10: // freezing rain
-            case 14: // light snow showers
-            case 17: // hail
-            case 35: // mixed rain and hail
-                return R.drawable.meteocons_sleet;
-            case 9: // drizzle
-                return R.drawable.meteocons_drizzle;
-            case 11: // showers
-            case 12: // showers
-            case 40: // scattered showers
-                return R.drawable.meteocons_rain;
-            case 45: // thundershowers
-            case 47: // isolated thundershowers
-                return R.drawable.meteocons_thundershowers;
-            case 3: // severe thunderstorms
-            case 38: // scattered thunderstorms
-            case 39: // scattered thunderstorms
-            case 4: // thunderstorms
-            case 37: // isolated thunderstorms
-                return R.drawable.meteocons_thunderstorm;
-            case 15: // blowing snow
-            case 16: // snow
-            case 46: // snow showers
-            case 13: // snow flurries
-            case 42: // scattered snow showers
-                return R.drawable.meteocons_snow;
-            case 41: // heavy snow
-            case 43: // heavy snow
-                return R.drawable.meteocons_heavy_snow;
-            case 25: // cold
-                return R.drawable.meteocons_cold;
-        }
+    private static final int[] ICONS = {
+            R.drawable.meteocons_clear_day,            // -1 not available
+            R.drawable.meteocons_windy,                // 0 tornado
+            R.drawable.meteocons_windy,                // 1 tropical storm
+            R.drawable.meteocons_windy,                // 2 hurricane
+            R.drawable.meteocons_thunderstorm,         // 3 severe thunderstorms
+            R.drawable.meteocons_thunderstorm,         // 4 thunderstorms
+            R.drawable.meteocons_sleet,                // 5 mixed rain and snow
+            R.drawable.meteocons_sleet,                // 6 mixed rain and sleet
+            R.drawable.meteocons_sleet,                // 7 mixed snow and sleet
+            R.drawable.meteocons_sleet,                // 8 freezing drizzle
+            R.drawable.meteocons_drizzle,              // 9 drizzle
+            R.drawable.meteocons_sleet,                // 10 freezing rain
+            R.drawable.meteocons_rain,                 // 11 showers
+            R.drawable.meteocons_rain,                 // 12 showers
+            R.drawable.meteocons_snow,                 // 13 snow flurries
+            R.drawable.meteocons_sleet,                // 14 light snow showers
+            R.drawable.meteocons_snow,                 // 15 blowing snow
+            R.drawable.meteocons_snow,                 // 16 snow
+            R.drawable.meteocons_sleet,                // 17 hail
+            R.drawable.meteocons_sleet,                // 18 sleet
+            R.drawable.meteocons_foggy,                // 19 dust
+            R.drawable.meteocons_foggy,                // 20 foggy
+            R.drawable.meteocons_foggy,                // 21 haze
+            R.drawable.meteocons_foggy,                // 22 smoky
+            R.drawable.meteocons_windy,                // 23 blustery
+            R.drawable.meteocons_windy,                // 24 windy
+            R.drawable.meteocons_cold,                 // 25 cold
+            R.drawable.meteocons_cloudy,               // 26 cloudy
+            R.drawable.meteocons_partly_cloudy_night,  // 27 mostly cloudy (night)
+            R.drawable.meteocons_partly_cloudy_day,    // 28 mostly cloudy (day)
+            R.drawable.meteocons_partly_cloudy_night,  // 29 partly cloudy (night)
+            R.drawable.meteocons_partly_cloudy_day,    // 30 partly cloudy (day)
+            R.drawable.meteocons_clear_night,          // 31 clear (night)
+            R.drawable.meteocons_clear_day,            // 32 sunny
+            R.drawable.meteocons_clear_night,          // 33 fair (night)
+            R.drawable.meteocons_clear_day,            // 34 fair (day)
+            R.drawable.meteocons_sleet,                // 35 mixed rain and hail
+            R.drawable.meteocons_clear_day,            // 36 hot
+            R.drawable.meteocons_thunderstorm,         // 37 isolated thunderstorms
+            R.drawable.meteocons_thunderstorm,         // 38 scattered thunderstorms
+            R.drawable.meteocons_thunderstorm,         // 39 scattered thunderstorms
+            R.drawable.meteocons_rain,                 // 40 scattered showers
+            R.drawable.meteocons_heavy_snow,           // 41 heavy snow
+            R.drawable.meteocons_snow,                 // 42 scattered snow showers
+            R.drawable.meteocons_heavy_snow,           // 43 heavy snow
+            R.drawable.meteocons_partly_cloudy_day,    // 44 partly cloudy
+            R.drawable.meteocons_thundershowers,       // 45 thundershowers
+            R.drawable.meteocons_snow,                 // 46 snow showers
+            R.drawable.meteocons_thundershowers        // 47 isolated thundershowers
+    };
 
-        return R.drawable.meteocons_clear_day;
+    public MeteoconsIconTheme() {
+        super(ICONS, "Meteocons");
     }
 }
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather.iconthemes;
+
+import net.imatruck.betterweather.ConditionRegistry;
+
+/**
+ * Icon theme backed by a table with a drawable for each condition code, see
+ * {@link ConditionRegistry}
+ */
+public abstract class TableIconTheme implements IIconTheme {
+
+    private final int[] mIcons;
+
+    /**
+     * @param icons Drawable for each condition code, starting at {@link ConditionRegistry#MIN_CODE}
+     */
+    protected TableIconTheme(int[] icons, String name) {
+        mIcons = ConditionRegistry.checkTable(icons, name);
+    }
+
+    @Override
+    public int getConditionIcon(int conditionCode) {
+        return ConditionRegistry.lookup(mIcons, conditionCode);
+    }
+}
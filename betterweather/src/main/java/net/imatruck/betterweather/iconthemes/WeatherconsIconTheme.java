@@ -15,83 +15,63 @@
  */
 package net.imatruck.betterweather.iconthemes;
 
-
 import net.imatruck.betterweather.R;
 
-public class WeatherconsIconTheme implements IIconTheme {
+public class WeatherconsIconTheme extends TableIconTheme {
 
-    @Override
-    public int getConditionIcon(int conditionCode) {
-        switch (conditionCode) {
-            case 20: // foggy
-                return R.drawable.weathercons_foggy;
-            case 21: // haze
-            case 19: // dust
-            case 22: // smoky
-                return R.drawable.weathercons_smoky;
-            case 25: // cold
-                return R.drawable.weathercons_cold;
-            case 26: // cloudy
-                return R.drawable.weathercons_cloudy;
-            case 27: // mostly cloudy (night)
-                return R.drawable.weathercons_mostly_cloudy_night;
-            case 29: // partly cloudy (night)
-                return R.drawable.weathercons_partly_cloudy_night;
-            case 28: // mostly cloudy (day)
-                return R.drawable.weathercons_mostly_cloudy;
-            case 30: // partly cloudy (day)
-            case 44: // partly cloudy
-                return R.drawable.weathercons_partly_cloudy;
-            case 31: // clear (night)
-            case 33: // fair (night)
-                return R.drawable.weathercons_clear_night;
-            case 34: // fair (day)
-            case 32: // sunny
-            case 23: // blustery
-            case 36: // hot
-                return R.drawable.weathercons_sunny;
-            case 0: // tornado
-            case 1: // tropical storm
-            case 2: // hurricane
-            case 24: // windy
-                return R.drawable.weathercons_windy;
-            case 5: // mixed rain and snow
-            case 6: // mixed rain and sleet
-            case 7: // mixed snow and sleet
-            case 18: // sleet
-            case 8: // freezing drizzle
-            case 10: // freezing rain
-            case 14: // light snow showers
-                return R.drawable.weathercons_mixed_rain_and_snow;
-            case 17: // hail
-            case 35: // mixed rain and hail
-                return R.drawable.weathercons_hail;
-            case 9: // drizzle
-                return R.drawable.weathercons_drizzle;
-            case 11: // showers
-            case 12: // showers
-                return R.drawable.weathercons_showers;
-            case 40: // scattered showers
-                return R.drawable.weathercons_scattered_showers;
-            case 3: // severe thunderstorms
-            case 4: // thunderstorms
-            case 37: // isolated thunderstorms
-            case 45: // thundershowers
-            case 47: // isolated thundershowers
-                return R.drawable.weathercons_thundershowers;
-            case 38: // scattered thunderstorms
-            case 39: // scattered thunderstorms
-                return R.drawable.weathercons_scattered_thunderstorms;
-            case 15: // blowing snow
-            case 16: // snow
-            case 41: // heavy snow
-            case 43: // heavy snow
-            case 46: // snow showers
-            case 13: // snow flurries
-            case 42: // scattered snow showers
-                return R.drawable.weathercons_heavy_snow;
-        }
+    private static final int[] ICONS = {
+            R.drawable.weathercons_sunny,                    // -1 not available
+            R.drawable.weathercons_windy,                    // 0 tornado
+            R.drawable.weathercons_windy,                    // 1 tropical storm
+            R.drawable.weathercons_windy,                    // 2 hurricane
+            R.drawable.weathercons_thundershowers,           // 3 severe thunderstorms
+            R.drawable.weathercons_thundershowers,           // 4 thunderstorms
+            R.drawable.weathercons_mixed_rain_and_snow,      // 5 mixed rain and snow
+            R.drawable.weathercons_mixed_rain_and_snow,      // 6 mixed rain and sleet
+            R.drawable.weathercons_mixed_rain_and_snow,      // 7 mixed snow and sleet
+            R.drawable.weathercons_mixed_rain_and_snow,      // 8 freezing drizzle
+            R.drawable.weathercons_drizzle,                  // 9 drizzle
+            R.drawable.weathercons_mixed_rain_and_snow,      // 10 freezing rain
+            R.drawable.weathercons_showers,                  // 11 showers
+            R.drawable.weathercons_showers,                  // 12 showers
+            R.drawable.weathercons_heavy_snow,               // 13 snow flurries
+            R.drawable.weathercons_mixed_rain_and_snow,      // 14 light snow showers
+            R.drawable.weathercons_heavy_snow,               // 15 blowing snow
+            R.drawable.weathercons_heavy_snow,               // 16 snow
+            R.drawable.weathercons_hail,                     // 17 hail
+            R.drawable.weathercons_mixed_rain_and_snow,      // 18 sleet
+            R.drawable.weathercons_smoky,                    // 19 dust
+            R.drawable.weathercons_foggy,                    // 20 foggy
+            R.drawable.weathercons_smoky,                    // 21 haze
+            R.drawable.weathercons_smoky,                    // 22 smoky
+            R.drawable.weathercons_sunny,                    // 23 blustery
+            R.drawable.weathercons_windy,                    // 24 windy
+            R.drawable.weathercons_cold,                     // 25 cold
+            R.drawable.weathercons_cloudy,                   // 26 cloudy
+            R.drawable.weathercons_mostly_cloudy_night,      // 27 mostly cloudy (night)
+            R.drawable.weathercons_mostly_cloudy,            // 28 mostly cloudy (day)
+            R.drawable.weathercons_partly_cloudy_night,      // 29 partly cloudy (night)
+            R.drawable.weathercons_partly_cloudy,            // 30 partly cloudy (day)
+            R.drawable.weathercons_clear_night,              // 31 clear (night)
+            R.drawable.weathercons_sunny,                    // 32 sunny
+            R.drawable.weathercons_clear_night,              // 33 fair (night)
+            R.drawable.weathercons_sunny,                    // 34 fair (day)
+            R.drawable.weathercons_hail,                     // 35 mixed rain and hail
+            R.drawable.weathercons_sunny,                    // 36 hot
+            R.drawable.weathercons_thundershowers,           // 37 isolated thunderstorms
+            R.drawable.weathercons_scattered_thunderstorms,  // 38 scattered thunderstorms
+            R.drawable.weathercons_scattered_thunderstorms,  // 39 scattered thunderstorms
+            R.drawable.weathercons_scattered_showers,        // 40 scattered showers
+            R.drawable.weathercons_heavy_snow,               // 41 heavy snow
+            R.drawable.weathercons_heavy_snow,               // 42 scattered snow showers
+            R.drawable.weathercons_heavy_snow,               // 43 heavy snow
+            R.drawable.weathercons_partly_cloudy,            // 44 partly cloudy
+            R.drawable.weathercons_thundershowers,           // 45 thundershowers
+            R.drawable.weathercons_heavy_snow,               // 46 snow showers
+            R.drawable.weathercons_thundershowers            // 47 isolated thundershowers
+    };
 
-        return R.drawable.weathercons_sunny;
+    public WeatherconsIconTheme() {
+        super(ICONS, "Weathercons");
     }
 }
@@ -0,0 +1,326 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather.refresh;
+
+import android.content.Context;
+import android.location.Location;
+import android.location.LocationListener;
+import android.location.LocationManager;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.GoogleApiAvailability;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationServices;
+
+import net.imatruck.betterweather.utils.LogUtils;
+
+import static net.imatruck.betterweather.utils.LogUtils.LOGD;
+import static net.imatruck.betterweather.utils.LogUtils.LOGW;
+
+/**
+ * Gets a location for a refresh without waiting on a fresh fix when possible.
+ * The fixes other apps already produced (last known locations, including the passive provider)
+ * are used first. If none is recent and accurate enough, updates are requested from the fused
+ * provider when Play Services is available, from the network and GPS providers otherwise, and
+ * the passive provider is listened to meanwhile. The first good fix is delivered, or the best
+ * one seen when the budget is over.
+ * Must be used from the main thread, the permission to read the location must be granted.
+ */
+public class LocationAcquirer {
+
+    private static final String TAG = LogUtils.makeLogTag(LocationAcquirer.class);
+
+    public interface Callback {
+        /**
+         * @param location Best fix found, it may be older or less accurate than the policy
+         */
+        void onLocation(Location location);
+
+        /**
+         * No fix at all was found within the budget
+         */
+        void onNoLocation();
+    }
+
+    private final Context mContext;
+    private final LocationManager mLocationManager;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private final long mMaxAgeMillis;
+    private final float mMaxAccuracyMeters;
+    private final long mBudgetMillis;
+
+    private Callback mCallback;
+    private boolean mNetworkOnly;
+    private Location mBestLocation;
+    private GoogleApiClient mGoogleApiClient;
+    private boolean mListening = false;
+
+    /**
+     * @param maxAgeMillis      Fixes older than this are only used when there's nothing better
+     * @param maxAccuracyMeters Same for fixes less accurate than this
+     * @param budgetMillis      Time given to get a good fix
+     */
+    public LocationAcquirer(Context context, long maxAgeMillis, float maxAccuracyMeters, long budgetMillis) {
+        mContext = context.getApplicationContext();
+        mLocationManager = (LocationManager) mContext.getSystemService(Context.LOCATION_SERVICE);
+        mMaxAgeMillis = maxAgeMillis;
+        mMaxAccuracyMeters = maxAccuracyMeters;
+        mBudgetMillis = budgetMillis;
+    }
+
+    /**
+     * Cancels the acquisition that's running, if any, and starts a new one
+     *
+     * @param networkOnly Don't turn on the GPS
+     */
+    public void acquire(boolean networkOnly, Callback callback) {
+        cancel();
+        mCallback = callback;
+        mNetworkOnly = networkOnly;
+        mBestLocation = null;
+
+        for (String provider : mLocationManager.getProviders(true)) {
+            if (!networkOnly || !LocationManager.GPS_PROVIDER.equals(provider)) {
+                offer(getLastKnownLocation(provider));
+            }
+        }
+        if (isGood(mBestLocation)) {
+            LOGD(TAG, "Using last known location from " + mBestLocation.getProvider());
+            deliver();
+            return;
+        }
+
+        LOGD(TAG, "No recent accurate location, listening for " + mBudgetMillis / 1000 + " seconds");
+        mHandler.postDelayed(mBudgetOver, mBudgetMillis);
+        requestUpdates(LocationManager.PASSIVE_PROVIDER);
+
+        if (GoogleApiAvailability.getInstance().isGooglePlayServicesAvailable(mContext) == ConnectionResult.SUCCESS) {
+            mGoogleApiClient = new GoogleApiClient.Builder(mContext)
+                    .addApi(LocationServices.API)
+                    .addConnectionCallbacks(mConnectionCallbacks)
+                    .addOnConnectionFailedListener(mConnectionFailedListener)
+                    .build();
+            mGoogleApiClient.connect();
+        } else {
+            requestPlatformUpdates();
+        }
+    }
+
+    /**
+     * Stops listening, the callback won't be called
+     */
+    public void cancel() {
+        mHandler.removeCallbacks(mBudgetOver);
+        mCallback = null;
+
+        if (mListening) {
+            try {
+                mLocationManager.removeUpdates(mPlatformListener);
+            } catch (SecurityException se) {
+                LOGW(TAG, "Location permission was revoked, cannot remove location updates");
+            }
+            mListening = false;
+        }
+
+        if (mGoogleApiClient != null) {
+            if (mGoogleApiClient.isConnected()) {
+                LocationServices.FusedLocationApi.removeLocationUpdates(mGoogleApiClient, mFusedListener);
+            }
+            mGoogleApiClient.disconnect();
+            mGoogleApiClient = null;
+        }
+    }
+
+    private void requestPlatformUpdates() {
+        requestUpdates(LocationManager.NETWORK_PROVIDER);
+        if (!mNetworkOnly) {
+            requestUpdates(LocationManager.GPS_PROVIDER);
+        }
+    }
+
+    private void requestUpdates(String provider) {
+        try {
+            if (mLocationManager.isProviderEnabled(provider)) {
+                mLocationManager.requestLocationUpdates(provider, 0, 0, mPlatformListener, Looper.getMainLooper());
+                mListening = true;
+            }
+        } catch (SecurityException se) {
+            LOGW(TAG, "Location permission was revoked, cannot request " + provider + " updates");
+        } catch (IllegalArgumentException iae) {
+            LOGD(TAG, "No " + provider + " provider on this device");
+        }
+    }
+
+    private Location getLastKnownLocation(String provider) {
+        try {
+            return mLocationManager.getLastKnownLocation(provider);
+        } catch (SecurityException se) {
+            LOGW(TAG, "Location permission was revoked, cannot read " + provider + " location");
+            return null;
+        }
+    }
+
+    /**
+     * Keeps the fix if it's better than the best one so far, delivers it if it's good
+     */
+    private void onFix(Location location) {
+        if (mCallback == null) {
+            return;
+        }
+        offer(location);
+        if (isGood(mBestLocation)) {
+            LOGD(TAG, "Got a location from " + mBestLocation.getProvider());
+            deliver();
+        }
+    }
+
+    private void offer(Location location) {
+        if (location != null && isBetter(location, mBestLocation)) {
+            mBestLocation = location;
+        }
+    }
+
+    private boolean isGood(Location location) {
+        return location != null && getAgeMillis(location) <= mMaxAgeMillis
+                && (!location.hasAccuracy() || location.getAccuracy() <= mMaxAccuracyMeters);
+    }
+
+    /**
+     * A good fix beats one that isn't, then the more recent one wins unless it's less accurate
+     * and not significantly newer
+     */
+    private boolean isBetter(Location location, Location current) {
+        if (current == null) {
+            return true;
+        }
+        boolean good = isGood(location);
+        if (good != isGood(current)) {
+            return good;
+        }
+
+        long newerMillis = getAgeMillis(current) - getAgeMillis(location);
+        float accuracy = location.hasAccuracy() ? location.getAccuracy() : Float.MAX_VALUE;
+        float currentAccuracy = current.hasAccuracy() ? current.getAccuracy() : Float.MAX_VALUE;
+        if (newerMillis > mMaxAgeMillis) {
+            return true;
+        } else if (newerMillis < -mMaxAgeMillis) {
+            return false;
+        }
+        return accuracy < currentAccuracy || (accuracy == currentAccuracy && newerMillis > 0);
+    }
+
+    private static long getAgeMillis(Location location) {
+        return (SystemClock.elapsedRealtimeNanos() - location.getElapsedRealtimeNanos()) / 1000000;
+    }
+
+    private void deliver() {
+        Callback callback = mCallback;
+        Location location = mBestLocation;
+        cancel();
+        if (callback == null) {
+            return;
+        }
+        if (location != null) {
+            callback.onLocation(location);
+        } else {
+            callback.onNoLocation();
+        }
+    }
+
+    private final Runnable mBudgetOver = new Runnable() {
+        @Override
+        public void run() {
+            LOGD(TAG, "No good location within the budget, using the best one found");
+            deliver();
+        }
+    };
+
+    private final LocationListener mPlatformListener = new LocationListener() {
+        @Override
+        public void onLocationChanged(Location location) {
+            onFix(location);
+        }
+
+        @Override
+        public void onStatusChanged(String provider, int status, Bundle extras) {
+        }
+
+        @Override
+        public void onProviderEnabled(String provider) {
+        }
+
+        @Override
+        public void onProviderDisabled(String provider) {
+        }
+    };
+
+    private final com.google.android.gms.location.LocationListener mFusedListener =
+            new com.google.android.gms.location.LocationListener() {
+                @Override
+                public void onLocationChanged(Location location) {
+                    onFix(location);
+                }
+            };
+
+    private final GoogleApiClient.ConnectionCallbacks mConnectionCallbacks = new GoogleApiClient.ConnectionCallbacks() {
+        @Override
+        public void onConnected(Bundle connectionHint) {
+            if (mCallback == null || mGoogleApiClient == null) {
+                return;
+            }
+            try {
+                onFix(LocationServices.FusedLocationApi.getLastLocation(mGoogleApiClient));
+                if (mCallback == null) {
+                    return;
+                }
+
+                LocationRequest request = LocationRequest.create()
+                        .setPriority(mNetworkOnly ? LocationRequest.PRIORITY_LOW_POWER
+                                : LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY)
+                        .setInterval(0)
+                        .setExpirationDuration(mBudgetMillis);
+                LocationServices.FusedLocationApi.requestLocationUpdates(mGoogleApiClient, request, mFusedListener);
+            } catch (SecurityException se) {
+                LOGW(TAG, "Location permission was revoked, cannot use the fused provider");
+            }
+        }
+
+        @Override
+        public void onConnectionSuspended(int cause) {
+            LOGD(TAG, "Fused provider disconnected, using the platform providers");
+            if (mCallback != null) {
+                requestPlatformUpdates();
+            }
+        }
+    };
+
+    private final GoogleApiClient.OnConnectionFailedListener mConnectionFailedListener =
+            new GoogleApiClient.OnConnectionFailedListener() {
+                @Override
+                public void onConnectionFailed(ConnectionResult result) {
+                    LOGD(TAG, "Fused provider unavailable (" + result.getErrorCode() + "), using the platform providers");
+                    if (mCallback != null) {
+                        requestPlatformUpdates();
+                    }
+                }
+            };
+}
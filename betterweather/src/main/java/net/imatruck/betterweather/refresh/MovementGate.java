@@ -0,0 +1,107 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather.refresh;
+
+import android.location.Location;
+import android.os.SystemClock;
+
+import net.imatruck.betterweather.BetterWeatherData;
+import net.imatruck.betterweather.utils.LogUtils;
+
+import static net.imatruck.betterweather.utils.LogUtils.LOGD;
+
+/**
+ * Remembers where the weather was last fetched, so a refresh that isn't due yet (settings
+ * changed, DashClock reconnected) can reuse it instead of fetching again when the device
+ * hasn't moved. Scheduled and user requested refreshes don't go through the gate.
+ * The fetch is reused while the new fix is within the distance threshold, or within its own
+ * accuracy if it is less precise, and it is younger than the age given by the caller.
+ * The name and WOEID of the location are cached by {@link net.imatruck.betterweather.GeocodeCache}.
+ */
+public class MovementGate {
+
+    private static final String TAG = LogUtils.makeLogTag(MovementGate.class);
+
+    private final float mMinDistanceMeters;
+
+    private Location mLastLocation;
+    private BetterWeatherData mLastData;
+    private long mLastFetchElapsed;
+
+    /**
+     * @param minDistanceMeters Distance the device has to move for the weather to be fetched again
+     */
+    public MovementGate(float minDistanceMeters) {
+        mMinDistanceMeters = minDistanceMeters;
+    }
+
+    /**
+     * Remembers a successful fetch
+     *
+     * @param location    Fix the weather was fetched for
+     * @param weatherData Data that was fetched
+     */
+    public synchronized void recordFetch(Location location, BetterWeatherData weatherData) {
+        if (location == null || weatherData == null) {
+            return;
+        }
+        mLastLocation = new Location(location);
+        mLastData = weatherData;
+        mLastFetchElapsed = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * @param location     New fix
+     * @param maxAgeMillis Age after which the weather is fetched again even if the device didn't move
+     * @return The data of the last fetch if it can be used for this fix, null if the weather
+     * has to be fetched
+     */
+    public synchronized BetterWeatherData getFreshData(Location location, long maxAgeMillis) {
+        if (mLastData == null || location == null) {
+            return null;
+        }
+
+        long age = getAgeMillis();
+        if (age > maxAgeMillis) {
+            return null;
+        }
+
+        float distance = mLastLocation.distanceTo(location);
+        float threshold = Math.max(mMinDistanceMeters, location.hasAccuracy() ? location.getAccuracy() : 0);
+        if (distance > threshold) {
+            LOGD(TAG, "Moved " + Math.round(distance) + "m since the last fetch");
+            return null;
+        }
+
+        LOGD(TAG, "Moved " + Math.round(distance) + "m in " + age / 1000 + " seconds, reusing the last fetch");
+        return mLastData;
+    }
+
+    /**
+     * @return Time since the last recorded fetch
+     */
+    public synchronized long getAgeMillis() {
+        return SystemClock.elapsedRealtime() - mLastFetchElapsed;
+    }
+
+    /**
+     * Forgets the last fetch, the next refresh will fetch the weather
+     */
+    public synchronized void reset() {
+        mLastLocation = null;
+        mLastData = null;
+    }
+}
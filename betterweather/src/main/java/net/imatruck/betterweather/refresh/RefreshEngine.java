@@ -0,0 +1,304 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather.refresh;
+
+import android.location.Location;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import net.imatruck.betterweather.BetterWeatherData;
+import net.imatruck.betterweather.LocationInfo;
+import net.imatruck.betterweather.utils.LogUtils;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static net.imatruck.betterweather.utils.LogUtils.LOGD;
+import static net.imatruck.betterweather.utils.LogUtils.LOGW;
+
+/**
+ * Runs weather refreshes on its own threads, away from {@link android.os.AsyncTask}'s shared
+ * executor, so other background work can't hold a refresh back.
+ * A refresh goes through these stages: the location is resolved (geocode), the weather is
+ * fetched and parsed (fetch, a non-blocking request the job waits on), what the provider left
+ * out is filled in (complete), then the result is handed to the {@link Listener} on the main
+ * thread to be rendered and published.
+ * Each stage has its own timeout, and starting a refresh cancels the one that's running,
+ * its result is then never published. Getting the location and publishing happen on the main
+ * thread, outside the engine, the caller bounds them.
+ */
+public class RefreshEngine {
+
+    private static final String TAG = LogUtils.makeLogTag(RefreshEngine.class);
+
+    private static final long GEOCODE_TIMEOUT_MILLIS = 20 * 1000;
+    private static final long FETCH_TIMEOUT_MILLIS = 30 * 1000;
+    private static final long COMPLETE_TIMEOUT_MILLIS = 20 * 1000;
+    /**
+     * Longest a refresh can take in the engine's stages, before its result is posted
+     */
+    public static final long MAX_STAGES_MILLIS = GEOCODE_TIMEOUT_MILLIS + FETCH_TIMEOUT_MILLIS + COMPLETE_TIMEOUT_MILLIS;
+
+    private static final int STAGE_THREADS = 2;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * Work done by the background stages, implementations are called on the engine's threads
+     * and should stop when interrupted
+     */
+    public interface Pipeline {
+        LocationInfo geocode(Location location) throws Exception;
+
+        /**
+         * Starts fetching the weather and returns right away, called on the job's thread.
+         * The future is cancelled when the stage times out or the refresh is cancelled.
+         */
+        Future<BetterWeatherData> fetch(LocationInfo locationInfo) throws Exception;
+
+        /**
+         * @param weatherData Fetched data, may be an error
+         * @return The data to publish
+         */
+        BetterWeatherData complete(LocationInfo locationInfo, BetterWeatherData weatherData) throws Exception;
+    }
+
+    public interface Listener {
+        /**
+         * Called on the main thread when a refresh that wasn't cancelled is done
+         *
+         * @param weatherData Fetched data, null if a stage failed or timed out
+         */
+        void onRefreshFinished(BetterWeatherData weatherData);
+    }
+
+    private final Pipeline mPipeline;
+    private final Listener mListener;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Runs the refresh jobs one after the other
+     */
+    private final ThreadPoolExecutor mJobExecutor;
+    /**
+     * Runs the stages, so a job can stop waiting on one that takes too long
+     */
+    private final ThreadPoolExecutor mStageExecutor;
+
+    private RefreshJob mCurrentJob;
+
+    public RefreshEngine(Pipeline pipeline, Listener listener) {
+        mPipeline = pipeline;
+        mListener = listener;
+
+        mJobExecutor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new RefreshThreadFactory("job"));
+        mJobExecutor.allowCoreThreadTimeOut(true);
+        mStageExecutor = new ThreadPoolExecutor(STAGE_THREADS, STAGE_THREADS, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new RefreshThreadFactory("stage"));
+        mStageExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Starts a refresh for a location, cancelling the one that's running
+     *
+     * @param location Location to refresh the weather for
+     */
+    public synchronized void refresh(Location location) {
+        if (mCurrentJob != null && !mCurrentJob.isFinished()) {
+            LOGD(TAG, "Cancelling running refresh, a newer one replaces it");
+            mCurrentJob.cancel();
+        }
+        mCurrentJob = new RefreshJob(location);
+        mJobExecutor.execute(mCurrentJob);
+    }
+
+    /**
+     * Cancels the running refresh, if there's one, its result won't be published
+     */
+    public synchronized void cancel() {
+        if (mCurrentJob != null && !mCurrentJob.isFinished()) {
+            LOGD(TAG, "Cancelling running refresh");
+            mCurrentJob.cancel();
+        }
+    }
+
+    /**
+     * Cancels the running refresh and stops the engine's threads
+     */
+    public synchronized void shutdown() {
+        if (mCurrentJob != null) {
+            mCurrentJob.cancel();
+        }
+        mJobExecutor.shutdownNow();
+        mStageExecutor.shutdownNow();
+    }
+
+    private class RefreshJob implements Runnable {
+
+        private final Location mLocation;
+
+        private volatile boolean mCancelled = false;
+        private volatile boolean mFinished = false;
+        private Future<?> mRunningStage;
+
+        RefreshJob(Location location) {
+            mLocation = location;
+        }
+
+        @Override
+        public void run() {
+            BetterWeatherData weatherData = null;
+            try {
+                final LocationInfo locationInfo = runStage("geocode", new Callable<LocationInfo>() {
+                    @Override
+                    public LocationInfo call() throws Exception {
+                        return mPipeline.geocode(mLocation);
+                    }
+                }, GEOCODE_TIMEOUT_MILLIS);
+
+                final BetterWeatherData fetched = fetch(locationInfo);
+
+                weatherData = runStage("complete", new Callable<BetterWeatherData>() {
+                    @Override
+                    public BetterWeatherData call() throws Exception {
+                        return mPipeline.complete(locationInfo, fetched);
+                    }
+                }, COMPLETE_TIMEOUT_MILLIS);
+            } catch (CancellationException ce) {
+                LOGD(TAG, "Refresh was cancelled");
+                mFinished = true;
+                return;
+            } catch (StageFailedException sfe) {
+                LOGW(TAG, sfe.getMessage(), sfe.getCause());
+            }
+
+            publish(weatherData);
+        }
+
+        private <T> T runStage(String name, Callable<T> stage, long timeoutMillis) throws StageFailedException {
+            Future<T> future;
+            synchronized (this) {
+                if (mCancelled) {
+                    throw new CancellationException();
+                }
+                try {
+                    future = mStageExecutor.submit(stage);
+                } catch (RejectedExecutionException ree) {
+                    throw new StageFailedException("Could not start " + name + " stage", ree);
+                }
+                mRunningStage = future;
+            }
+
+            return await(name, future, timeoutMillis);
+        }
+
+        /**
+         * Starts the fetch, it doesn't take a stage thread, the job waits on it directly
+         */
+        private BetterWeatherData fetch(LocationInfo locationInfo) throws StageFailedException {
+            Future<BetterWeatherData> future;
+            synchronized (this) {
+                if (mCancelled) {
+                    throw new CancellationException();
+                }
+                try {
+                    future = mPipeline.fetch(locationInfo);
+                } catch (Exception e) {
+                    throw new StageFailedException("Could not start fetch stage", e);
+                }
+                mRunningStage = future;
+            }
+
+            return await("fetch", future, FETCH_TIMEOUT_MILLIS);
+        }
+
+        /**
+         * Waits for a stage, cancelling it if it takes too long or the job is interrupted
+         */
+        private <T> T await(String name, Future<T> future, long timeoutMillis) throws StageFailedException {
+            try {
+                return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException te) {
+                future.cancel(true);
+                throw new StageFailedException(name + " stage timed out after " + timeoutMillis + "ms", te);
+            } catch (ExecutionException ee) {
+                throw new StageFailedException(name + " stage failed", ee.getCause());
+            } catch (InterruptedException ie) {
+                future.cancel(true);
+                throw new CancellationException();
+            }
+        }
+
+        private void publish(final BetterWeatherData weatherData) {
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mFinished = true;
+                    if (!mCancelled) {
+                        mListener.onRefreshFinished(weatherData);
+                    }
+                }
+            });
+        }
+
+        synchronized void cancel() {
+            mCancelled = true;
+            if (mRunningStage != null) {
+                mRunningStage.cancel(true);
+            }
+        }
+
+        boolean isFinished() {
+            return mFinished;
+        }
+    }
+
+    private static class StageFailedException extends Exception {
+        StageFailedException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private static class RefreshThreadFactory implements ThreadFactory {
+        private final String mName;
+        private final AtomicInteger mCount = new AtomicInteger(1);
+
+        RefreshThreadFactory(String name) {
+            mName = name;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "RefreshEngine-" + mName + "-" + mCount.getAndIncrement());
+        }
+    }
+}
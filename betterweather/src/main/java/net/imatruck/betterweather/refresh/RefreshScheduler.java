@@ -0,0 +1,188 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather.refresh;
+
+import android.app.AlarmManager;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.PowerManager;
+import android.os.SystemClock;
+
+import net.imatruck.betterweather.WeatherRefreshReceiver;
+import net.imatruck.betterweather.utils.LogUtils;
+
+import java.util.Random;
+
+import static net.imatruck.betterweather.utils.LogUtils.LOGD;
+
+/**
+ * Schedules the refresh alarms.
+ * Regular refreshes use the interval from the settings, with an inexact alarm the system can
+ * batch with others. Failed refreshes are retried with an exponential backoff per kind of
+ * failure, with jitter so devices don't all retry at the same time during a provider outage.
+ * The backoff is reset after a successful refresh.
+ */
+public class RefreshScheduler {
+
+    private static final String TAG = LogUtils.makeLogTag(RefreshScheduler.class);
+
+    private static final String PREFS_NAME = "refresh_scheduler";
+    private static final String PREF_FAILURE_COUNT_PREFIX = "failure_count_";
+    private static final String PREF_REFRESH_SKIPPED = "refresh_skipped";
+
+    private static final long MINUTE_MILLIS = 60 * 1000;
+
+    /**
+     * Part of the delay the alarm can be moved by to be batched with others
+     */
+    private static final int ALARM_WINDOW_DIVISOR = 4;
+    /**
+     * Retry delays are randomly moved by up to this part of the delay, both ways
+     */
+    private static final float JITTER_RATIO = 0.25f;
+    private static final int MAX_BACKOFF_EXPONENT = 8;
+
+    public enum Failure {
+        NETWORK(5),
+        API(5),
+        LOCATION(2);
+
+        private final int mBaseDelayMinutes;
+
+        Failure(int baseDelayMinutes) {
+            mBaseDelayMinutes = baseDelayMinutes;
+        }
+    }
+
+    private final Context mContext;
+    private final SharedPreferences mPreferences;
+    private final Random mRandom = new Random();
+
+    public RefreshScheduler(Context context) {
+        mContext = context.getApplicationContext();
+        mPreferences = mContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Schedules the next regular refresh
+     *
+     * @param refreshIntervalMinutes Interval from the settings, auto-refresh is off if negative
+     */
+    public void scheduleRefresh(int refreshIntervalMinutes) {
+        scheduleRefresh(refreshIntervalMinutes, 0);
+    }
+
+    /**
+     * Schedules the next regular refresh for data fetched a while ago
+     *
+     * @param refreshIntervalMinutes Interval from the settings, auto-refresh is off if negative
+     * @param dataAgeMillis          Time since the data was fetched, taken off the interval
+     */
+    public void scheduleRefresh(int refreshIntervalMinutes, long dataAgeMillis) {
+        if (refreshIntervalMinutes < 0) {
+            cancel();
+            return;
+        }
+
+        long intervalMillis = refreshIntervalMinutes * MINUTE_MILLIS;
+        long delayMillis = Math.max(intervalMillis - dataAgeMillis, 0);
+        setAlarm(delayMillis, intervalMillis / ALARM_WINDOW_DIVISOR);
+        LOGD(TAG, "Scheduled refresh in " + delayMillis / 1000 + " seconds.");
+    }
+
+    /**
+     * Schedules a retry after a failure, each consecutive failure of the same kind doubles the
+     * delay, up to the regular refresh interval
+     *
+     * @param failure                Kind of failure
+     * @param refreshIntervalMinutes Interval from the settings, auto-refresh is off if negative
+     */
+    public void scheduleRetry(Failure failure, int refreshIntervalMinutes) {
+        if (refreshIntervalMinutes < 0) {
+            cancel();
+            return;
+        }
+
+        String countKey = PREF_FAILURE_COUNT_PREFIX + failure.name();
+        int failureCount = mPreferences.getInt(countKey, 0);
+        mPreferences.edit().putInt(countKey, failureCount + 1).apply();
+
+        long delayMillis = (failure.mBaseDelayMinutes * MINUTE_MILLIS) << Math.min(failureCount, MAX_BACKOFF_EXPONENT);
+        delayMillis = Math.min(delayMillis, Math.max(refreshIntervalMinutes, failure.mBaseDelayMinutes) * MINUTE_MILLIS);
+
+        long jitterMillis = (long) (delayMillis * JITTER_RATIO * (2 * mRandom.nextFloat() - 1));
+        delayMillis += jitterMillis;
+
+        setAlarm(delayMillis, delayMillis / ALARM_WINDOW_DIVISOR);
+        LOGD(TAG, "Scheduled retry #" + (failureCount + 1) + " after " + failure + " failure in "
+                + delayMillis / 1000 + " seconds.");
+    }
+
+    /**
+     * Clears the backoff of every kind of failure, called after a successful refresh
+     */
+    public void resetBackoff() {
+        SharedPreferences.Editor editor = mPreferences.edit();
+        for (Failure failure : Failure.values()) {
+            editor.remove(PREF_FAILURE_COUNT_PREFIX + failure.name());
+        }
+        editor.apply();
+    }
+
+    public void cancel() {
+        WeatherRefreshReceiver.cancelPendingIntent(mContext);
+    }
+
+    /**
+     * Called when a refresh alarm goes off while the screen is off, DashClock can't be seen
+     * then so the refresh is skipped until the screen is turned on
+     */
+    public void markRefreshSkipped() {
+        mPreferences.edit().putBoolean(PREF_REFRESH_SKIPPED, true).apply();
+    }
+
+    /**
+     * @return true if a refresh was skipped while the screen was off, the flag is then cleared
+     */
+    public boolean takeSkippedRefresh() {
+        if (!mPreferences.getBoolean(PREF_REFRESH_SKIPPED, false)) {
+            return false;
+        }
+        mPreferences.edit().remove(PREF_REFRESH_SKIPPED).apply();
+        return true;
+    }
+
+    @SuppressWarnings("deprecation")
+    public static boolean isScreenOn(Context context) {
+        PowerManager pm = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT_WATCH) {
+            return pm.isInteractive();
+        }
+        return pm.isScreenOn();
+    }
+
+    private void setAlarm(long delayMillis, long windowMillis) {
+        AlarmManager am = (AlarmManager) mContext.getSystemService(Context.ALARM_SERVICE);
+        long triggerAt = SystemClock.elapsedRealtime() + delayMillis;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            am.setWindow(AlarmManager.ELAPSED_REALTIME, triggerAt, windowMillis,
+                    WeatherRefreshReceiver.getPendingIntent(mContext));
+        } else {
+            am.set(AlarmManager.ELAPSED_REALTIME, triggerAt, WeatherRefreshReceiver.getPendingIntent(mContext));
+        }
+    }
+}
@@ -33,8 +33,10 @@ import android.content.Loader;
 import android.content.pm.PackageManager;
 import android.content.res.TypedArray;
 import android.os.Bundle;
+import android.os.CancellationSignal;
 import android.os.Handler;
 import android.os.Message;
+import android.os.OperationCanceledException;
 import android.preference.Preference;
 import android.support.v4.app.ActivityCompat;
 import android.text.Editable;
@@ -69,17 +71,40 @@ public class WeatherLocationPreference extends Preference {
 
     private static final int LOCATION_REQUEST_CODE = 12;
 
+    /**
+     * The empty value means no location instead of the current location
+     */
+    private boolean mOptional;
+
     public WeatherLocationPreference(Context context, AttributeSet attrs) {
         super(context, attrs);
+        initAttrs(attrs, 0);
     }
 
     public WeatherLocationPreference(Context context) {
         super(context);
+        initAttrs(null, 0);
     }
 
     public WeatherLocationPreference(Context context, AttributeSet attrs,
                                      int defStyle) {
         super(context, attrs, defStyle);
+        initAttrs(attrs, defStyle);
+    }
+
+    private void initAttrs(AttributeSet attrs, int defStyle) {
+        TypedArray a = getContext().getTheme().obtainStyledAttributes(
+                attrs, R.styleable.WeatherLocationPreference, defStyle, defStyle);
+
+        try {
+            mOptional = a.getBoolean(R.styleable.WeatherLocationPreference_optional, false);
+        } finally {
+            a.recycle();
+        }
+    }
+
+    public boolean isOptional() {
+        return mOptional;
     }
 
     public void setValue(String value) {
@@ -101,6 +126,16 @@ public class WeatherLocationPreference extends Preference {
         return locationDetails[1];
     }
 
+    /**
+     * Same as {@link #getDisplayValue(Context, String)}, for this preference
+     */
+    public CharSequence getDisplayValue(String value) {
+        if (mOptional && (TextUtils.isEmpty(value) || value.indexOf('/') < 0)) {
+            return getContext().getString(R.string.pref_weather_location_none);
+        }
+        return getDisplayValue(getContext(), value);
+    }
+
     public static String getWoeidFromValue(String value) {
         if (TextUtils.isEmpty(value) || value.indexOf('/') < 0) {
             if (value.matches("\\d+,[0-9a-zA-Z,. ]*"))
@@ -225,6 +260,8 @@ public class WeatherLocationPreference extends Preference {
 
         @Override
         public Dialog onCreateDialog(Bundle savedInstanceState) {
+            YahooPlacesAPIClient.install(getActivity());
+
             Context layoutContext = new ContextThemeWrapper(getActivity(),
                     android.R.style.Theme_DeviceDefault_Light_Dialog);
 
@@ -240,7 +277,7 @@ public class WeatherLocationPreference extends Preference {
                 public void onItemClick(AdapterView<?> listView, View view,
                                         int position, long itemId) {
                     String value = mSearchResultsAdapter.getPrefValueAt(position);
-                    if (value == null || "".equals(value)) {
+                    if ((value == null || "".equals(value)) && !mPreference.isOptional()) {
                         if (ActivityCompat.checkSelfPermission(getActivity(), Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED &&
                                 ActivityCompat.checkSelfPermission(getActivity(), Manifest.permission.ACCESS_COARSE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
                             ActivityCompat.requestPermissions(getActivity(), new String[]{Manifest.permission.ACCESS_FINE_LOCATION}, LOCATION_REQUEST_CODE);
@@ -282,10 +319,15 @@ public class WeatherLocationPreference extends Preference {
         @Override
         public void onTextChanged(CharSequence charSequence, int i, int i2, int i3) {
             mQuery = charSequence.toString();
-            if (mRestartLoaderHandler.hasMessages(0)) {
-                return;
+
+            // Places known locally are shown right away, the loader completes them from the network
+            List<LocationSearchResult> localResults = YahooPlacesAPIClient.getInstance().findLocationsLocally(mQuery);
+            if (!localResults.isEmpty() && mSearchResultsAdapter != null) {
+                mSearchResultsAdapter.changeArray(localResults);
             }
 
+            // Debounce: the search only starts once typing paused for the delay
+            mRestartLoaderHandler.removeMessages(0);
             mRestartLoaderHandler.sendMessageDelayed(
                     mRestartLoaderHandler.obtainMessage(0),
                     QUERY_DELAY_MILLIS);
@@ -378,7 +420,12 @@ public class WeatherLocationPreference extends Preference {
                             .inflate(R.layout.list_item_weather_location_result, container, false);
                 }
 
-                if (position == 0 && mResults.size() == 0) {
+                if (position == 0 && mResults.size() == 0 && mPreference.isOptional()) {
+                    ((TextView) convertView.findViewById(android.R.id.text1))
+                            .setText(R.string.pref_weather_location_none);
+                    ((TextView) convertView.findViewById(android.R.id.text2))
+                            .setText(R.string.pref_weather_location_none_description);
+                } else if (position == 0 && mResults.size() == 0) {
                     ((TextView) convertView.findViewById(android.R.id.text1))
                             .setText(R.string.pref_weather_location_automatic);
                     ((TextView) convertView.findViewById(android.R.id.text2))
@@ -402,6 +449,7 @@ public class WeatherLocationPreference extends Preference {
     private static class ResultsLoader extends AsyncTaskLoader<List<LocationSearchResult>> {
         private String mQuery;
         private List<LocationSearchResult> mResults;
+        private CancellationSignal mCancellationSignal;
 
         public ResultsLoader(String query, Context context) {
             super(context);
@@ -410,7 +458,31 @@ public class WeatherLocationPreference extends Preference {
 
         @Override
         public List<LocationSearchResult> loadInBackground() {
-            return YahooPlacesAPIClient.findLocationsAutocomplete(mQuery);
+            synchronized (this) {
+                if (isLoadInBackgroundCanceled()) {
+                    throw new OperationCanceledException();
+                }
+                mCancellationSignal = new CancellationSignal();
+            }
+            try {
+                return YahooPlacesAPIClient.getInstance().findLocationsAutocomplete(mQuery, mCancellationSignal);
+            } finally {
+                synchronized (this) {
+                    mCancellationSignal = null;
+                }
+            }
+        }
+
+        @Override
+        public void cancelLoadInBackground() {
+            super.cancelLoadInBackground();
+
+            synchronized (this) {
+                if (mCancellationSignal != null) {
+                    // Aborts the running request to the places API
+                    mCancellationSignal.cancel();
+                }
+            }
         }
 
         @Override
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather.utils;
+
+import java.io.FileNotFoundException;
+
+/**
+ * Thrown by {@link Utils#openUrlConnection(String)} when the server doesn't answer with a
+ * 2xx code. Extends {@link FileNotFoundException} so callers that only care about the request
+ * failing don't have to tell it apart.
+ */
+public class HttpStatusException extends FileNotFoundException {
+
+    public static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    public static final long NO_RETRY_AFTER = -1;
+
+    public final int code;
+    /**
+     * Seconds from the Retry-After header, or {@link #NO_RETRY_AFTER}
+     */
+    public final long retryAfterSeconds;
+
+    public HttpStatusException(String url, int code, long retryAfterSeconds) {
+        super(url + " returned HTTP " + code);
+        this.code = code;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public boolean isServerError() {
+        return code >= 500;
+    }
+}
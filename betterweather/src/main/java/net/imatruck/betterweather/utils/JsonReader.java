@@ -15,38 +15,18 @@
  */
 package net.imatruck.betterweather.utils;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.net.URL;
+import okhttp3.Response;
 
+/**
+ * Helpers around {@link com.google.gson.stream.JsonReader} so API responses can be decoded
+ * while they are streamed, without building the whole document in memory. The values are
+ * read with {@link net.imatruck.betterweather.core.JsonValues}.
+ */
 public class JsonReader {
 
-    // Read JSON file
-    private static String readAll(Reader rd) throws IOException {
-        StringBuilder sb = new StringBuilder();
-        int cp;
-        while ((cp = rd.read()) != -1) {
-            sb.append((char) cp);
-        }
-        return sb.toString();
-    }
-
-    // Get JSON from an url
-    public static JSONObject readJsonFromUrl(String url) throws IOException, JSONException {
-        InputStream is = new URL(url).openStream();
-        try {
-            BufferedReader rd = new BufferedReader(new InputStreamReader(is));
-            String jsonText = readAll(rd);
-            return new JSONObject(jsonText);
-        } finally {
-            is.close();
-        }
+    // Get a streaming JSON reader over a response's body, the caller must close it
+    public static com.google.gson.stream.JsonReader readJsonFromResponse(Response response) {
+        return new com.google.gson.stream.JsonReader(response.body().charStream());
     }
 
 }
@@ -23,9 +23,21 @@ import android.graphics.PorterDuff;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.HttpURLConnection;
-import java.net.URL;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+import okhttp3.CacheControl;
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
 
 /**
  * Because every project needs a Utils class.
@@ -35,13 +47,150 @@ public class Utils {
 
     public static final int EXTENSION_ICON_SIZE = 128;
 
-    public static HttpURLConnection openUrlConnection(String url) throws IOException {
-        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
-        conn.setUseCaches(false);
-        conn.setChunkedStreamingMode(0);
-        conn.setRequestProperty("User-Agent", USER_AGENT);
-        conn.connect();
-        return conn;
+    private static final int HTTP_MAX_IDLE_CONNECTIONS = 4;
+    private static final long HTTP_KEEP_ALIVE_MINUTES = 5;
+    private static final long HTTP_TIMEOUT_SECONDS = 15;
+    private static final long HTTP_CACHE_SIZE = 1024 * 1024;
+    private static final String HTTP_CACHE_DIR = "http";
+
+    /**
+     * Makes the cache check with the server even if its copy is still fresh, a 304 still
+     * saves downloading and parsing the body. no-cache would skip the cached copy altogether
+     * and send no conditional headers.
+     */
+    private static final CacheControl REVALIDATE = new CacheControl.Builder()
+            .maxAge(0, TimeUnit.SECONDS)
+            .build();
+
+    private static OkHttpClient sHttpClient;
+
+    /**
+     * Process-wide HTTP client shared by the weather, places and analytics calls, so that
+     * connections (and their TLS sessions) are pooled and reused between round trips.
+     * OkHttp negotiates HTTP/2 when available and handles gzip transparently.
+     *
+     * @return The shared client
+     */
+    public static synchronized OkHttpClient getHttpClient() {
+        if (sHttpClient == null) {
+            sHttpClient = new OkHttpClient.Builder()
+                    .connectionPool(new ConnectionPool(HTTP_MAX_IDLE_CONNECTIONS,
+                            HTTP_KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                    .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                    .connectTimeout(HTTP_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                    .readTimeout(HTTP_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                    .build();
+        }
+        return sHttpClient;
+    }
+
+    /**
+     * Adds a size-bounded on-disk cache to the shared client. Responses are then stored
+     * and revalidated with If-None-Match/If-Modified-Since, and Cache-Control max-age is honoured.
+     * Does nothing if the cache is already installed.
+     *
+     * @param cacheDir Directory in which the cache directory will be created
+     */
+    public static synchronized void installHttpCache(File cacheDir) {
+        OkHttpClient client = getHttpClient();
+        if (client.cache() != null) {
+            return;
+        }
+        // The new client shares the connection pool of the previous one
+        sHttpClient = client.newBuilder()
+                .cache(new Cache(new File(cacheDir, HTTP_CACHE_DIR), HTTP_CACHE_SIZE))
+                .build();
+    }
+
+    /**
+     * @param response Response from {@link #openUrlConnection(String)}
+     * @return true if the body is the same as the one previously cached, either because the
+     * cached copy was still fresh or because the server answered 304 Not Modified
+     */
+    public static boolean isNotModified(Response response) {
+        if (response.cacheResponse() == null) {
+            return false;
+        }
+        Response networkResponse = response.networkResponse();
+        return networkResponse == null || networkResponse.code() == HttpURLConnection.HTTP_NOT_MODIFIED;
+    }
+
+    /**
+     * Executes a GET request on the shared client. The caller must close the response body.
+     *
+     * @param url Url to fetch
+     * @return Successful response
+     * @throws HttpStatusException If the server did not answer with a 2xx code, it's a
+     *                             {@link FileNotFoundException} like {@link java.net.URL#openStream()} throws
+     * @throws IOException         If the request could not be executed
+     */
+    public static Response openUrlConnection(String url) throws IOException {
+        return execute(newGetCall(url));
+    }
+
+    /**
+     * Prepares a GET request on the shared client, the call can be cancelled from another
+     * thread while {@link #execute(Call)} runs
+     *
+     * @param url Url to fetch
+     * @return Call to pass to {@link #execute(Call)}
+     */
+    public static Call newGetCall(String url) {
+        return newGetCall(getHttpClient(), url, false);
+    }
+
+    /**
+     * Same as {@link #newGetCall(String)} on another client
+     *
+     * @param client     Client to make the call with
+     * @param revalidate Check a cached response with the server even if it's still fresh,
+     *                   for refreshes the user asked for
+     */
+    public static Call newGetCall(OkHttpClient client, String url, boolean revalidate) {
+        Request.Builder request = new Request.Builder()
+                .url(url)
+                .header("User-Agent", USER_AGENT);
+        if (revalidate) {
+            request.cacheControl(REVALIDATE);
+        }
+        return client.newCall(request.build());
+    }
+
+    /**
+     * Same as {@link #openUrlConnection(String)} for a call from {@link #newGetCall(String)}
+     *
+     * @throws IOException If the request could not be executed or the call was cancelled
+     */
+    public static Response execute(Call call) throws IOException {
+        return checkSuccessful(call, call.execute());
+    }
+
+    /**
+     * Checks the response of a call, for calls passed to {@link Call#enqueue(okhttp3.Callback)}
+     *
+     * @return The response, if it's successful
+     * @throws HttpStatusException If it isn't, the body is then closed
+     */
+    public static Response checkSuccessful(Call call, Response response) throws HttpStatusException {
+        if (!response.isSuccessful()) {
+            response.body().close();
+            throw new HttpStatusException(call.request().url().toString(), response.code(),
+                    getRetryAfterSeconds(response));
+        }
+        return response;
+    }
+
+    private static long getRetryAfterSeconds(Response response) {
+        String retryAfter = response.header("Retry-After");
+        if (retryAfter == null) {
+            return HttpStatusException.NO_RETRY_AFTER;
+        }
+        try {
+            return Long.parseLong(retryAfter.trim());
+        } catch (NumberFormatException nfe) {
+            // HTTP dates are not used by the weather APIs
+            return HttpStatusException.NO_RETRY_AFTER;
+        }
     }
 
     public static Bitmap flattenExtensionIcon(Drawable baseIcon, int color) {
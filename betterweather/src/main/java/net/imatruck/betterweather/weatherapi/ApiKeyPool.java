@@ -0,0 +1,262 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather.weatherapi;
+
+import android.content.SharedPreferences;
+
+import net.imatruck.betterweather.utils.HttpStatusException;
+import net.imatruck.betterweather.utils.LogUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static net.imatruck.betterweather.utils.LogUtils.LOGD;
+
+/**
+ * Keeps track of the health of a set of API keys, so requests go to keys that work instead
+ * of always starting with the first one.
+ * Keys that are rate-limited or rejected are put aside until their cooldown is over, the
+ * others are used in turn to spread the quota. The state is saved in shared preferences,
+ * when given, so it survives the process being restarted. It is only saved when a cooldown
+ * starts or ends, the success counts of a key are saved along with it.
+ */
+class ApiKeyPool {
+
+    private static final String TAG = LogUtils.makeLogTag(ApiKeyPool.class);
+
+    private static final long DEFAULT_RATE_LIMIT_COOLDOWN_MILLIS = 10 * 60 * 1000;
+    private static final long REJECTED_COOLDOWN_MILLIS = 15 * 60 * 1000;
+    private static final long MAX_COOLDOWN_MILLIS = 24 * 60 * 60 * 1000;
+    private static final int MAX_COOLDOWN_EXPONENT = 7;
+
+    /**
+     * Available keys with a lower success rate are tried after the others
+     */
+    private static final float POOR_SUCCESS_RATE = 0.5f;
+    /**
+     * Counts are halved past this number of requests, so old results weigh less
+     */
+    private static final int MAX_REQUEST_COUNT = 100;
+
+    private static final String SEPARATOR = "|";
+
+    private final String[] mKeys;
+    private final KeyHealth[] mHealth;
+    private final SharedPreferences mPreferences;
+
+    private int mNextKey = 0;
+
+    /**
+     * @param keys        Keys to use, in order of preference
+     * @param preferences Where to save the keys' health, can be null to keep it in memory only
+     */
+    ApiKeyPool(String[] keys, SharedPreferences preferences) {
+        mKeys = (keys.length > 0) ? keys : new String[]{""};
+        mHealth = new KeyHealth[mKeys.length];
+        mPreferences = preferences;
+
+        for (int i = 0; i < mKeys.length; i++) {
+            KeyHealth health = null;
+            if (mPreferences != null) {
+                health = KeyHealth.parse(mPreferences.getString(getPreferenceKey(mKeys[i]), null));
+            }
+            mHealth[i] = (health != null) ? health : new KeyHealth();
+        }
+    }
+
+    /**
+     * Orders the keys for a request. Available keys take turns on each call, the ones with a
+     * poor success rate last. Keys that are cooling down are left out, unless every key is:
+     * the one that will be available the soonest is then tried alone.
+     *
+     * @return Keys to try, in order
+     */
+    synchronized List<String> getKeysInOrder() {
+        final long now = System.currentTimeMillis();
+
+        List<Integer> available = new ArrayList<Integer>(mKeys.length);
+        List<Integer> coolingDown = new ArrayList<Integer>();
+        for (int i = 0; i < mKeys.length; i++) {
+            int index = (mNextKey + i) % mKeys.length;
+            if (mHealth[index].isAvailable(now)) {
+                available.add(index);
+            } else {
+                coolingDown.add(index);
+            }
+        }
+        mNextKey = (mNextKey + 1) % mKeys.length;
+
+        // Stable sorts, keys that are equal keep their turn order
+        Collections.sort(available, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer lhs, Integer rhs) {
+                boolean lhsPoor = mHealth[lhs].getSuccessRate() < POOR_SUCCESS_RATE;
+                boolean rhsPoor = mHealth[rhs].getSuccessRate() < POOR_SUCCESS_RATE;
+                return (lhsPoor == rhsPoor) ? 0 : (lhsPoor ? 1 : -1);
+            }
+        });
+        Collections.sort(coolingDown, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer lhs, Integer rhs) {
+                long lhsUntil = mHealth[lhs].unavailableUntil, rhsUntil = mHealth[rhs].unavailableUntil;
+                return (lhsUntil < rhsUntil) ? -1 : ((lhsUntil == rhsUntil) ? 0 : 1);
+            }
+        });
+
+        List<String> keys = new ArrayList<String>(mKeys.length);
+        for (int index : available) {
+            keys.add(mKeys[index]);
+        }
+        if (keys.isEmpty()) {
+            LOGD(TAG, "Every key is cooling down, trying the one available the soonest");
+            keys.add(mKeys[coolingDown.get(0)]);
+        }
+        return keys;
+    }
+
+    synchronized void reportSuccess(String key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return;
+        }
+        KeyHealth health = mHealth[index];
+        boolean recovered = health.consecutiveFailures > 0 || health.unavailableUntil != 0;
+        health.successes++;
+        health.consecutiveFailures = 0;
+        health.unavailableUntil = 0;
+        health.decay();
+        if (recovered) {
+            // The cooldown is over, nothing else is worth a write on every request
+            save(index);
+        }
+    }
+
+    /**
+     * Called when a request failed because of the key
+     *
+     * @param key   Key used for the request
+     * @param error Error from the request, a 429 puts the key aside until the rate limit resets
+     */
+    synchronized void reportFailure(String key, HttpStatusException error) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return;
+        }
+        KeyHealth health = mHealth[index];
+        long now = System.currentTimeMillis();
+
+        long cooldown;
+        if (error.code == HttpStatusException.HTTP_TOO_MANY_REQUESTS) {
+            cooldown = (error.retryAfterSeconds != HttpStatusException.NO_RETRY_AFTER)
+                    ? error.retryAfterSeconds * 1000 : DEFAULT_RATE_LIMIT_COOLDOWN_MILLIS;
+        } else {
+            cooldown = Math.min(REJECTED_COOLDOWN_MILLIS << Math.min(health.consecutiveFailures, MAX_COOLDOWN_EXPONENT),
+                    MAX_COOLDOWN_MILLIS);
+        }
+
+        health.failures++;
+        health.consecutiveFailures++;
+        health.lastFailure = now;
+        health.unavailableUntil = now + cooldown;
+        health.decay();
+        save(index);
+
+        LOGD(TAG, "Key #" + index + " failed with HTTP " + error.code + ", not using it for "
+                + cooldown / 1000 + " seconds");
+    }
+
+    private int indexOf(String key) {
+        for (int i = 0; i < mKeys.length; i++) {
+            if (mKeys[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void save(int index) {
+        if (mPreferences != null) {
+            mPreferences.edit().putString(getPreferenceKey(mKeys[index]), mHealth[index].toString()).apply();
+        }
+    }
+
+    /**
+     * Keys are identified by a hash so they aren't stored in clear and changing the order of
+     * the keys in a new version doesn't mix up their health
+     */
+    private static String getPreferenceKey(String key) {
+        return "key_" + Integer.toHexString(key.hashCode());
+    }
+
+    /**
+     * Stored as "unavailableUntil|lastFailure|consecutiveFailures|successes|failures"
+     */
+    private static class KeyHealth {
+        long unavailableUntil;
+        long lastFailure;
+        int consecutiveFailures;
+        int successes;
+        int failures;
+
+        boolean isAvailable(long now) {
+            return now >= unavailableUntil;
+        }
+
+        /**
+         * @return Part of the requests that succeeded, 1 if the key was never used
+         */
+        float getSuccessRate() {
+            int total = successes + failures;
+            return (total == 0) ? 1f : (float) successes / total;
+        }
+
+        void decay() {
+            if (successes + failures > MAX_REQUEST_COUNT) {
+                successes /= 2;
+                failures /= 2;
+            }
+        }
+
+        static KeyHealth parse(String value) {
+            if (value == null) {
+                return null;
+            }
+            String[] fields = value.split("\\" + SEPARATOR);
+            if (fields.length != 5) {
+                return null;
+            }
+            try {
+                KeyHealth health = new KeyHealth();
+                health.unavailableUntil = Long.parseLong(fields[0]);
+                health.lastFailure = Long.parseLong(fields[1]);
+                health.consecutiveFailures = Integer.parseInt(fields[2]);
+                health.successes = Integer.parseInt(fields[3]);
+                health.failures = Integer.parseInt(fields[4]);
+                return health;
+            } catch (NumberFormatException nfe) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return unavailableUntil + SEPARATOR + lastFailure + SEPARATOR + consecutiveFailures
+                    + SEPARATOR + successes + SEPARATOR + failures;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather.weatherapi;
+
+import net.imatruck.betterweather.LocationInfo;
+
+/**
+ * Non-blocking variant of {@link IWeatherAPI}: the request is started and the method returns
+ * right away, the caller waits on the result only when it needs it and can cancel it.
+ */
+public interface AsyncWeatherAPI extends IWeatherAPI {
+
+    /**
+     * Starts fetching the weather for a location
+     *
+     * @param revalidate Check cached responses with the server even if they're still fresh,
+     *                   for refreshes the user asked for
+     * @return Pending result, {@link WeatherCall#cancel(boolean)} stops the HTTP requests.
+     * Its {@link java.util.concurrent.ExecutionException} wraps the IOException of the request.
+     */
+    public WeatherCall getWeatherDataForLocationAsync(LocationInfo locationInfo, boolean revalidate);
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather.weatherapi;
+
+import android.os.SystemClock;
+
+import net.imatruck.betterweather.utils.LogUtils;
+
+import java.util.Locale;
+
+import static net.imatruck.betterweather.utils.LogUtils.LOGD;
+
+/**
+ * Stops sending requests to a provider that keeps failing.
+ * The breaker is closed while the provider works. It opens when too many of the last requests
+ * failed or were too slow, requests are then refused until a cooldown is over. The next
+ * request is let through as a trial (half-open): it closes the breaker if it succeeds,
+ * otherwise the breaker opens again with a longer cooldown.
+ */
+public class CircuitBreaker {
+
+    private static final String TAG = LogUtils.makeLogTag(CircuitBreaker.class);
+
+    /**
+     * Number of last requests the failure rate is computed on
+     */
+    private static final int WINDOW_SIZE = 10;
+    /**
+     * The failure rate is only checked once this many requests are in the window
+     */
+    private static final int MIN_REQUESTS = 3;
+    private static final float FAILURE_RATE_THRESHOLD = 0.5f;
+    /**
+     * Requests slower than this count as failures
+     */
+    private static final long SLOW_REQUEST_MILLIS = 10 * 1000;
+
+    private static final long BASE_OPEN_MILLIS = 5 * 60 * 1000;
+    private static final long MAX_OPEN_MILLIS = 60 * 60 * 1000;
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String mName;
+
+    private final boolean[] mWindow = new boolean[WINDOW_SIZE];
+    private int mWindowCount = 0;
+    private int mWindowNext = 0;
+
+    private State mState = State.CLOSED;
+    private long mOpenedAt;
+    private long mOpenMillis = BASE_OPEN_MILLIS;
+    private boolean mTrialRunning = false;
+
+    public CircuitBreaker(String name) {
+        mName = name;
+    }
+
+    /**
+     * @return true if a request can be sent, a request let through while half-open must be
+     * followed by {@link #recordResult(boolean, long)}
+     */
+    public synchronized boolean allowRequest() {
+        switch (getState()) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                if (mTrialRunning) {
+                    return false;
+                }
+                mTrialRunning = true;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @param success       Whether the request returned usable data
+     * @param latencyMillis Time the request took
+     */
+    public synchronized void recordResult(boolean success, long latencyMillis) {
+        boolean failed = !success || latencyMillis > SLOW_REQUEST_MILLIS;
+
+        if (mState == State.HALF_OPEN && mTrialRunning) {
+            mTrialRunning = false;
+            if (failed) {
+                open(Math.min(mOpenMillis * 2, MAX_OPEN_MILLIS));
+            } else {
+                close();
+            }
+            return;
+        }
+
+        mWindow[mWindowNext] = failed;
+        mWindowNext = (mWindowNext + 1) % WINDOW_SIZE;
+        mWindowCount = Math.min(mWindowCount + 1, WINDOW_SIZE);
+
+        if (mState == State.CLOSED && mWindowCount >= MIN_REQUESTS && getFailureRate() >= FAILURE_RATE_THRESHOLD) {
+            open(BASE_OPEN_MILLIS);
+        }
+    }
+
+    public synchronized State getState() {
+        if (mState == State.OPEN && SystemClock.elapsedRealtime() - mOpenedAt >= mOpenMillis) {
+            mState = State.HALF_OPEN;
+            LOGD(TAG, mName + " breaker is half-open, next request is a trial");
+        }
+        return mState;
+    }
+
+    /**
+     * @return Part of the requests in the window that failed
+     */
+    public synchronized float getFailureRate() {
+        if (mWindowCount == 0) {
+            return 0f;
+        }
+        int failures = 0;
+        for (int i = 0; i < mWindowCount; i++) {
+            if (mWindow[i]) {
+                failures++;
+            }
+        }
+        return (float) failures / mWindowCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return mName + ": " + getState() + String.format(Locale.US, " (%.0f%% of last %d requests failed)",
+                getFailureRate() * 100, mWindowCount);
+    }
+
+    private void open(long openMillis) {
+        mState = State.OPEN;
+        mOpenedAt = SystemClock.elapsedRealtime();
+        mOpenMillis = openMillis;
+        LOGD(TAG, mName + " breaker opened for " + openMillis / 1000 + " seconds");
+    }
+
+    private void close() {
+        mState = State.CLOSED;
+        mOpenMillis = BASE_OPEN_MILLIS;
+        mWindowCount = 0;
+        mWindowNext = 0;
+        LOGD(TAG, mName + " breaker closed");
+    }
+}
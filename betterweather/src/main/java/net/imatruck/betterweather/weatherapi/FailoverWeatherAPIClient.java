@@ -0,0 +1,241 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather.weatherapi;
+
+import android.os.SystemClock;
+
+import net.imatruck.betterweather.BetterWeatherData;
+import net.imatruck.betterweather.LocationInfo;
+import net.imatruck.betterweather.utils.LogUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static net.imatruck.betterweather.utils.LogUtils.LOGD;
+import static net.imatruck.betterweather.utils.LogUtils.LOGW;
+
+/**
+ * Gets the weather from the first provider that works, each provider is guarded by a
+ * {@link CircuitBreaker} so one that is down isn't called on every refresh.
+ * Providers are tried in order, the one selected in the settings should be first.
+ */
+public class FailoverWeatherAPIClient implements AsyncWeatherAPI {
+
+    private static final String TAG = LogUtils.makeLogTag(FailoverWeatherAPIClient.class);
+
+    private final AsyncWeatherAPI[] mApis;
+    private final CircuitBreaker[] mBreakers;
+
+    /**
+     * @param apis     Providers, in order of preference
+     * @param breakers Breaker of each provider, same order as apis
+     */
+    public FailoverWeatherAPIClient(AsyncWeatherAPI[] apis, CircuitBreaker[] breakers) {
+        mApis = apis;
+        mBreakers = breakers;
+    }
+
+    @Override
+    public BetterWeatherData getWeatherDataForLocation(LocationInfo locationInfo) throws IOException {
+        IOException lastException = null;
+
+        for (int i = 0; i < mApis.length; i++) {
+            AsyncWeatherAPI api = mApis[i];
+            CircuitBreaker breaker = mBreakers[i];
+
+            if (!api.canHandle(locationInfo)) {
+                LOGD(TAG, api.getClass().getSimpleName() + " can't handle this location, skipping it");
+                continue;
+            }
+            if (!breaker.allowRequest()) {
+                LOGD(TAG, "Skipping " + breaker);
+                continue;
+            }
+
+            long start = SystemClock.elapsedRealtime();
+            boolean success = false;
+            try {
+                BetterWeatherData data = api.getWeatherDataForLocation(locationInfo);
+                success = isSuccessful(data);
+                if (success) {
+                    return data;
+                }
+                LOGW(TAG, api.getClass().getSimpleName() + " returned an error, trying next provider");
+            } catch (IOException ioe) {
+                LOGW(TAG, api.getClass().getSimpleName() + " failed, trying next provider: " + ioe);
+                lastException = ioe;
+            } finally {
+                breaker.recordResult(success, SystemClock.elapsedRealtime() - start);
+            }
+        }
+
+        if (lastException != null) {
+            throw lastException;
+        }
+        return new BetterWeatherData(BetterWeatherData.ErrorCodes.API);
+    }
+
+    /**
+     * Same as {@link #getWeatherDataForLocation(LocationInfo)}, the next provider is called
+     * from the thread that completed the previous one's request
+     */
+    @Override
+    public WeatherCall getWeatherDataForLocationAsync(LocationInfo locationInfo, boolean revalidate) {
+        WeatherCall weatherCall = new WeatherCall();
+        tryProvidersFrom(0, locationInfo, revalidate, weatherCall, null);
+        return weatherCall;
+    }
+
+    /**
+     * Starts the request of the first provider from this index that can be called, or
+     * completes the call if there's none left
+     *
+     * @param lastException Failure of the previous provider, if any
+     */
+    private void tryProvidersFrom(int first, final LocationInfo locationInfo, final boolean revalidate,
+                                  final WeatherCall weatherCall, final IOException lastException) {
+        for (int i = first; i < mApis.length; i++) {
+            final AsyncWeatherAPI api = mApis[i];
+            final CircuitBreaker breaker = mBreakers[i];
+
+            if (!api.canHandle(locationInfo)) {
+                LOGD(TAG, api.getClass().getSimpleName() + " can't handle this location, skipping it");
+                continue;
+            }
+            if (!breaker.allowRequest()) {
+                LOGD(TAG, "Skipping " + breaker);
+                continue;
+            }
+
+            final int next = i + 1;
+            final long start = SystemClock.elapsedRealtime();
+            WeatherCall attempt = api.getWeatherDataForLocationAsync(locationInfo, revalidate);
+            if (!weatherCall.attach(attempt)) {
+                // Cancelled, the provider isn't to blame
+                return;
+            }
+            attempt.setOnDoneListener(new WeatherCall.OnDoneListener() {
+                @Override
+                public void onDone(WeatherCall call) {
+                    boolean success = false;
+                    IOException exception = lastException;
+                    try {
+                        BetterWeatherData data = call.getResult();
+                        success = isSuccessful(data);
+                        if (success) {
+                            weatherCall.set(data);
+                            return;
+                        }
+                        LOGW(TAG, api.getClass().getSimpleName() + " returned an error, trying next provider");
+                    } catch (IOException ioe) {
+                        LOGW(TAG, api.getClass().getSimpleName() + " failed, trying next provider: " + ioe);
+                        exception = ioe;
+                    } finally {
+                        breaker.recordResult(success, SystemClock.elapsedRealtime() - start);
+                    }
+                    if (!weatherCall.isDone()) {
+                        tryProvidersFrom(next, locationInfo, revalidate, weatherCall, exception);
+                    }
+                }
+            });
+            return;
+        }
+
+        if (lastException != null) {
+            weatherCall.setException(lastException);
+        } else {
+            weatherCall.set(new BetterWeatherData(BetterWeatherData.ErrorCodes.API));
+        }
+    }
+
+    /**
+     * Gets every location from the first provider, the locations it failed are then asked
+     * to the next provider
+     */
+    @Override
+    public List<BetterWeatherData> getWeatherDataForLocations(List<LocationInfo> locationInfos) {
+        BetterWeatherData[] results = new BetterWeatherData[locationInfos.size()];
+
+        for (int i = 0; i < mApis.length; i++) {
+            AsyncWeatherAPI api = mApis[i];
+            CircuitBreaker breaker = mBreakers[i];
+
+            List<Integer> pending = new ArrayList<Integer>();
+            List<LocationInfo> pendingLocations = new ArrayList<LocationInfo>();
+            for (int j = 0; j < results.length; j++) {
+                if (!isSuccessful(results[j]) && api.canHandle(locationInfos.get(j))) {
+                    pending.add(j);
+                    pendingLocations.add(locationInfos.get(j));
+                }
+            }
+            if (pending.isEmpty()) {
+                continue;
+            }
+            if (!breaker.allowRequest()) {
+                LOGD(TAG, "Skipping " + breaker);
+                continue;
+            }
+
+            long start = SystemClock.elapsedRealtime();
+            boolean success = false;
+            try {
+                List<BetterWeatherData> batch = api.getWeatherDataForLocations(pendingLocations);
+                int succeeded = 0;
+                for (int k = 0; k < pending.size(); k++) {
+                    BetterWeatherData data = batch.get(k);
+                    if (isSuccessful(data)) {
+                        succeeded++;
+                    }
+                    if (isSuccessful(data) || results[pending.get(k)] == null) {
+                        results[pending.get(k)] = data;
+                    }
+                }
+                success = succeeded == pending.size();
+                if (!success) {
+                    LOGW(TAG, api.getClass().getSimpleName() + " failed " + (pending.size() - succeeded)
+                            + " of " + pending.size() + " locations, trying next provider");
+                }
+            } catch (IOException ioe) {
+                LOGW(TAG, api.getClass().getSimpleName() + " failed, trying next provider: " + ioe);
+            } finally {
+                breaker.recordResult(success, SystemClock.elapsedRealtime() - start);
+            }
+        }
+
+        for (int j = 0; j < results.length; j++) {
+            if (results[j] == null) {
+                results[j] = new BetterWeatherData(BetterWeatherData.ErrorCodes.API);
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    private static boolean isSuccessful(BetterWeatherData data) {
+        return data != null && data.errorCode == BetterWeatherData.ErrorCodes.NONE;
+    }
+
+    @Override
+    public boolean canHandle(LocationInfo locationInfo) {
+        for (AsyncWeatherAPI api : mApis) {
+            if (api.canHandle(locationInfo)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -19,6 +19,7 @@ import net.imatruck.betterweather.BetterWeatherData;
 import net.imatruck.betterweather.LocationInfo;
 
 import java.io.IOException;
+import java.util.List;
 
 /**
  * Interface for Weather APIs
@@ -31,4 +32,16 @@ import java.io.IOException;
 public interface IWeatherAPI {
 
     public BetterWeatherData getWeatherDataForLocation(LocationInfo locationInfo) throws IOException;
+
+    /**
+     * Gets the weather of several locations, in as few requests as the API allows
+     *
+     * @return Data in the same order as the locations, a location that failed has an error code
+     */
+    public List<BetterWeatherData> getWeatherDataForLocations(List<LocationInfo> locationInfos) throws IOException;
+
+    /**
+     * @return false if the API needs something the location doesn't have, like a WOEID or coordinates
+     */
+    public boolean canHandle(LocationInfo locationInfo);
 }
@@ -15,293 +15,344 @@
  */
 package net.imatruck.betterweather.weatherapi;
 
+import android.content.Context;
+import android.os.SystemClock;
+
 import net.imatruck.betterweather.BetterWeatherData;
 import net.imatruck.betterweather.BetterWeatherExtension;
 import net.imatruck.betterweather.BuildConfig;
 import net.imatruck.betterweather.LocationInfo;
 import net.imatruck.betterweather.YahooPlacesAPIClient;
+import net.imatruck.betterweather.core.JsonValues;
+import net.imatruck.betterweather.core.OpenWeatherMapParser;
+import net.imatruck.betterweather.utils.HttpStatusException;
 import net.imatruck.betterweather.utils.JsonReader;
 import net.imatruck.betterweather.utils.LogUtils;
+import net.imatruck.betterweather.utils.Utils;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
 
 import static net.imatruck.betterweather.utils.LogUtils.LOGD;
 import static net.imatruck.betterweather.utils.LogUtils.LOGW;
 
-public class OpenWeatherMapWeatherAPIClient implements IWeatherAPI {
+public class OpenWeatherMapWeatherAPIClient implements AsyncWeatherAPI {
 
     private static final String TAG = LogUtils.makeLogTag(OpenWeatherMapWeatherAPIClient.class);
 
-    private static final String REQUEST_URL_CURRENT = "http://api.openweathermap.org/data/2.5/weather?lat=%s&lon=%s&units=%s&APPID=%s";
-    private static final String REQUEST_URL_FORECAST = "http://api.openweathermap.org/data/2.5/forecast/daily?lat=%s&lon=%s&cnt=2&units=%s&APPID=%s";
+    public static final String DEFAULT_BASE_URL = "http://api.openweathermap.org/data/2.5";
 
-    @Override
-    public BetterWeatherData getWeatherDataForLocation(LocationInfo locationInfo) throws IOException {
+    private static final String REQUEST_PATH_CURRENT = "/weather?lat=%s&lon=%s&units=%s&APPID=%s";
+    private static final String REQUEST_PATH_FORECAST = "/forecast/daily?lat=%s&lon=%s&cnt=2&units=%s&APPID=%s";
 
-        BetterWeatherData data = new BetterWeatherData();
+    private final ParsedResponseCache mParsedResponses = new ParsedResponseCache(4);
 
-        JSONObject responseCurrent;
-        JSONObject responseForecast;
+    private final OkHttpClient mHttpClient;
+    private final String mBaseUrl;
 
-        try {
-            responseCurrent = getCurrentData(locationInfo, 0);
-            responseForecast = getForecastData(locationInfo, 0);
-        } catch (IOException ioe) {
-            return new BetterWeatherData(BetterWeatherData.ErrorCodes.API);
-        }
+    private static final String API_KEYS_PREFS_NAME = "owm_api_keys";
 
-        if (parseCurrentConditionsData(data, responseCurrent)) {
-            LOGW(TAG, "Could not parse current weather data");
-            return new BetterWeatherData(BetterWeatherData.ErrorCodes.API);
-        }
+    private static ApiKeyPool sApiKeyPool;
 
-        parseForecastData(data, responseForecast);
+    private static final long FETCH_DEADLINE_MILLIS = 20 * 1000;
+    /**
+     * One waits on the requests of an asynchronous fetch, the others run them
+     */
+    private static final int FETCH_THREADS = 4;
 
-        data.location = YahooPlacesAPIClient.getLocationNameFromCoords(locationInfo.LAT, locationInfo.LNG);
+    private static final ExecutorService sExecutor;
 
-        return data;
+    static {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(FETCH_THREADS, FETCH_THREADS,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        executor.allowCoreThreadTimeOut(true);
+        sExecutor = executor;
     }
 
-    private JSONObject getCurrentData(LocationInfo locationInfo, int retryCount) throws IOException {
-
-        JSONObject responseCurrent;
-
-        String API_KEY = getApiKey(retryCount);
+    /**
+     * Client of OpenWeatherMap's API on the shared HTTP client
+     */
+    public OpenWeatherMapWeatherAPIClient() {
+        this(null, DEFAULT_BASE_URL);
+    }
 
-        try {
-            String weatherUnit = (BetterWeatherExtension.getWeatherUnits().equals("c")) ? "metric" : "imperial";
-            String formattedURL = String.format(Locale.getDefault(), REQUEST_URL_CURRENT, locationInfo.LAT, locationInfo.LNG, weatherUnit, API_KEY);
-            LOGD(TAG, "Using URL: " + formattedURL);
-            responseCurrent = JsonReader.readJsonFromUrl(formattedURL);
-        } catch (JSONException je) {
-            throw new IOException();
-        } catch (FileNotFoundException fnfe) {
-            LOGD(TAG, "Could not retrieve current weather info, retry #" + retryCount);
-            if (retryCount < BuildConfig.OWM_API_KEY.length)
-                return getCurrentData(locationInfo, ++retryCount);
-            throw new IOException();
-        }
+    /**
+     * @param httpClient Client to make the requests with, null for {@link Utils#getHttpClient()}
+     * @param baseUrl    URL the API's paths are appended to
+     */
+    public OpenWeatherMapWeatherAPIClient(OkHttpClient httpClient, String baseUrl) {
+        mHttpClient = httpClient;
+        mBaseUrl = baseUrl;
+    }
 
-        return responseCurrent;
+    @Override
+    public BetterWeatherData getWeatherDataForLocation(LocationInfo locationInfo) throws IOException {
+        return fetch(locationInfo, false, new WeatherCall());
     }
 
-    private JSONObject getForecastData(LocationInfo locationInfo, int retryCount) throws IOException {
+    /**
+     * The three requests are started and waited on from one of the client's threads. Cancelling
+     * the call cancels their HTTP calls and interrupts that thread.
+     */
+    @Override
+    public WeatherCall getWeatherDataForLocationAsync(final LocationInfo locationInfo, final boolean revalidate) {
+        final WeatherCall weatherCall = new WeatherCall();
+        Future<?> task = sExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    weatherCall.set(fetch(locationInfo, revalidate, weatherCall));
+                } catch (IOException ioe) {
+                    weatherCall.setException(ioe);
+                }
+            }
+        });
+        weatherCall.attach(task);
+        return weatherCall;
+    }
 
-        JSONObject responseForecast;
+    /**
+     * @param revalidate  See {@link AsyncWeatherAPI#getWeatherDataForLocationAsync(LocationInfo, boolean)}
+     * @param weatherCall The requests are attached to it, so cancelling it cancels them
+     */
+    private BetterWeatherData fetch(final LocationInfo locationInfo, final boolean revalidate,
+                                    final WeatherCall weatherCall) throws IOException {
+
+        // Current conditions, forecast and location name don't depend on each other,
+        // so they are requested at the same time and share a single deadline
+        long deadline = SystemClock.elapsedRealtime() + FETCH_DEADLINE_MILLIS;
+
+        Future<BetterWeatherData> currentFuture = sExecutor.submit(new Callable<BetterWeatherData>() {
+            @Override
+            public BetterWeatherData call() throws IOException {
+                return fetchCurrentConditions(locationInfo, revalidate, weatherCall);
+            }
+        });
+        Future<BetterWeatherData> forecastFuture = sExecutor.submit(new Callable<BetterWeatherData>() {
+            @Override
+            public BetterWeatherData call() throws IOException {
+                return fetchForecast(locationInfo, revalidate, weatherCall);
+            }
+        });
+        final YahooPlacesAPIClient placesClient = YahooPlacesAPIClient.getInstance();
+        Future<String> locationNameFuture = sExecutor.submit(new Callable<String>() {
+            @Override
+            public String call() {
+                return placesClient.getLocationNameFromCoords(locationInfo.LAT, locationInfo.LNG);
+            }
+        });
+        weatherCall.attach(locationNameFuture);
 
-        String API_KEY = getApiKey(retryCount);
+        BetterWeatherData data = getBeforeDeadline(currentFuture, deadline, "current weather");
+        if (data == null) {
+            forecastFuture.cancel(true);
+            locationNameFuture.cancel(true);
+            return new BetterWeatherData(BetterWeatherData.ErrorCodes.API);
+        }
 
-        try {
-            String weatherUnit = (BetterWeatherExtension.getWeatherUnits().equals("c")) ? "metric" : "imperial";
-            String formattedURL = String.format(Locale.getDefault(), REQUEST_URL_FORECAST, locationInfo.LAT, locationInfo.LNG, weatherUnit, API_KEY);
-            LOGD(TAG, "Using URL: " + formattedURL);
-            responseForecast = JsonReader.readJsonFromUrl(formattedURL);
-        } catch (JSONException je) {
-            throw new IOException();
-        } catch (FileNotFoundException fnfe) {
-            LOGD(TAG, "Could not retrieve forecast weather info, retry #" + retryCount);
-            if (retryCount < BuildConfig.OWM_API_KEY.length)
-                return getForecastData(locationInfo, ++retryCount);
-            throw new IOException();
+        // A missing forecast or location name only degrades that part of the data
+        BetterWeatherData.Builder builder = new BetterWeatherData.Builder(data);
+        BetterWeatherData forecast = getBeforeDeadline(forecastFuture, deadline, "forecast");
+        if (forecast != null) {
+            builder.copyForecast(forecast);
         }
 
-        return responseForecast;
+        String locationName = getBeforeDeadline(locationNameFuture, deadline, "location name");
+        builder.location = (locationName != null) ? locationName : "N/A";
+
+        return builder.build();
     }
 
-    private static String getApiKey(int count) {
-        try {
-            return BuildConfig.OWM_API_KEY[count];
-        } catch (ArrayIndexOutOfBoundsException e) {
-            return "";
+    /**
+     * The group endpoint only takes city IDs and locations here have coordinates, so each
+     * location gets its own requests. Locations are fetched one after the other, each one's
+     * three requests run at the same time.
+     */
+    @Override
+    public List<BetterWeatherData> getWeatherDataForLocations(List<LocationInfo> locationInfos) {
+        List<BetterWeatherData> results = new ArrayList<BetterWeatherData>(locationInfos.size());
+        for (LocationInfo locationInfo : locationInfos) {
+            BetterWeatherData data = null;
+            if (canHandle(locationInfo) && !Thread.currentThread().isInterrupted()) {
+                try {
+                    data = getWeatherDataForLocation(locationInfo);
+                } catch (IOException ioe) {
+                    LOGW(TAG, "Could not get weather: " + ioe);
+                }
+            }
+            results.add((data != null) ? data : new BetterWeatherData(BetterWeatherData.ErrorCodes.API));
         }
+        return results;
     }
 
-    private boolean parseCurrentConditionsData(BetterWeatherData data, JSONObject response) {
-        JSONObject currentWeather = null, currentMain = null, currentWind = null;
+    @Override
+    public boolean canHandle(LocationInfo locationInfo) {
+        // Locations set before coordinates were saved in the settings have 0,0
+        return locationInfo.LAT != 0 || locationInfo.LNG != 0;
+    }
 
-        if (response != null) {
-            try {
-                currentWeather = response.getJSONArray("weather").getJSONObject(0);
-                currentMain = response.getJSONObject("main");
-                currentWind = response.getJSONObject("wind");
-            } catch (JSONException je) {
-                return true;
-            }
+    /**
+     * Waits for a request started in {@link #fetch(LocationInfo, boolean, WeatherCall)}
+     *
+     * @return The request's result, or null if it failed or didn't finish before the deadline
+     */
+    private static <T> T getBeforeDeadline(Future<T> future, long deadline, String what) {
+        try {
+            long timeout = Math.max(0, deadline - SystemClock.elapsedRealtime());
+            return future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException ee) {
+            LOGW(TAG, "Could not get " + what + ": " + ee.getCause());
+        } catch (TimeoutException te) {
+            LOGW(TAG, "Timed out getting " + what);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
         }
+        future.cancel(true);
+        return null;
+    }
 
-        if (currentMain != null) {
-            try {
-                data.temperature = data.feelsLike = (int) Math.round(currentMain.getDouble("temp"));
-                data.humidity = currentMain.getInt("humidity") + "";
-            } catch (JSONException je) {
-                LOGW(TAG, "Error parsing current weather data");
-            }
+    /**
+     * @return Current conditions, or null if they could not be parsed
+     */
+    private BetterWeatherData fetchCurrentConditions(LocationInfo locationInfo, boolean revalidate,
+                                                     WeatherCall weatherCall) throws IOException {
+        Response response = openWithApiKey(REQUEST_PATH_CURRENT, locationInfo, "current weather info", revalidate, weatherCall);
+
+        BetterWeatherData data = mParsedResponses.getIfNotModified(response);
+        if (data != null) {
+            LOGD(TAG, "Current weather not modified, reusing previous data");
+            return data;
         }
 
-        if (currentWeather != null) {
-            try {
-                data.conditionCode = convertToConditionCode(currentWeather.getInt("id"), currentWeather.getString("icon").contains("n"));
-            } catch (JSONException je) {
-                LOGW(TAG, "Error parsing current weather condition");
+        BetterWeatherData.Builder builder = new BetterWeatherData.Builder();
+        com.google.gson.stream.JsonReader reader = JsonReader.readJsonFromResponse(response);
+        try {
+            if (!OpenWeatherMapParser.parseCurrentConditions(reader, builder, isMetric())) {
+                LOGW(TAG, "Could not parse current weather data");
+                return null;
             }
+        } finally {
+            JsonValues.closeQuietly(reader);
         }
 
-        if (currentWind != null) {
-            try {
-                data.windSpeed = currentWind.getDouble("speed") + "";
-                data.windDirection = currentWind.getInt("deg");
-            } catch (JSONException je) {
-                LOGW(TAG, "Error parsing current wind data");
-            }
+        if (!builder.hasValidTemperature() || !builder.hasHumidity()) {
+            LOGW(TAG, "Error parsing current weather data");
+        }
+        if (!builder.hasWindSpeed()) {
+            LOGW(TAG, "Error parsing current wind data");
         }
-        return false;
+
+        data = builder.build();
+        mParsedResponses.put(response, data);
+        return data;
     }
 
-    private void parseForecastData(BetterWeatherData data, JSONObject response) {
-        JSONObject todayWeather = null, todayMain = null, tomorrowWeather = null, tomorrowMain = null;
+    /**
+     * @return Data holding only today's and tomorrow's forecast
+     */
+    private BetterWeatherData fetchForecast(LocationInfo locationInfo, boolean revalidate,
+                                            WeatherCall weatherCall) throws IOException {
+        Response response = openWithApiKey(REQUEST_PATH_FORECAST, locationInfo, "forecast weather info", revalidate, weatherCall);
+
+        BetterWeatherData data = mParsedResponses.getIfNotModified(response);
+        if (data != null) {
+            LOGD(TAG, "Forecast not modified, reusing previous data");
+            return data;
+        }
 
-        if (response != null) {
-            try {
-                JSONArray list = response.getJSONArray("list");
-                todayMain = list.getJSONObject(0);
-                todayWeather = todayMain.getJSONArray("weather").getJSONObject(0);
-                tomorrowMain = list.getJSONObject(1);
-                tomorrowWeather = tomorrowMain.getJSONArray("weather").getJSONObject(0);
-            } catch (JSONException je) {
-                LOGW(TAG, "Error parsing forecast data");
-            }
+        BetterWeatherData.Builder builder = new BetterWeatherData.Builder();
+        com.google.gson.stream.JsonReader reader = JsonReader.readJsonFromResponse(response);
+        try {
+            OpenWeatherMapParser.parseForecast(reader, builder);
+        } finally {
+            JsonValues.closeQuietly(reader);
         }
 
-        if (todayMain != null && todayWeather != null) {
-            try {
-                data.todayForecastConditionCode = convertToConditionCode(todayWeather.getInt("id"), false);
-                data.todayHigh = (int) Math.round(todayMain.getJSONObject("temp").getDouble("max")) + "";
-                data.todayLow = (int) Math.round(todayMain.getJSONObject("temp").getDouble("min")) + "";
-            } catch (JSONException je) {
-                LOGW(TAG, "Error parsing today's forecast data");
-            }
+        if (!builder.hasForecast()) {
+            LOGW(TAG, "Error parsing forecast data");
         }
 
-        if (tomorrowMain != null && tomorrowWeather != null) {
+        data = builder.build();
+        mParsedResponses.put(response, data);
+        return data;
+    }
+
+    /**
+     * Requests an URL with the keys from {@link ApiKeyPool}, trying the next key when one is
+     * rejected or rate-limited
+     *
+     * @param pathTemplate Path to format with the location, units and key
+     * @param what         Description of the request for the logs
+     * @param revalidate   Check a cached response with the server even if it's still fresh
+     * @param weatherCall  Each request is attached to it
+     * @return Successful response
+     * @throws IOException If no key worked or the request failed for another reason, or the
+     *                     weather call was cancelled
+     */
+    private Response openWithApiKey(String pathTemplate, LocationInfo locationInfo, String what,
+                                    boolean revalidate, WeatherCall weatherCall) throws IOException {
+        String weatherUnit = isMetric() ? "metric" : "imperial";
+        ApiKeyPool apiKeyPool = getApiKeyPool();
+        OkHttpClient httpClient = (mHttpClient != null) ? mHttpClient : Utils.getHttpClient();
+
+        HttpStatusException lastError = null;
+        for (String apiKey : apiKeyPool.getKeysInOrder()) {
+            String formattedURL = mBaseUrl + String.format(Locale.getDefault(), pathTemplate, locationInfo.LAT, locationInfo.LNG, weatherUnit, apiKey);
+            LOGD(TAG, "Using URL: " + formattedURL);
+            Call call = Utils.newGetCall(httpClient, formattedURL, revalidate);
+            if (!weatherCall.attach(call)) {
+                throw new InterruptedIOException("Weather call was cancelled");
+            }
             try {
-                data.tomorrowForecastConditionCode = convertToConditionCode(tomorrowWeather.getInt("id"), false);
-                data.tomorrowHigh = (int) Math.round(tomorrowMain.getJSONObject("temp").getDouble("max")) + "";
-                data.tomorrowLow = (int) Math.round(tomorrowMain.getJSONObject("temp").getDouble("min")) + "";
-            } catch (JSONException je) {
-                LOGW(TAG, "Error parsing tomorrow's forecast data");
+                Response response = Utils.execute(call);
+                apiKeyPool.reportSuccess(apiKey);
+                return response;
+            } catch (HttpStatusException hse) {
+                if (hse.isServerError()) {
+                    // The key is not the problem, another one wouldn't do better
+                    throw hse;
+                }
+                LOGD(TAG, "Could not retrieve " + what + ", HTTP " + hse.code);
+                apiKeyPool.reportFailure(apiKey, hse);
+                lastError = hse;
             }
         }
+        throw new IOException("Could not retrieve " + what + " with any API key", lastError);
+    }
+
+    private static boolean isMetric() {
+        return BetterWeatherExtension.getWeatherUnits().equals("c");
+    }
+
+    /**
+     * Enables saving the health of the API keys between restarts
+     */
+    public static synchronized void installApiKeyPool(Context context) {
+        if (sApiKeyPool == null) {
+            sApiKeyPool = new ApiKeyPool(BuildConfig.OWM_API_KEY,
+                    context.getApplicationContext().getSharedPreferences(API_KEYS_PREFS_NAME, Context.MODE_PRIVATE));
+        }
     }
 
-    private int convertToConditionCode(int conditionCode, boolean isNight) {
-        switch (conditionCode) {
-            case 200: //thunderstorm with light rain
-            case 201: //thunderstorm with rain
-            case 231: //thunderstorm with drizzle
-            case 210: //light thunderstorm
-            case 211: //thunderstorm
-            case 230: //thunderstorm with light drizzle
-                return 4;
-            case 212: //heavy thunderstorm
-            case 221: //ragged thunderstorm
-            case 232: //thunderstorm with heavy drizzle
-            case 202: //thunderstorm with heavy rain
-                return 3;
-            case 300: //light intensity drizzle
-            case 301: //drizzle
-            case 313: //shower rain and drizzle
-            case 310: //light intensity drizzle rain
-            case 311: //drizzle rain
-            case 321: //shower drizzle
-            case 312: //heavy intensity drizzle rain
-            case 302: //heavy intensity drizzle
-            case 314: //heavy shower rain and drizzle
-                return 9;
-            case 500: //light rain
-            case 501: //moderate rain
-            case 502: //heavy intensity rain
-            case 503: //very heavy rain
-            case 504: //extreme rain
-            case 520: //light intensity shower rain
-            case 521: //shower rain
-            case 522: //heavy intensity shower rain
-            case 531: //ragged shower rain
-                return 12;
-            case 511: //freezing rain
-                return 10;
-            case 600: //light snow
-            case 601: //snow
-                return 16;
-            case 611: //sleet
-            case 612: //shower sleet
-                return 18;
-            case 615: //light rain and snow
-            case 616: //rain and snow
-                return 5;
-            case 620: //light shower snow
-            case 621: //shower snow
-            case 622: //heavy shower snow
-                return 46;
-            case 602: //heavy snow
-                return 41;
-            case 711: //smoke
-                return 22;
-            case 721: //haze
-                return 21;
-            case 741: //Fog
-            case 701: //mist
-                return 20;
-            case 751: //sand
-            case 761: //dust
-            case 731: //Sand/Dust Whirls
-            case 762: //VOLCANIC ASH
-                return 19;
-            case 771: //SQUALLS
-                return 24;
-            case 781: //TORNADO
-            case 900: //tornado
-                return 0;
-            case 800: //sky is clear
-            case 950: //setting
-            case 951: //calm
-            case 952: //light breeze
-            case 953: //gentle breeze
-            case 954: //moderate breeze
-            case 955: //fresh breeze
-                return isNight ? 31 : 32;
-            case 801: //few clouds
-            case 802: //scattered clouds
-                return isNight ? 29 : 30;
-            case 803: //broken clouds
-                return isNight ? 27 : 28;
-            case 804: //overcast clouds
-                return 26;
-            case 901: //tropical storm
-            case 960: //storm
-            case 961: //violent storm
-                return 1;
-            case 902: //hurricane
-            case 962: //hurricane
-                return 2;
-            case 903: //cold
-                return 25;
-            case 904: //hot
-                return 36;
-            case 905: //windy
-            case 956: //strong breeze
-            case 957: //high wind, near gale
-            case 958: //gale
-            case 959: //severe gale
-                return 24;
-            case 906: //hail
-                return 17;
+    private static synchronized ApiKeyPool getApiKeyPool() {
+        if (sApiKeyPool == null) {
+            sApiKeyPool = new ApiKeyPool(BuildConfig.OWM_API_KEY, null);
         }
-        return -1;
+        return sApiKeyPool;
     }
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather.weatherapi;
+
+import net.imatruck.betterweather.BetterWeatherData;
+import net.imatruck.betterweather.utils.Utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import okhttp3.Response;
+
+/**
+ * Keeps the {@link BetterWeatherData} parsed from the last responses of each request, so a
+ * response the HTTP cache reports as not modified doesn't need to be parsed again.
+ * Thread-safe, the least recently used entry is dropped when it's full.
+ */
+class ParsedResponseCache {
+
+    private final Map<String, BetterWeatherData> mParsedData;
+
+    ParsedResponseCache(final int maxSize) {
+        // A plain map rather than android.util.LruCache, so the clients can be tested on the JVM
+        mParsedData = new LinkedHashMap<String, BetterWeatherData>(maxSize + 1, 1f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, BetterWeatherData> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * @param response Response from {@link Utils#openUrlConnection(String)}
+     * @return The data parsed from the previous response to the same request if the
+     * body didn't change, in which case the response is closed. null if it has to be parsed.
+     */
+    BetterWeatherData getIfNotModified(Response response) {
+        if (!Utils.isNotModified(response)) {
+            return null;
+        }
+
+        BetterWeatherData data;
+        synchronized (mParsedData) {
+            data = mParsedData.get(getKey(response));
+        }
+        if (data == null) {
+            return null;
+        }
+
+        response.body().close();
+        return data;
+    }
+
+    void put(Response response, BetterWeatherData data) {
+        synchronized (mParsedData) {
+            mParsedData.put(getKey(response), data);
+        }
+    }
+
+    private static String getKey(Response response) {
+        return response.request().url().toString();
+    }
+}
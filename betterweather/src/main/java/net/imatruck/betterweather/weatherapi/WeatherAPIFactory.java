@@ -17,17 +17,53 @@ package net.imatruck.betterweather.weatherapi;
 
 import net.imatruck.betterweather.BetterWeatherExtension;
 
+/**
+ * Registry of the weather APIs. The clients are created once and shared by every refresh,
+ * along with the HTTP connections and parsed response caches they keep.
+ */
 public class WeatherAPIFactory {
 
+    /**
+     * Breakers live as long as the process so a provider's failures are remembered between refreshes
+     */
+    private static final CircuitBreaker sYahooBreaker = new CircuitBreaker("Yahoo");
+    private static final CircuitBreaker sOpenWeatherMapBreaker = new CircuitBreaker("OpenWeatherMap");
+
+    private static final AsyncWeatherAPI sYahoo = new YahooWeatherAPIClient();
+    private static final AsyncWeatherAPI sOpenWeatherMap = new OpenWeatherMapWeatherAPIClient();
+
+    private static final AsyncWeatherAPI sYahooFirst = new FailoverWeatherAPIClient(
+            new AsyncWeatherAPI[]{sYahoo, sOpenWeatherMap},
+            new CircuitBreaker[]{sYahooBreaker, sOpenWeatherMapBreaker});
+    private static final AsyncWeatherAPI sOpenWeatherMapFirst = new FailoverWeatherAPIClient(
+            new AsyncWeatherAPI[]{sOpenWeatherMap, sYahoo},
+            new CircuitBreaker[]{sOpenWeatherMapBreaker, sYahooBreaker});
+
+    /**
+     * @return The API selected in the settings, falling back on the other one when it's down
+     */
     public static IWeatherAPI getWeatherAPIFromSetting(String apiSetting) {
         if (apiSetting.equals(BetterWeatherExtension.OPENWEATHERMAP_WEATHER_API)) {
-            return new OpenWeatherMapWeatherAPIClient();
+            return sOpenWeatherMapFirst;
         }
-        if (apiSetting.equals(BetterWeatherExtension.YAHOO_WEATHER_API)) {
-            return new YahooWeatherAPIClient();
+        return sYahooFirst;
+    }
+
+    /**
+     * @return Non-blocking version of {@link #getWeatherAPIFromSetting(String)}
+     */
+    public static AsyncWeatherAPI getAsyncWeatherAPIFromSetting(String apiSetting) {
+        if (apiSetting.equals(BetterWeatherExtension.OPENWEATHERMAP_WEATHER_API)) {
+            return sOpenWeatherMapFirst;
         }
+        return sYahooFirst;
+    }
 
-        return new YahooWeatherAPIClient();
+    /**
+     * @return State of the providers' breakers, for diagnostics
+     */
+    public static String getCircuitBreakerStates() {
+        return sYahooBreaker + ", " + sOpenWeatherMapBreaker;
     }
 
 }
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather.weatherapi;
+
+import net.imatruck.betterweather.BetterWeatherData;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import okhttp3.Call;
+
+/**
+ * Pending result of an {@link AsyncWeatherAPI} request. It's completed from the HTTP client's
+ * threads, and cancelling it cancels the HTTP calls and the other work it was waiting on.
+ */
+public class WeatherCall implements Future<BetterWeatherData> {
+
+    /**
+     * Run once the call is completed, successfully or not, but not when it's cancelled
+     */
+    interface OnDoneListener {
+        void onDone(WeatherCall call);
+    }
+
+    private final CountDownLatch mDone = new CountDownLatch(1);
+
+    private final List<Call> mCalls = new ArrayList<Call>();
+    private final List<Future<?>> mDependencies = new ArrayList<Future<?>>();
+    private OnDoneListener mListener;
+
+    private boolean mCompleted = false;
+    private boolean mCancelled = false;
+    private BetterWeatherData mData;
+    private IOException mError;
+
+    /**
+     * Cancels the HTTP call with this one
+     *
+     * @return false if this one is already done, the HTTP call is then cancelled right away
+     */
+    synchronized boolean attach(Call call) {
+        if (isDoneLocked()) {
+            call.cancel();
+            return false;
+        }
+        mCalls.add(call);
+        return true;
+    }
+
+    /**
+     * Cancels the work with this one, interrupting it if it's running
+     *
+     * @return false if this one is already done, the work is then cancelled right away
+     */
+    synchronized boolean attach(Future<?> dependency) {
+        if (isDoneLocked()) {
+            dependency.cancel(true);
+            return false;
+        }
+        mDependencies.add(dependency);
+        return true;
+    }
+
+    /**
+     * Sets the listener, it's called right away if the call is already completed
+     */
+    void setOnDoneListener(OnDoneListener listener) {
+        synchronized (this) {
+            if (!mCompleted) {
+                mListener = listener;
+                return;
+            }
+        }
+        listener.onDone(this);
+    }
+
+    void set(BetterWeatherData data) {
+        complete(data, null);
+    }
+
+    void setException(IOException error) {
+        complete(null, error);
+    }
+
+    private void complete(BetterWeatherData data, IOException error) {
+        OnDoneListener listener;
+        synchronized (this) {
+            if (isDoneLocked()) {
+                return;
+            }
+            mData = data;
+            mError = error;
+            mCompleted = true;
+            listener = mListener;
+            mListener = null;
+            mCalls.clear();
+            mDependencies.clear();
+        }
+        mDone.countDown();
+        if (listener != null) {
+            listener.onDone(this);
+        }
+    }
+
+    /**
+     * @return The result of a completed call
+     * @throws IOException If the request failed
+     */
+    synchronized BetterWeatherData getResult() throws IOException {
+        if (!mCompleted) {
+            throw new IllegalStateException("Weather call isn't completed");
+        }
+        if (mError != null) {
+            throw mError;
+        }
+        return mData;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        List<Call> calls;
+        List<Future<?>> dependencies;
+        synchronized (this) {
+            if (isDoneLocked()) {
+                return false;
+            }
+            mCancelled = true;
+            mListener = null;
+            calls = new ArrayList<Call>(mCalls);
+            dependencies = new ArrayList<Future<?>>(mDependencies);
+            mCalls.clear();
+            mDependencies.clear();
+        }
+        mDone.countDown();
+
+        for (Call call : calls) {
+            call.cancel();
+        }
+        for (Future<?> dependency : dependencies) {
+            dependency.cancel(true);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return mCancelled;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return isDoneLocked();
+    }
+
+    private boolean isDoneLocked() {
+        return mCompleted || mCancelled;
+    }
+
+    @Override
+    public BetterWeatherData get() throws InterruptedException, ExecutionException {
+        mDone.await();
+        return report();
+    }
+
+    @Override
+    public BetterWeatherData get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        if (!mDone.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return report();
+    }
+
+    private synchronized BetterWeatherData report() throws ExecutionException {
+        if (mCancelled) {
+            throw new CancellationException();
+        }
+        if (mError != null) {
+            throw new ExecutionException(mError);
+        }
+        return mData;
+    }
+}
@@ -15,129 +15,241 @@
  */
 package net.imatruck.betterweather.weatherapi;
 
+import android.text.TextUtils;
+
+import com.google.gson.stream.MalformedJsonException;
 
 import net.imatruck.betterweather.BetterWeatherData;
 import net.imatruck.betterweather.BetterWeatherExtension;
 import net.imatruck.betterweather.LocationInfo;
+import net.imatruck.betterweather.core.JsonValues;
+import net.imatruck.betterweather.core.WeatherFields;
+import net.imatruck.betterweather.core.YahooWeatherParser;
 import net.imatruck.betterweather.utils.JsonReader;
 import net.imatruck.betterweather.utils.LogUtils;
-
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import net.imatruck.betterweather.utils.Utils;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
 
 import static net.imatruck.betterweather.utils.LogUtils.LOGD;
 import static net.imatruck.betterweather.utils.LogUtils.LOGW;
 
-public class YahooWeatherAPIClient implements IWeatherAPI {
+public class YahooWeatherAPIClient implements AsyncWeatherAPI {
 
     private static final String TAG = LogUtils.makeLogTag(YahooWeatherAPIClient.class);
 
-    private static final String REQUEST_URL = "https://query.yahooapis.com/v1/public/yql?q=select * from weather.forecast where woeid=%s and u='%s'&format=json";
+    public static final String DEFAULT_BASE_URL = "https://query.yahooapis.com/v1/public/yql";
+
+    private static final String REQUEST_QUERY = "?q=select * from weather.forecast where woeid=%s and u='%s'&format=json";
+
+    private static final String REQUEST_QUERY_BATCH = "?q=select * from weather.forecast where woeid in (%s) and u='%s'&format=json";
+
+    private final ParsedResponseCache mParsedResponses = new ParsedResponseCache(4);
+
+    private final OkHttpClient mHttpClient;
+    private final String mBaseUrl;
+
+    /**
+     * Client of Yahoo's API on the shared HTTP client
+     */
+    public YahooWeatherAPIClient() {
+        this(null, DEFAULT_BASE_URL);
+    }
+
+    /**
+     * @param httpClient Client to make the requests with, null for {@link Utils#getHttpClient()}
+     * @param baseUrl    URL of the YQL endpoint, the query is appended to it
+     */
+    public YahooWeatherAPIClient(OkHttpClient httpClient, String baseUrl) {
+        mHttpClient = httpClient;
+        mBaseUrl = baseUrl;
+    }
 
     @Override
     public BetterWeatherData getWeatherDataForLocation(LocationInfo locationInfo) throws IOException {
 
-        JSONObject response;
-        String formattedUrl = String.format(Locale.getDefault(), REQUEST_URL, locationInfo.WOEID, BetterWeatherExtension.getWeatherUnits());
-        formattedUrl = formattedUrl.replace(" ", "%20");
+        Response response;
+        String formattedUrl = getRequestUrl(locationInfo);
 
         try {
             LOGD(TAG, String.format(Locale.getDefault(), "Using URL: %s", formattedUrl));
-            response = JsonReader.readJsonFromUrl(formattedUrl);
-        } catch (JSONException je) {
-            LOGW(TAG, "Could not read JSON from API");
-            return new BetterWeatherData(BetterWeatherData.ErrorCodes.API);
+            response = Utils.execute(newGetCall(formattedUrl, false));
         } catch (FileNotFoundException fe) {
             LOGW(TAG, "Error communicating with API");
             return new BetterWeatherData(BetterWeatherData.ErrorCodes.API);
         }
 
-        return parseData(response);
+        return readResponse(response);
     }
 
-    private BetterWeatherData parseData(JSONObject response) {
-        BetterWeatherData data = new BetterWeatherData();
-        JSONObject weatherInfo = null;
-        JSONArray forecast = null;
+    @Override
+    public WeatherCall getWeatherDataForLocationAsync(LocationInfo locationInfo, boolean revalidate) {
+        final WeatherCall weatherCall = new WeatherCall();
+        String formattedUrl = getRequestUrl(locationInfo);
+        LOGD(TAG, String.format(Locale.getDefault(), "Using URL: %s", formattedUrl));
+
+        Call call = newGetCall(formattedUrl, revalidate);
+        if (weatherCall.attach(call)) {
+            call.enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    weatherCall.setException(e);
+                }
 
-        if (response != null) {
-            try {
-                weatherInfo = response.getJSONObject("query").getJSONObject("results").getJSONObject("channel");
-            } catch (JSONException e) {
-                LOGW(TAG, "Could not read weather info from response");
-            }
+                @Override
+                public void onResponse(Call call, Response response) {
+                    try {
+                        weatherCall.set(readResponse(Utils.checkSuccessful(call, response)));
+                    } catch (FileNotFoundException fe) {
+                        LOGW(TAG, "Error communicating with API");
+                        weatherCall.set(new BetterWeatherData(BetterWeatherData.ErrorCodes.API));
+                    } catch (IOException ioe) {
+                        weatherCall.setException(ioe);
+                    } catch (RuntimeException re) {
+                        // Thrown on the HTTP client's thread it would never complete the call
+                        weatherCall.setException(new IOException("Could not read weather data", re));
+                    }
+                }
+            });
         }
+        return weatherCall;
+    }
 
-        if (weatherInfo != null) {
+    private String getRequestUrl(LocationInfo locationInfo) {
+        String formattedUrl = String.format(Locale.getDefault(), REQUEST_QUERY, locationInfo.WOEID, BetterWeatherExtension.getWeatherUnits());
+        return mBaseUrl + formattedUrl.replace(" ", "%20");
+    }
 
-            try {
-                JSONObject condition = weatherInfo.getJSONObject("item").getJSONObject("condition");
-                data.temperature = data.feelsLike = condition.getInt("temp");
-                data.conditionCode = condition.getInt("code");
-            } catch (JSONException e) {
-                LOGW(TAG, "Error parsing current weather condition");
-            }
+    private Call newGetCall(String url, boolean revalidate) {
+        OkHttpClient httpClient = (mHttpClient != null) ? mHttpClient : Utils.getHttpClient();
+        return Utils.newGetCall(httpClient, url, revalidate);
+    }
 
-            try {
-                JSONObject wind = weatherInfo.getJSONObject("wind");
-                data.windSpeed = wind.getDouble("speed") + "";
-                data.windDirection = wind.getInt("direction");
-            } catch (JSONException e) {
-                LOGW(TAG, "Error parsing wind details");
-            }
+    /**
+     * Parses a successful response, or reuses the data parsed from the previous one if it
+     * didn't change. The response is closed.
+     */
+    private BetterWeatherData readResponse(Response response) throws IOException {
+        BetterWeatherData data = mParsedResponses.getIfNotModified(response);
+        if (data != null) {
+            LOGD(TAG, "Weather data not modified, reusing previous data");
+            return data;
+        }
 
-            try {
-                JSONObject atmosphere = weatherInfo.getJSONObject("atmosphere");
-                data.humidity = (int) atmosphere.getDouble("humidity") + "";
-            } catch (JSONException e) {
-                LOGW(TAG, "Error parsing humidity");
-            }
+        List<YahooWeatherParser.Channel> channels = readChannels(response);
+        if (channels.isEmpty()) {
+            LOGW(TAG, "Could not read weather info from response");
+            return new BetterWeatherData(BetterWeatherData.ErrorCodes.API);
+        }
 
-            try {
-                forecast = weatherInfo.getJSONObject("item").getJSONArray("forecast");
-            } catch (JSONException e) {
-                LOGW(TAG, "Could not read forecast data");
-            }
+        // A single WOEID was queried, its channel doesn't need to be matched
+        data = toWeatherData(channels.get(0).data);
+        mParsedResponses.put(response, data);
+        return data;
+    }
 
-            if (forecast != null) {
-                try {
-                    JSONObject today = forecast.getJSONObject(0);
-                    data.todayForecastConditionCode = today.getInt("code");
-                    data.todayHigh = today.getInt("high") + "";
-                    data.todayLow = today.getInt("low") + "";
-                } catch (JSONException e) {
-                    LOGW(TAG, "Error parsing today's forecast");
-                }
+    /**
+     * Parses a response and closes it
+     *
+     * @return The channels of the response, empty if there's none or it could not be read
+     */
+    private List<YahooWeatherParser.Channel> readChannels(Response response) throws IOException {
+        com.google.gson.stream.JsonReader reader = JsonReader.readJsonFromResponse(response);
+        try {
+            return YahooWeatherParser.parse(reader);
+        } catch (MalformedJsonException | IllegalStateException e) {
+            LOGW(TAG, "Could not read JSON from API");
+            return Collections.emptyList();
+        } finally {
+            JsonValues.closeQuietly(reader);
+        }
+    }
 
-                try {
-                    JSONObject tomorrow = forecast.getJSONObject(1);
-                    data.tomorrowForecastConditionCode = tomorrow.getInt("code");
-                    data.tomorrowHigh = tomorrow.getInt("high") + "";
-                    data.tomorrowLow = tomorrow.getInt("low") + "";
-                } catch (JSONException e) {
-                    LOGW(TAG, "Error parsing tomorrow's forecast");
-                }
+    /**
+     * @return Data of a channel, what it is missing is only logged
+     */
+    private static BetterWeatherData toWeatherData(WeatherFields fields) {
+        if (fields.conditionCode == BetterWeatherData.INVALID_CONDITION) {
+            LOGW(TAG, "Error parsing current weather condition");
+        }
+        if (!fields.hasForecast()) {
+            LOGW(TAG, "Error parsing forecast");
+        }
+        if (!fields.hasWindSpeed()) {
+            LOGW(TAG, "Error parsing wind details");
+        }
+        if (!fields.hasHumidity()) {
+            LOGW(TAG, "Error parsing humidity");
+        }
+        if (fields.location == null) {
+            LOGW(TAG, "Error parsing location name");
+        }
+        return new BetterWeatherData.Builder(fields).build();
+    }
+
+    /**
+     * Gets the weather of every location with a single YQL query. Channels are matched back to
+     * the locations by the WOEID in their link, a location without a matching channel gets an
+     * API error.
+     */
+    @Override
+    public List<BetterWeatherData> getWeatherDataForLocations(List<LocationInfo> locationInfos) throws IOException {
+        if (locationInfos.size() == 1) {
+            return Collections.singletonList(getWeatherDataForLocation(locationInfos.get(0)));
+        }
+
+        // Same WOEID can be asked more than once, it is only queried once
+        Set<String> woeids = new LinkedHashSet<String>();
+        for (LocationInfo locationInfo : locationInfos) {
+            if (canHandle(locationInfo)) {
+                woeids.add(locationInfo.WOEID);
             }
+        }
+
+        Map<String, BetterWeatherData> dataByWoeid = new HashMap<String, BetterWeatherData>();
+        if (!woeids.isEmpty()) {
+            String formattedUrl = String.format(Locale.getDefault(), REQUEST_QUERY_BATCH,
+                    TextUtils.join(",", woeids), BetterWeatherExtension.getWeatherUnits());
+            formattedUrl = mBaseUrl + formattedUrl.replace(" ", "%20");
 
             try {
-                JSONObject location = weatherInfo.getJSONObject("location");
-                data.location = String.format(Locale.getDefault(), "%s, %s",
-                        location.getString("city").trim(), location.getString("region").trim());
-            } catch (JSONException e) {
-                LOGW(TAG, "Error parsing location name");
+                LOGD(TAG, String.format(Locale.getDefault(), "Using URL: %s", formattedUrl));
+                for (YahooWeatherParser.Channel channel : readChannels(Utils.execute(newGetCall(formattedUrl, false)))) {
+                    if (channel.woeid != null && woeids.contains(channel.woeid)) {
+                        dataByWoeid.put(channel.woeid, toWeatherData(channel.data));
+                    } else {
+                        LOGW(TAG, "Could not tell which location a channel is for, skipping it");
+                    }
+                }
+            } catch (FileNotFoundException fe) {
+                LOGW(TAG, "Error communicating with API");
             }
-
-        } else {
-            return new BetterWeatherData(BetterWeatherData.ErrorCodes.API);
         }
 
-        return data;
-
+        List<BetterWeatherData> results = new ArrayList<BetterWeatherData>(locationInfos.size());
+        for (LocationInfo locationInfo : locationInfos) {
+            BetterWeatherData data = dataByWoeid.get(locationInfo.WOEID);
+            results.add((data != null) ? data : new BetterWeatherData(BetterWeatherData.ErrorCodes.API));
+        }
+        return results;
     }
 
+    @Override
+    public boolean canHandle(LocationInfo locationInfo) {
+        return !TextUtils.isEmpty(locationInfo.WOEID) && !"0".equals(locationInfo.WOEID);
+    }
 }
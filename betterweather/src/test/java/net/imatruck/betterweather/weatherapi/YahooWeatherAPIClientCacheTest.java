@@ -0,0 +1,181 @@
+/*
+ * Copyright 2013-2016 Marc-André Dufresne
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.imatruck.betterweather.weatherapi;
+
+import net.imatruck.betterweather.BetterWeatherData;
+import net.imatruck.betterweather.LocationInfo;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * The weather client behind the HTTP cache, against a local server answering with a recorded
+ * Yahoo! response
+ */
+public class YahooWeatherAPIClientCacheTest {
+
+    private static final LocationInfo MONTREAL = new LocationInfo("3534", "Montreal, QC", 45.5124, -73.5544);
+
+    @Rule
+    public final TemporaryFolder mCacheDir = new TemporaryFolder();
+
+    private MockWebServer mServer;
+    private OkHttpClient mHttpClient;
+    private YahooWeatherAPIClient mClient;
+    private String mWeather;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new MockWebServer();
+        mServer.start();
+
+        mHttpClient = new OkHttpClient.Builder()
+                .cache(new Cache(mCacheDir.getRoot(), 1024 * 1024))
+                .build();
+        mClient = new YahooWeatherAPIClient(mHttpClient, mServer.url("/v1/public/yql").toString());
+        mWeather = readFixture("yahoo_weather.json");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.shutdown();
+        mHttpClient.cache().close();
+    }
+
+    @Test
+    public void freshResponseIsNotRequestedAgain() throws Exception {
+        mServer.enqueue(new MockResponse()
+                .setHeader("Cache-Control", "max-age=600")
+                .setBody(mWeather));
+
+        BetterWeatherData first = mClient.getWeatherDataForLocation(MONTREAL);
+        BetterWeatherData second = mClient.getWeatherDataForLocation(MONTREAL);
+
+        assertEquals(BetterWeatherData.ErrorCodes.NONE, first.errorCode);
+        assertEquals(0, first.temperature);
+        assertEquals(1, mServer.getRequestCount());
+        // Served by the cache, the body wasn't parsed again
+        assertSame(first, second);
+    }
+
+    @Test
+    public void notModifiedReusesParsedData() throws Exception {
+        mServer.enqueue(new MockResponse()
+                .setHeader("Cache-Control", "no-cache")
+                .setHeader("ETag", "\"v1\"")
+                .setBody(mWeather));
+        mServer.enqueue(new MockResponse()
+                .setResponseCode(304)
+                .setHeader("ETag", "\"v1\""));
+
+        BetterWeatherData first = mClient.getWeatherDataForLocation(MONTREAL);
+        BetterWeatherData second = mClient.getWeatherDataForLocation(MONTREAL);
+
+        assertEquals(2, mServer.getRequestCount());
+        RecordedRequest initial = mServer.takeRequest();
+        assertNull(initial.getHeader("If-None-Match"));
+        RecordedRequest revalidation = mServer.takeRequest();
+        assertEquals("\"v1\"", revalidation.getHeader("If-None-Match"));
+        // Taken from ParsedResponseCache, not parsed from the cached body
+        assertSame(first, second);
+    }
+
+    @Test
+    public void forcedRefreshRevalidatesFreshResponse() throws Exception {
+        mServer.enqueue(new MockResponse()
+                .setHeader("Cache-Control", "max-age=600")
+                .setHeader("ETag", "\"v1\"")
+                .setBody(mWeather));
+        mServer.enqueue(new MockResponse()
+                .setHeader("Cache-Control", "max-age=600")
+                .setHeader("ETag", "\"v2\"")
+                .setBody(mWeather.replace("\"temp\": \"0\"", "\"temp\": \"4\"")));
+
+        BetterWeatherData cached = mClient.getWeatherDataForLocationAsync(MONTREAL, false).get(10, TimeUnit.SECONDS);
+        BetterWeatherData forced = mClient.getWeatherDataForLocationAsync(MONTREAL, true).get(10, TimeUnit.SECONDS);
+
+        assertEquals(2, mServer.getRequestCount());
+        mServer.takeRequest();
+        RecordedRequest revalidation = mServer.takeRequest();
+        assertEquals("max-age=0", revalidation.getHeader("Cache-Control"));
+        assertEquals("\"v1\"", revalidation.getHeader("If-None-Match"));
+        assertEquals(0, cached.temperature);
+        assertEquals(4, forced.temperature);
+    }
+
+    @Test
+    public void forcedRefreshOfUnchangedResponseReusesParsedData() throws Exception {
+        mServer.enqueue(new MockResponse()
+                .setHeader("Cache-Control", "max-age=600")
+                .setHeader("ETag", "\"v1\"")
+                .setBody(mWeather));
+        mServer.enqueue(new MockResponse()
+                .setResponseCode(304)
+                .setHeader("ETag", "\"v1\""));
+
+        BetterWeatherData cached = mClient.getWeatherDataForLocationAsync(MONTREAL, false).get(10, TimeUnit.SECONDS);
+        BetterWeatherData forced = mClient.getWeatherDataForLocationAsync(MONTREAL, true).get(10, TimeUnit.SECONDS);
+
+        assertEquals(2, mServer.getRequestCount());
+        assertSame(cached, forced);
+    }
+
+    @Test
+    public void changedResponseIsParsedAgain() throws Exception {
+        mServer.enqueue(new MockResponse()
+                .setHeader("Cache-Control", "no-cache")
+                .setHeader("ETag", "\"v1\"")
+                .setBody(mWeather));
+        mServer.enqueue(new MockResponse()
+                .setHeader("ETag", "\"v2\"")
+                .setBody(mWeather.replace("\"temp\": \"0\"", "\"temp\": \"4\"")));
+
+        BetterWeatherData first = mClient.getWeatherDataForLocation(MONTREAL);
+        BetterWeatherData second = mClient.getWeatherDataForLocation(MONTREAL);
+
+        assertNotSame(first, second);
+        assertEquals(4, second.temperature);
+    }
+
+    private static String readFixture(String name) {
+        InputStream input = YahooWeatherAPIClientCacheTest.class.getResourceAsStream("/fixtures/" + name);
+        Scanner scanner = new Scanner(input, "UTF-8").useDelimiter("\\A");
+        try {
+            return scanner.next();
+        } finally {
+            scanner.close();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+#!/usr/bin/env python3
+#
+# Copyright 2013-2016 Marc-André Dufresne
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#     http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+
+"""
+Builds the places index read by OfflineGeocoder from a CSV of places.
+
+The CSV has a header and these columns: woeid, lat, lng, lang, name, region, country.
+A place can have several rows, one per language, the first one (usually with an empty
+lang) has the default names. Other rows have a two-letter language code.
+
+    tools/build_places_index.py tools/places_seed.csv betterweather/src/main/assets/places.idx
+
+See OfflineGeocoder for the format, both have to be changed together.
+"""
+
+import argparse
+import csv
+import math
+import re
+import struct
+import sys
+import unicodedata
+
+MAGIC = 0x42575049  # "BWPI"
+VERSION = 1
+
+DIACRITICS = re.compile(u"[\u0300-\u036f]+")
+# Same as OfflineGeocoder.SEPARATORS, Java's \s only matches ASCII whitespace
+SEPARATORS = re.compile(u"[ \t\n\x0b\f\r,'-]+")
+
+
+def fold_for_search(name):
+    """Same as OfflineGeocoder.foldForSearch()"""
+    folded = unicodedata.normalize("NFD", name)
+    folded = DIACRITICS.sub("", folded)
+    folded = SEPARATORS.sub(" ", folded)
+    return folded.lower().strip()
+
+
+def utf8(text, max_length, what):
+    encoded = text.encode("utf-8")
+    if len(encoded) > max_length:
+        raise ValueError("%s is too long: %r" % (what, text))
+    return encoded
+
+
+def read_places(path):
+    places = []
+    by_woeid = {}
+    with open(path, newline="", encoding="utf-8") as csv_file:
+        for line, row in enumerate(csv.DictReader(csv_file), start=2):
+            woeid = int(row["woeid"])
+            lat, lng = float(row["lat"]), float(row["lng"])
+            if not -90 <= lat < 90 or not -180 <= lng < 180:
+                raise ValueError("line %d: coordinates out of range" % line)
+
+            place = by_woeid.get(woeid)
+            if place is None:
+                place = {"woeid": woeid, "lat": lat, "lng": lng, "names": []}
+                by_woeid[woeid] = place
+                places.append(place)
+            place["names"].append((row["lang"].strip(), row["name"].strip(),
+                                   row["region"].strip(), row["country"].strip()))
+    return places
+
+
+def cell_of(place, cells_per_degree):
+    row = int(math.floor((place["lat"] + 90) * cells_per_degree))
+    col = int(math.floor((place["lng"] + 180) * cells_per_degree))
+    return row * 360 * cells_per_degree + col
+
+
+def build_index(places, cells_per_degree):
+    places = sorted(places, key=lambda p: (cell_of(p, cells_per_degree), p["woeid"]))
+
+    names = bytearray()
+    place_records = []
+    buckets = []
+    search = []
+
+    for index, place in enumerate(places):
+        cell = cell_of(place, cells_per_degree)
+        if not buckets or buckets[-1][0] != cell:
+            buckets.append((cell, index))
+
+        if len(place["names"]) > 255:
+            raise ValueError("too many names for %d" % place["woeid"])
+        names_offset = len(names)
+        names.append(len(place["names"]))
+        for lang, name, region, country in place["names"]:
+            encoded = utf8(lang, 255, "language")
+            names.append(len(encoded))
+            names.extend(encoded)
+            for text in (name, region, country):
+                encoded = utf8(text, 0xFFFF, "name")
+                names.extend(struct.pack(">H", len(encoded)))
+                names.extend(encoded)
+        place_records.append((place["lat"], place["lng"], place["woeid"], names_offset))
+
+        for key in sorted(set(fold_for_search(n[1]) for n in place["names"])):
+            if key:
+                search.append((utf8(key, 255, "search key"), index))
+
+    keys = {}
+    search_records = []
+    for key, index in sorted(search):
+        if key not in keys:
+            keys[key] = len(names)
+            names.append(len(key))
+            names.extend(key)
+        search_records.append((keys[key], index))
+
+    out = bytearray()
+    out.extend(struct.pack(">6i", MAGIC, VERSION, cells_per_degree,
+                           len(buckets), len(place_records), len(search_records)))
+    for cell, first_place in buckets:
+        out.extend(struct.pack(">2i", cell, first_place))
+    for record in place_records:
+        out.extend(struct.pack(">2f2i", *record))
+    for record in search_records:
+        out.extend(struct.pack(">2i", *record))
+    out.extend(names)
+    return out
+
+
+def main():
+    parser = argparse.ArgumentParser(description="Builds the bundled places index")
+    parser.add_argument("csv", help="places, see the module documentation")
+    parser.add_argument("output", help="index file, usually betterweather/src/main/assets/places.idx")
+    parser.add_argument("--cells-per-degree", type=int, default=2,
+                        help="grid resolution, finer grids have smaller buckets (default: 2)")
+    args = parser.parse_args()
+
+    if not 1 <= args.cells_per_degree <= 100:
+        parser.error("cells per degree must be between 1 and 100")
+
+    places = read_places(args.csv)
+    index = build_index(places, args.cells_per_degree)
+    with open(args.output, "wb") as output:
+        output.write(index)
+    print("Wrote %d places, %d bytes to %s" % (len(places), len(index), args.output), file=sys.stderr)
+
+
+if __name__ == "__main__":
+    main()